@@ -0,0 +1,161 @@
+package io.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.Label;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesLaunchStatistics;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesProvisioningLimits;
+
+/**
+ * Decides in which order {@link NoDelayProvisionerStrategy} offers provisioning demand to kubernetes clouds.
+ * <p>
+ * The implementation with the highest ordinal is used.
+ */
+public abstract class CloudSelectionPolicy implements ExtensionPoint {
+
+    /**
+     * Orders the candidate clouds for a provisioning round.
+     * @param clouds the kubernetes clouds, in configuration order
+     * @param label the label to provision for
+     * @param workload the number of executors to provision
+     * @return the clouds, in the order they should be asked to provision
+     */
+    @NonNull
+    public abstract List<KubernetesCloud> order(
+            @NonNull List<KubernetesCloud> clouds, @CheckForNull Label label, int workload);
+
+    /**
+     * @return the cloud selection policy in use
+     */
+    @NonNull
+    public static CloudSelectionPolicy get() {
+        return ExtensionList.lookup(CloudSelectionPolicy.class).get(0);
+    }
+
+    /**
+     * Orders items by weight.
+     * @param items the items, in their natural order
+     * @param weight the weight of each item
+     * @param shuffle if {@code true}, items are shuffled so that an item comes first with a probability proportional
+     *                to its weight. Otherwise items are sorted by decreasing weight, then natural order.
+     * @return the ordered items
+     */
+    @NonNull
+    protected static <T> List<T> orderByWeight(
+            @NonNull List<T> items, @NonNull ToDoubleFunction<T> weight, boolean shuffle) {
+        List<T> result = new ArrayList<>(items);
+        Map<T, Double> keys = new IdentityHashMap<>();
+        if (shuffle) {
+            // weighted random sampling without replacement (Efraimidis-Spirakis)
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (T item : result) {
+                double w = weight.applyAsDouble(item);
+                keys.put(item, w > 0 ? Math.pow(random.nextDouble(), 1.0 / w) : 0);
+            }
+        } else {
+            for (T item : result) {
+                keys.put(item, weight.applyAsDouble(item));
+            }
+        }
+        result.sort(Comparator.comparing(keys::get, Comparator.reverseOrder()));
+        return result;
+    }
+
+    /**
+     * Default policy, scoring each cloud on its {@link KubernetesCloud#getProvisioningWeight() weight},
+     * its remaining headroom according to {@link KubernetesProvisioningLimits},
+     * and its recent time to online and launch failure rate according to {@link KubernetesLaunchStatistics}.
+     * <p>
+     * Clouds are then shuffled according to their score, so that slower clouds still get some launches
+     * and their statistics stay current.
+     */
+    @Extension(ordinal = -100)
+    public static final class ScoringCloudSelectionPolicy extends CloudSelectionPolicy {
+        private static final Logger LOGGER = Logger.getLogger(ScoringCloudSelectionPolicy.class.getName());
+
+        /**
+         * Lower bound of each score factor, so that no cloud is ever excluded by the policy alone.
+         */
+        static final double MIN_FACTOR = 0.01;
+
+        @NonNull
+        @Override
+        public List<KubernetesCloud> order(
+                @NonNull List<KubernetesCloud> clouds, @CheckForNull Label label, int workload) {
+            KubernetesProvisioningLimits limits = KubernetesProvisioningLimits.get();
+            return order(
+                    clouds,
+                    cloud -> cloud.name,
+                    KubernetesCloud::getProvisioningWeight,
+                    limits::getRemainingCapacity,
+                    KubernetesLaunchStatistics.get(),
+                    workload,
+                    !NoDelayProvisionerStrategy.DISABLE_CLOUD_SHUFFLE);
+        }
+
+        static <T> List<T> order(
+                List<T> clouds,
+                Function<T, String> name,
+                ToIntFunction<T> weight,
+                ToIntFunction<T> headroom,
+                KubernetesLaunchStatistics statistics,
+                int workload,
+                boolean shuffle) {
+            Map<T, KubernetesLaunchStatistics.Snapshot> snapshots = new IdentityHashMap<>();
+            double fastest = Double.NaN;
+            for (T cloud : clouds) {
+                KubernetesLaunchStatistics.Snapshot snapshot = statistics.getSnapshot(name.apply(cloud));
+                snapshots.put(cloud, snapshot);
+                if (!Double.isNaN(snapshot.getTimeToOnline())) {
+                    fastest = Double.isNaN(fastest)
+                            ? snapshot.getTimeToOnline()
+                            : Math.min(fastest, snapshot.getTimeToOnline());
+                }
+            }
+            Map<T, Double> scores = new IdentityHashMap<>();
+            for (T cloud : clouds) {
+                double score = score(
+                        weight.applyAsInt(cloud), headroom.applyAsInt(cloud), workload, snapshots.get(cloud), fastest);
+                LOGGER.log(Level.FINEST, "Cloud {0} scored {1}", new Object[] {name.apply(cloud), score});
+                scores.put(cloud, score);
+            }
+            return orderByWeight(clouds, scores::get, shuffle);
+        }
+
+        /**
+         * @param weight the configured weight of the cloud
+         * @param headroom the number of executors the cloud can still provision
+         * @param workload the number of executors to provision
+         * @param snapshot the recent launch statistics of the cloud
+         * @param fastest the lowest recent time to online among the candidate clouds, {@link Double#NaN} if unknown
+         * @return the score of the cloud, higher is better
+         */
+        static double score(
+                int weight, int headroom, int workload, KubernetesLaunchStatistics.Snapshot snapshot, double fastest) {
+            double headroomFactor = Math.max(MIN_FACTOR, Math.min(1.0, (double) headroom / Math.max(workload, 1)));
+            double latencyFactor = 1.0;
+            double timeToOnline = snapshot.getTimeToOnline();
+            if (!Double.isNaN(timeToOnline) && !Double.isNaN(fastest) && timeToOnline > 0) {
+                // clouds without recent launches are considered as fast as the fastest one
+                latencyFactor = Math.max(MIN_FACTOR, fastest / timeToOnline);
+            }
+            double successFactor = Math.max(MIN_FACTOR, 1.0 - snapshot.getFailureRate());
+            return Math.max(weight, 1) * headroomFactor * latencyFactor * successFactor;
+        }
+    }
+}
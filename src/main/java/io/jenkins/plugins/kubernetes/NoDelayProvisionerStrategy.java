@@ -1,5 +1,6 @@
 package io.jenkins.plugins.kubernetes;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
 import hudson.model.Label;
 import hudson.model.LoadStatistics;
@@ -8,9 +9,7 @@ import hudson.model.queue.QueueListener;
 import hudson.slaves.Cloud;
 import hudson.slaves.CloudProvisioningListener;
 import hudson.slaves.NodeProvisioner;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -23,7 +22,10 @@ import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
  * Implementation of {@link NodeProvisioner.Strategy} which will provision a new node immediately as
  * a task enter the queue.
  * In kubernetes, we don't really need to wait before provisioning a new node,
- * because kubernetes agents can be started and destroyed quickly
+ * because kubernetes agents can be started and destroyed quickly.
+ * <p>
+ * Clouds are visited in the order given by the {@link CloudSelectionPolicy},
+ * and demand not covered by a cloud spills over to the next one within the same round.
  *
  * @author <a href="mailto:root@junwuhui.cn">runzexia</a>
  */
@@ -33,9 +35,15 @@ public class NoDelayProvisionerStrategy extends NodeProvisioner.Strategy {
     private static final Logger LOGGER = Logger.getLogger(NoDelayProvisionerStrategy.class.getName());
     private static final boolean DISABLE_NODELAY_PROVISING =
             Boolean.valueOf(System.getProperty("io.jenkins.plugins.kubernetes.disableNoDelayProvisioning"));
-    private static final boolean DISABLE_CLOUD_SHUFFLE =
+    static final boolean DISABLE_CLOUD_SHUFFLE =
             Boolean.getBoolean(NoDelayProvisionerStrategy.class.getName() + ".disableCloudShuffle");
 
+    @SuppressFBWarnings(
+            value = "MS_SHOULD_BE_FINAL",
+            justification = "Allow tests or groovy console to change the value")
+    static boolean DISABLE_SPILL_OVER =
+            Boolean.getBoolean(NoDelayProvisionerStrategy.class.getName() + ".disableSpillOver");
+
     @Override
     public NodeProvisioner.StrategyDecision apply(NodeProvisioner.StrategyState strategyState) {
         if (DISABLE_NODELAY_PROVISING) {
@@ -57,17 +65,18 @@ public class NoDelayProvisionerStrategy extends NodeProvisioner.Strategy {
                 Level.FINE, "Available capacity={0}, currentDemand={1}", new Object[] {availableCapacity, currentDemand
                 });
         if (availableCapacity < currentDemand) {
-            List<Cloud> jenkinsClouds = new ArrayList<>(Jenkins.get().clouds);
-            if (!DISABLE_CLOUD_SHUFFLE) {
-                Collections.shuffle(jenkinsClouds);
-            }
-
-            Cloud.CloudState cloudState = new Cloud.CloudState(label, strategyState.getAdditionalPlannedCapacity());
+            List<KubernetesCloud> jenkinsClouds = CloudSelectionPolicy.get()
+                    .order(
+                            Jenkins.get().clouds.getAll(KubernetesCloud.class),
+                            label,
+                            currentDemand - availableCapacity);
 
             searchClouds:
-            for (Cloud cloud : jenkinsClouds) {
+            for (KubernetesCloud cloud : jenkinsClouds) {
                 int workloadToProvision = currentDemand - availableCapacity;
-                if (!(cloud instanceof KubernetesCloud)) continue;
+                if (workloadToProvision <= 0) break;
+                Cloud.CloudState cloudState =
+                        new Cloud.CloudState(label, strategyState.getAdditionalPlannedCapacity());
                 if (!cloud.canProvision(cloudState)) continue;
                 for (CloudProvisioningListener cl : CloudProvisioningListener.all()) {
                     if (cl.canProvision(cloud, cloudState, workloadToProvision) != null) {
@@ -83,7 +92,9 @@ public class NoDelayProvisionerStrategy extends NodeProvisioner.Strategy {
                 LOGGER.log(Level.FINE, "After provisioning, available capacity={0}, currentDemand={1}", new Object[] {
                     availableCapacity, currentDemand
                 });
-                break;
+                if (DISABLE_SPILL_OVER) {
+                    break;
+                }
             }
         }
         if (availableCapacity > previousCapacity && label != null) {
@@ -0,0 +1,77 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Priority classes of the Kubernetes API calls made by the plugin, from the most to the least urgent.
+ * <p>
+ * The priority applies to the calls made by the current thread within {@link #open()}, and is used by
+ * {@link KubernetesApiScheduler} when calls have to wait for the rate limit of a cloud. Calls made outside of a scope
+ * do not wait.
+ */
+public enum ApiPriority {
+    /**
+     * Creation and termination of agents.
+     */
+    LAUNCH,
+    /**
+     * Commands run in containers.
+     */
+    EXEC,
+    /**
+     * Calls without a specific priority.
+     */
+    NORMAL,
+    /**
+     * Background maintenance, such as the reaper or garbage collection.
+     */
+    BACKGROUND,
+    /**
+     * Information displayed in the user interface.
+     */
+    UI;
+
+    private static final ThreadLocal<ApiPriority> CURRENT = new ThreadLocal<>();
+
+    /**
+     * @return the priority of the calls made by the current thread
+     */
+    @NonNull
+    public static ApiPriority current() {
+        ApiPriority priority = CURRENT.get();
+        return priority == null ? NORMAL : priority;
+    }
+
+    /**
+     * @return true if the current thread applies a priority to its calls, that is if they are made by the plugin
+     */
+    public static boolean isScoped() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Applies this priority to the calls made by the current thread, until the scope is closed.
+     * @return the scope, restoring the previous priority when closed
+     */
+    @NonNull
+    public Scope open() {
+        ApiPriority previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Scope of a priority.
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,216 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.fabric8.kubernetes.api.model.MicroTime;
+import io.fabric8.kubernetes.api.model.coordination.v1.Lease;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseBuilder;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseSpec;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A {@code coordination.k8s.io/v1} Lease proving that the controllers owning the agent pods of a cloud are alive.
+ * <p>
+ * The lease is named after the controller label set on agent pods, which controllers with the same Jenkins URL
+ * share. It is held by a single controller at a time, the only one collecting orphan pods. The holder renews it on
+ * each garbage collection period. Another controller may only take it over once it expired, that is when it was not
+ * renewed for its duration.
+ * <p>
+ * Every controller, holder or not, also records when it last renewed the lease in an annotation of the lease named
+ * after its instance identity. The pods of a controller which did not renew the lease for its duration are orphans.
+ */
+@Restricted(NoExternalUse.class)
+public final class ControllerLease {
+    private static final Logger LOGGER = Logger.getLogger(ControllerLease.class.getName());
+
+    /**
+     * Prefix of the annotations recording when each controller last renewed the lease, followed by its identity.
+     */
+    static final String ANNOTATION_RENEWED_PREFIX = "kubernetes.jenkins.io/renewed-";
+
+    private static final DateTimeFormatter MICRO_TIME = DateTimeFormatter.ofPattern(
+                    "yyyy-MM-dd'T'HH:mm:ss.SSSSSSXXX", Locale.ROOT)
+            .withZone(ZoneOffset.UTC);
+
+    private ControllerLease() {}
+
+    /**
+     * @param controllerLabel the value of the controller label set on agent pods
+     * @return the name of the lease of the controller
+     */
+    @NonNull
+    public static String name(@NonNull String controllerLabel) {
+        String name = "jenkins-agents-" + controllerLabel.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9.-]", "-");
+        return name.replaceAll("[^a-z0-9]+$", "");
+    }
+
+    /**
+     * Renews the lease, acquiring it if it does not exist or expired. When another live controller holds the lease,
+     * only records that this controller is alive.
+     * @param client the client
+     * @param namespace the namespace of the lease
+     * @param controllerLabel the value of the controller label set on agent pods
+     * @param identity identifies this controller
+     * @param duration how long the lease lasts without being renewed
+     * @param now the current time
+     * @return the lease if this controller holds it, {@code null} otherwise
+     */
+    @CheckForNull
+    public static Lease renew(
+            @NonNull KubernetesClient client,
+            @NonNull String namespace,
+            @NonNull String controllerLabel,
+            @NonNull String identity,
+            @NonNull Duration duration,
+            @NonNull Instant now) {
+        String name = name(controllerLabel);
+        try {
+            Lease lease = client.resources(Lease.class)
+                    .inNamespace(namespace)
+                    .withName(name)
+                    .get();
+            if (lease == null) {
+                Lease created = client.resources(Lease.class)
+                        .inNamespace(namespace)
+                        .resource(new LeaseBuilder()
+                                .withNewMetadata()
+                                .withName(name)
+                                .withNamespace(namespace)
+                                .addToLabels(PodTemplateBuilder.LABEL_KUBERNETES_CONTROLLER, controllerLabel)
+                                .addToAnnotations(ANNOTATION_RENEWED_PREFIX + identity, format(now))
+                                .endMetadata()
+                                .withNewSpec()
+                                .withHolderIdentity(identity)
+                                .withLeaseDurationSeconds((int) duration.getSeconds())
+                                .withAcquireTime(new MicroTime(format(now)))
+                                .withRenewTime(new MicroTime(format(now)))
+                                .withLeaseTransitions(0)
+                                .endSpec()
+                                .build())
+                        .create();
+                LOGGER.log(Level.FINE, "Created lease {0}/{1}", new Object[] {namespace, name});
+                return created;
+            }
+            LeaseSpec spec = lease.getSpec() == null ? new LeaseSpec() : lease.getSpec();
+            boolean held = identity.equals(spec.getHolderIdentity());
+            boolean live = !held && !isExpired(spec, now);
+            if (live) {
+                LOGGER.log(Level.FINE, "Lease {0}/{1} is held by {2}", new Object[] {
+                    namespace, name, spec.getHolderIdentity()
+                });
+            } else {
+                if (!held) {
+                    LOGGER.log(Level.INFO, "Taking over expired lease {0}/{1} from {2}", new Object[] {
+                        namespace, name, spec.getHolderIdentity()
+                    });
+                    spec.setHolderIdentity(identity);
+                    spec.setAcquireTime(new MicroTime(format(now)));
+                    spec.setLeaseTransitions(Objects.requireNonNullElse(spec.getLeaseTransitions(), 0) + 1);
+                }
+                spec.setLeaseDurationSeconds((int) duration.getSeconds());
+                spec.setRenewTime(new MicroTime(format(now)));
+                lease.setSpec(spec);
+                forgetExpired(lease, now);
+            }
+            Map<String, String> annotations = lease.getMetadata().getAnnotations();
+            if (annotations == null) {
+                annotations = new HashMap<>();
+                lease.getMetadata().setAnnotations(annotations);
+            }
+            annotations.put(ANNOTATION_RENEWED_PREFIX + identity, format(now));
+            // fails with a conflict if another controller updated the lease meanwhile
+            Lease updated = client.resources(Lease.class)
+                    .inNamespace(namespace)
+                    .resource(lease)
+                    .update();
+            return live ? null : updated;
+        } catch (KubernetesClientException e) {
+            if (e.getCode() == HttpURLConnection.HTTP_CONFLICT) {
+                LOGGER.log(Level.FINE, "Lease {0}/{1} was updated concurrently", new Object[] {namespace, name});
+            } else {
+                LOGGER.log(Level.WARNING, e, () -> "Cannot renew lease " + namespace + "/" + name);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @param lease the lease
+     * @param identity identifies a controller
+     * @param now the current time
+     * @return true if the controller renewed the lease within its duration, whether it holds it or not
+     */
+    public static boolean isLive(@NonNull Lease lease, @NonNull String identity, @NonNull Instant now) {
+        LeaseSpec spec = lease.getSpec();
+        if (spec == null || spec.getLeaseDurationSeconds() == null) {
+            return false;
+        }
+        if (identity.equals(spec.getHolderIdentity()) && !isExpired(spec, now)) {
+            return true;
+        }
+        Map<String, String> annotations = lease.getMetadata().getAnnotations();
+        Instant renewed = annotations == null ? null : parse(annotations.get(ANNOTATION_RENEWED_PREFIX + identity));
+        return renewed != null && !renewed.plusSeconds(spec.getLeaseDurationSeconds()).isBefore(now);
+    }
+
+    /**
+     * Removes the records of the controllers which did not renew the lease for its duration.
+     */
+    private static void forgetExpired(@NonNull Lease lease, @NonNull Instant now) {
+        Map<String, String> annotations = lease.getMetadata().getAnnotations();
+        if (annotations != null) {
+            annotations
+                    .keySet()
+                    .removeIf(key -> key.startsWith(ANNOTATION_RENEWED_PREFIX)
+                            && !isLive(lease, key.substring(ANNOTATION_RENEWED_PREFIX.length()), now));
+        }
+    }
+
+    private static String format(@NonNull Instant time) {
+        return MICRO_TIME.format(time);
+    }
+
+    /**
+     * @return true if the lease was not renewed for its duration
+     */
+    static boolean isExpired(@NonNull LeaseSpec spec, @NonNull Instant now) {
+        Instant renewed = parse(spec.getRenewTime());
+        if (renewed == null || spec.getLeaseDurationSeconds() == null) {
+            return true;
+        }
+        return renewed.plusSeconds(spec.getLeaseDurationSeconds()).isBefore(now);
+    }
+
+    @CheckForNull
+    private static Instant parse(@CheckForNull MicroTime time) {
+        return time == null ? null : parse(time.getTime());
+    }
+
+    @CheckForNull
+    private static Instant parse(@CheckForNull String time) {
+        if (time == null) {
+            return null;
+        }
+        try {
+            return Instant.parse(time);
+        } catch (DateTimeParseException e) {
+            LOGGER.log(Level.FINE, e, () -> "Cannot parse lease time " + time);
+            return null;
+        }
+    }
+}
@@ -1,19 +1,50 @@
 package org.csanchez.jenkins.plugins.kubernetes;
 
+import com.codahale.metrics.Gauge;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
+import hudson.ExtensionList;
 import hudson.model.Computer;
 import hudson.model.Label;
 import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.model.labels.LabelAtom;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
 import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import jenkins.metrics.api.Metrics;
+import jenkins.model.Jenkins;
+import jenkins.model.NodeListener;
 
+/**
+ * Keeps track of the kubernetes agents whose launch has not completed yet.
+ * <p>
+ * The set is maintained incrementally from node events and {@link KubernetesComputer} transitions,
+ * and indexed by label atom, so that lookups do not depend on the number of live agents.
+ */
 @Extension
 public class DefaultInProvisioning extends InProvisioning {
     private static final Logger LOGGER = Logger.getLogger(DefaultInProvisioning.class.getName());
 
+    private volatile boolean initialized;
+
+    /**
+     * Agents in provisioning, by node name.
+     */
+    private final Map<String, KubernetesSlave> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * Names of the agents in provisioning, by label atom.
+     */
+    private final Map<LabelAtom, Set<String>> byLabelAtom = new ConcurrentHashMap<>();
+
     private static boolean isNotAcceptingTasks(Node n) {
         Computer computer = n.toComputer();
         return computer != null
@@ -24,14 +55,123 @@ public class DefaultInProvisioning extends InProvisioning {
 
     @Override
     public Set<String> getInProvisioning(@CheckForNull Label label) {
-        if (label != null) {
-            return label.getNodes().stream()
-                    .filter(KubernetesSlave.class::isInstance)
-                    .filter(DefaultInProvisioning::isNotAcceptingTasks)
-                    .map(Node::getNodeName)
-                    .collect(Collectors.toSet());
-        } else {
+        if (label == null) {
             return Collections.emptySet();
         }
+        init();
+        if (label instanceof LabelAtom) {
+            Set<String> names = byLabelAtom.get(label);
+            return names == null ? Collections.emptySet() : Collections.unmodifiableSet(names);
+        }
+        return nodes.values().stream()
+                .filter(label::matches)
+                .map(Node::getNodeName)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * @return the number of agents in provisioning, regardless of their labels
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    private void init() {
+        if (initialized) {
+            return;
+        }
+        synchronized (this) {
+            if (!initialized) {
+                Jenkins.get().getNodes().stream()
+                        .filter(KubernetesSlave.class::isInstance)
+                        .map(KubernetesSlave.class::cast)
+                        .forEach(this::update);
+                Metrics.metricRegistry().gauge(MetricNames.PODS_IN_PROVISIONING, () -> (Gauge<Integer>) this::size);
+                initialized = true;
+            }
+        }
+    }
+
+    private synchronized void update(@NonNull KubernetesSlave node) {
+        String name = node.getNodeName();
+        Node current = Jenkins.get().getNode(name);
+        if (current == node && isNotAcceptingTasks(node)) {
+            if (nodes.put(name, node) != node) {
+                for (LabelAtom atom : node.getAssignedLabels()) {
+                    byLabelAtom.computeIfAbsent(atom, k -> ConcurrentHashMap.newKeySet()).add(name);
+                }
+                LOGGER.log(Level.FINEST, "Agent {0} in provisioning", name);
+            }
+        } else {
+            remove(name);
+        }
+    }
+
+    private synchronized void remove(@NonNull String name) {
+        KubernetesSlave node = nodes.remove(name);
+        if (node != null) {
+            for (LabelAtom atom : node.getAssignedLabels()) {
+                byLabelAtom.computeIfPresent(atom, (k, names) -> {
+                    names.remove(name);
+                    return names.isEmpty() ? null : names;
+                });
+            }
+            LOGGER.log(Level.FINEST, "Agent {0} no longer in provisioning", name);
+        }
+    }
+
+    /**
+     * Re-evaluates whether an agent is in provisioning.
+     * @param node the agent, may be {@code null} if it has already been removed
+     */
+    static void refresh(@CheckForNull Node node) {
+        if (!(node instanceof KubernetesSlave)) {
+            return;
+        }
+        for (DefaultInProvisioning inProvisioning : ExtensionList.lookup(DefaultInProvisioning.class)) {
+            if (inProvisioning.initialized) {
+                inProvisioning.update((KubernetesSlave) node);
+            }
+        }
+    }
+
+    @Extension
+    public static class NodeListenerImpl extends NodeListener {
+        @Override
+        protected void onCreated(@NonNull Node node) {
+            refresh(node);
+        }
+
+        @Override
+        protected void onUpdated(@NonNull Node oldOne, @NonNull Node newOne) {
+            if (oldOne instanceof KubernetesSlave) {
+                for (DefaultInProvisioning inProvisioning : ExtensionList.lookup(DefaultInProvisioning.class)) {
+                    inProvisioning.remove(oldOne.getNodeName());
+                }
+            }
+            refresh(newOne);
+        }
+
+        @Override
+        protected void onDeleted(@NonNull Node node) {
+            if (node instanceof KubernetesSlave) {
+                for (DefaultInProvisioning inProvisioning : ExtensionList.lookup(DefaultInProvisioning.class)) {
+                    inProvisioning.remove(node.getNodeName());
+                }
+            }
+        }
+    }
+
+    @Extension
+    public static class ComputerListenerImpl extends ComputerListener {
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            refresh(c.getNode());
+        }
+
+        @Override
+        public void onOffline(@NonNull Computer c, @CheckForNull OfflineCause cause) {
+            refresh(c.getNode());
+        }
     }
 }
@@ -1,6 +1,7 @@
 package org.csanchez.jenkins.plugins.kubernetes;
 
 import static org.csanchez.jenkins.plugins.kubernetes.PodTemplateBuilder.LABEL_KUBERNETES_CONTROLLER;
+import static org.csanchez.jenkins.plugins.kubernetes.PodTemplateBuilder.LABEL_KUBERNETES_CONTROLLER_ID;
 import static org.csanchez.jenkins.plugins.kubernetes.PodTemplateUtils.sanitizeLabel;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -9,20 +10,30 @@ import hudson.Main;
 import hudson.Util;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
 import hudson.model.Descriptor;
 import hudson.model.TaskListener;
 import hudson.util.FormValidation;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.coordination.v1.Lease;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Arrays;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.Jenkins;
@@ -44,11 +55,24 @@ public class GarbageCollection extends AbstractDescribableImpl<GarbageCollection
     private String namespaces;
     private transient Set<String> namespaceSet;
     private int timeout;
+    private boolean useLease;
 
     private static Long RECURRENCE_PERIOD = SystemProperties.getLong(
             GarbageCollection.class.getName() + ".recurrencePeriod",
             Main.isUnitTest ? 5 : TimeUnit.MINUTES.toSeconds(1));
 
+    /**
+     * Maximum number of pods of a cloud annotated concurrently.
+     */
+    private static final int ANNOTATE_CONCURRENCY =
+            Math.max(1, SystemProperties.getInteger(GarbageCollection.class.getName() + ".annotateConcurrency", 8));
+
+    /**
+     * Fraction of the timeout after which the annotation of a pod is refreshed.
+     */
+    private static final double REFRESH_FRACTION = Double.parseDouble(
+            SystemProperties.getString(GarbageCollection.class.getName() + ".refreshFraction", "0.5"));
+
     @DataBoundConstructor
     public GarbageCollection() {}
 
@@ -86,6 +110,19 @@ public class GarbageCollection extends AbstractDescribableImpl<GarbageCollection
         }
     }
 
+    public boolean isUseLease() {
+        return useLease;
+    }
+
+    /**
+     * @param useLease whether liveness of agents is proven by renewing a single {@link ControllerLease} instead of
+     *                 annotating each agent pod
+     */
+    @DataBoundSetter
+    public void setUseLease(boolean useLease) {
+        this.useLease = useLease;
+    }
+
     public Duration getDurationTimeout() {
         return Duration.ofSeconds(timeout);
     }
@@ -100,17 +137,20 @@ public class GarbageCollection extends AbstractDescribableImpl<GarbageCollection
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         GarbageCollection that = (GarbageCollection) o;
-        return timeout == that.timeout && Objects.equals(namespaces, that.namespaces);
+        return timeout == that.timeout
+                && useLease == that.useLease
+                && Objects.equals(namespaces, that.namespaces);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(namespaces, timeout);
+        return Objects.hash(namespaces, timeout, useLease);
     }
 
     @Override
     public String toString() {
-        return "GarbageCollection{" + "namespaces='" + namespaces + '\'' + ", timeout=" + timeout + '}';
+        return "GarbageCollection{" + "namespaces='" + namespaces + '\'' + ", timeout=" + timeout + ", useLease="
+                + useLease + '}';
     }
 
     @Extension
@@ -132,65 +172,128 @@ public class GarbageCollection extends AbstractDescribableImpl<GarbageCollection
 
         @Override
         protected void execute(TaskListener listener) throws IOException, InterruptedException {
-            annotateLiveAgents(listener);
-            garbageCollect();
+            try (ApiPriority.Scope scope = ApiPriority.BACKGROUND.open()) {
+                annotateLiveAgents(listener);
+                garbageCollect();
+            }
         }
 
+        /**
+         * Annotates the pods of the live agents, cloud by cloud in parallel. The pods of a cloud are annotated by at
+         * most {@link #ANNOTATE_CONCURRENCY} concurrent calls, and only once their annotation is older than
+         * {@link #REFRESH_FRACTION} of the timeout. Agents of clouds using a {@link ControllerLease} are skipped.
+         */
         private static void annotateLiveAgents(TaskListener listener) {
-            Arrays.stream(Jenkins.get().getComputers())
-                    .filter(KubernetesComputer.class::isInstance)
-                    .map(KubernetesComputer.class::cast)
-                    .forEach(kc -> kc.annotateTtl(listener));
+            Instant now = Instant.now();
+            Map<KubernetesCloud, List<KubernetesSlave>> agentsByCloud = new HashMap<>();
+            for (Computer c : Jenkins.get().getComputers()) {
+                if (!(c instanceof KubernetesComputer)) {
+                    continue;
+                }
+                KubernetesSlave ks = ((KubernetesComputer) c).getNode();
+                if (ks == null) {
+                    continue;
+                }
+                KubernetesCloud cloud;
+                try {
+                    cloud = ks.getKubernetesCloud();
+                } catch (IllegalStateException e) {
+                    continue;
+                }
+                GarbageCollection gc = cloud.getGarbageCollection();
+                if (gc != null && !gc.isUseLease() && ks.isTtlRefreshDue(gc, now, REFRESH_FRACTION)) {
+                    agentsByCloud
+                            .computeIfAbsent(cloud, k -> new ArrayList<>())
+                            .add(ks);
+                }
+            }
+            List<CompletableFuture<Void>> tasks = new ArrayList<>();
+            agentsByCloud.forEach((cloud, agents) -> {
+                if (!KubernetesCircuitBreaker.forCloud(cloud.name).allowRequest()) {
+                    LOGGER.log(Level.FINE, "Skipping annotation of pods of {0}: API server unreachable", cloud.name);
+                    return;
+                }
+                Queue<KubernetesSlave> pending = new ConcurrentLinkedQueue<>(agents);
+                AtomicInteger annotated = new AtomicInteger();
+                List<CompletableFuture<Void>> workers = new ArrayList<>();
+                for (int i = 0; i < Math.min(ANNOTATE_CONCURRENCY, agents.size()); i++) {
+                    workers.add(CompletableFuture.runAsync(
+                            () -> {
+                                try (ApiPriority.Scope scope = ApiPriority.BACKGROUND.open()) {
+                                    KubernetesSlave ks;
+                                    while ((ks = pending.poll()) != null) {
+                                        if (ks.annotateTtl(listener, now)) {
+                                            annotated.incrementAndGet();
+                                        }
+                                    }
+                                }
+                            },
+                            Computer.threadPoolForRemoting));
+                }
+                tasks.add(CompletableFuture.allOf(workers.toArray(new CompletableFuture[0]))
+                        .thenRun(() -> listener.getLogger()
+                                .printf(
+                                        "Annotated %d agent pods of %s with TTL%n",
+                                        annotated.get(), cloud.name)));
+            });
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
         }
 
         private static void garbageCollect() {
             for (var cloud : Jenkins.get().clouds.getAll(KubernetesCloud.class)) {
                 Optional.ofNullable(cloud.getGarbageCollection()).ifPresent(gc -> {
+                    if (!KubernetesCircuitBreaker.forCloud(cloud.name).allowRequest()) {
+                        LOGGER.log(
+                                Level.FINE, "Skipping garbage collection of {0}: API server unreachable", cloud.name);
+                        return;
+                    }
                     try {
                         var client = cloud.connect();
+                        var controller = sanitizeLabel(cloud.getJenkinsUrlOrNull());
+                        var now = Instant.now();
+                        Lease lease = null;
+                        if (gc.isUseLease()) {
+                            if (controller == null) {
+                                LOGGER.log(
+                                        Level.FINE, "Skipping garbage collection of {0}: no Jenkins URL", cloud.name);
+                                return;
+                            }
+                            var leaseNamespace = client.getNamespace();
+                            if (leaseNamespace == null) {
+                                LOGGER.log(
+                                        Level.FINE,
+                                        "Skipping garbage collection of {0}: no default namespace for the lease",
+                                        cloud.name);
+                                return;
+                            }
+                            lease = ControllerLease.renew(
+                                    client,
+                                    leaseNamespace,
+                                    controller,
+                                    Jenkins.get().getLegacyInstanceId(),
+                                    gc.getDurationTimeout(),
+                                    now);
+                            // another live controller holds the lease and collects orphan pods
+                            if (lease == null) {
+                                return;
+                            }
+                        }
                         var namespaces = new HashSet<String>();
                         namespaces.add(client.getNamespace());
                         namespaces.addAll(gc.getNamespaceSet());
+                        var holderLease = lease;
                         for (var ns : namespaces) {
                             client
                                     .pods()
                                     .inNamespace(ns)
                                     // Only look at pods created by this controller
-                                    .withLabel(LABEL_KUBERNETES_CONTROLLER, sanitizeLabel(cloud.getJenkinsUrlOrNull()))
+                                    .withLabel(LABEL_KUBERNETES_CONTROLLER, controller)
                                     .list()
                                     .getItems()
                                     .stream()
-                                    .filter(pod -> {
-                                        var lastRefresh = pod.getMetadata()
-                                                .getAnnotations()
-                                                .get(ANNOTATION_LAST_REFRESH);
-                                        if (lastRefresh != null) {
-                                            try {
-                                                var refreshTime = Long.parseLong(lastRefresh);
-                                                var now = Instant.now();
-                                                LOGGER.log(
-                                                        Level.FINE,
-                                                        () -> getQualifiedName(pod) + " refresh diff = "
-                                                                + (now.toEpochMilli() - refreshTime) + ", timeout is "
-                                                                + gc.getDurationTimeout()
-                                                                        .toMillis());
-                                                return Duration.between(Instant.ofEpochMilli(refreshTime), now)
-                                                                .compareTo(gc.getDurationTimeout())
-                                                        > 0;
-                                            } catch (NumberFormatException e) {
-                                                LOGGER.log(
-                                                        Level.WARNING,
-                                                        e,
-                                                        () -> "Unable to parse last refresh for pod "
-                                                                + getQualifiedName(pod) + ", ignoring");
-                                                return false;
-                                            }
-                                        } else {
-                                            LOGGER.log(
-                                                    Level.FINE, () -> "Ignoring legacy pod " + getQualifiedName(pod));
-                                            return false;
-                                        }
-                                    })
+                                    .filter(pod -> holderLease != null
+                                            ? isUnknown(pod, gc, holderLease, now)
+                                            : isRefreshExpired(pod, gc, now))
                                     .forEach(pod -> {
                                         LOGGER.log(Level.INFO, () -> "Deleting orphan pod " + getQualifiedName(pod));
                                         client.resource(pod).delete();
@@ -207,6 +310,73 @@ public class GarbageCollection extends AbstractDescribableImpl<GarbageCollection
             }
         }
 
+        /**
+         * @return true if the last refresh annotation of the pod is older than the timeout
+         */
+        private static boolean isRefreshExpired(@NonNull Pod pod, @NonNull GarbageCollection gc, Instant now) {
+            var annotations = pod.getMetadata().getAnnotations();
+            var lastRefresh = annotations == null ? null : annotations.get(ANNOTATION_LAST_REFRESH);
+            if (lastRefresh == null) {
+                LOGGER.log(Level.FINE, () -> "Ignoring legacy pod " + getQualifiedName(pod));
+                return false;
+            }
+            try {
+                var refreshTime = Long.parseLong(lastRefresh);
+                LOGGER.log(
+                        Level.FINE,
+                        () -> getQualifiedName(pod) + " refresh diff = " + (now.toEpochMilli() - refreshTime)
+                                + ", timeout is " + gc.getDurationTimeout().toMillis());
+                return Duration.between(Instant.ofEpochMilli(refreshTime), now)
+                                .compareTo(gc.getDurationTimeout())
+                        > 0;
+            } catch (NumberFormatException e) {
+                LOGGER.log(
+                        Level.WARNING,
+                        e,
+                        () -> "Unable to parse last refresh for pod " + getQualifiedName(pod) + ", ignoring");
+                return false;
+            }
+        }
+
+        /**
+         * @return true if the pod is not owned by a known agent, its controller is no longer alive according to the
+         * lease, and it is older than the timeout, leaving time to the agent of a launching pod to be registered.
+         * Pods created without lease mode are orphans once their last refresh annotation expired.
+         */
+        static boolean isUnknown(@NonNull Pod pod, @NonNull GarbageCollection gc, @NonNull Lease lease, Instant now) {
+            var metadata = pod.getMetadata();
+            var labels = metadata.getLabels();
+            var identity = labels == null ? null : labels.get(LABEL_KUBERNETES_CONTROLLER_ID);
+            if (identity == null) {
+                if (!isRefreshExpired(pod, gc, now)) {
+                    return false;
+                }
+            } else if (!identity.equals(Jenkins.get().getLegacyInstanceId())
+                    && ControllerLease.isLive(lease, identity, now)) {
+                LOGGER.log(Level.FINE, () -> "Ignoring pod of live controller " + identity + ": "
+                        + getQualifiedName(pod));
+                return false;
+            }
+            if (KubernetesSlaveIndex.get().get(metadata.getNamespace(), metadata.getName()) != null
+                    || Jenkins.get().getNode(metadata.getName()) instanceof KubernetesSlave) {
+                return false;
+            }
+            if (metadata.getCreationTimestamp() == null) {
+                return false;
+            }
+            try {
+                return Duration.between(Instant.parse(metadata.getCreationTimestamp()), now)
+                                .compareTo(gc.getDurationTimeout())
+                        > 0;
+            } catch (DateTimeParseException e) {
+                LOGGER.log(
+                        Level.WARNING,
+                        e,
+                        () -> "Unable to parse creation timestamp of pod " + getQualifiedName(pod) + ", ignoring");
+                return false;
+            }
+        }
+
         private static String getQualifiedName(@NonNull Pod pod) {
             var metadata = pod.getMetadata();
             return metadata.getNamespace() + "/" + metadata.getName();
@@ -0,0 +1,202 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.fabric8.kubernetes.client.http.AsyncBody;
+import io.fabric8.kubernetes.client.http.BasicBuilder;
+import io.fabric8.kubernetes.client.http.HttpRequest;
+import io.fabric8.kubernetes.client.http.HttpResponse;
+import io.fabric8.kubernetes.client.http.Interceptor;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import jenkins.metrics.api.Metrics;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Records the Kubernetes API calls made by the clients of a cloud: counts and latency per verb and resource,
+ * error codes, and watch connections, which include the reconnections made by the client.
+ */
+@Restricted(NoExternalUse.class)
+public final class KubernetesApiMetrics {
+
+    static final String INTERCEPTOR = "jenkins-api-metrics";
+
+    /**
+     * Bounds the start times kept for requests whose response was not observed.
+     */
+    private static final int MAX_PENDING = 100;
+
+    private final String cloudName;
+
+    /**
+     * Start times of the requests in flight, by method and URI.
+     */
+    private final ConcurrentMap<String, Deque<Long>> pending = new ConcurrentHashMap<>();
+
+    public KubernetesApiMetrics(@NonNull String cloudName) {
+        this.cloudName = cloudName;
+    }
+
+    /**
+     * @return an interceptor recording the calls of a client
+     */
+    @NonNull
+    Interceptor interceptor() {
+        return new MetricsInterceptor();
+    }
+
+    private void started(HttpRequest request) {
+        Request r = Request.of(request.method(), request.uri());
+        Metrics.metricRegistry()
+                .counter(MetricNames.metricNameForApiRequests(cloudName, r.verb, r.resource))
+                .inc();
+        if (r.isWatch()) {
+            Metrics.metricRegistry()
+                    .counter(MetricNames.metricNameForApiWatchConnects(cloudName, r.resource))
+                    .inc();
+        }
+        if (r.isStreaming()) {
+            // response is not observed, or observed once the stream ends
+            return;
+        }
+        Deque<Long> starts = pending.computeIfAbsent(key(request), k -> new ArrayDeque<>());
+        synchronized (starts) {
+            if (starts.size() >= MAX_PENDING) {
+                starts.pollFirst();
+            }
+            starts.addLast(System.nanoTime());
+        }
+    }
+
+    private void completed(HttpRequest request, String outcome) {
+        Request r = Request.of(request.method(), request.uri());
+        if (outcome != null) {
+            Metrics.metricRegistry()
+                    .counter(MetricNames.metricNameForApiErrors(cloudName, outcome))
+                    .inc();
+        }
+        if (r.isStreaming()) {
+            return;
+        }
+        String key = key(request);
+        Deque<Long> starts = pending.get(key);
+        if (starts == null) {
+            return;
+        }
+        Long start;
+        synchronized (starts) {
+            start = starts.pollFirst();
+            if (starts.isEmpty()) {
+                pending.remove(key, starts);
+            }
+        }
+        if (start != null) {
+            Metrics.metricRegistry()
+                    .timer(MetricNames.metricNameForApiLatency(cloudName, r.verb, r.resource))
+                    .update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String key(HttpRequest request) {
+        return request.method() + " " + request.uri();
+    }
+
+    private final class MetricsInterceptor implements Interceptor {
+        @Override
+        public void before(BasicBuilder builder, HttpRequest request, RequestTags tags) {
+            started(request);
+        }
+
+        @Override
+        public void after(
+                HttpRequest request, HttpResponse<?> response, AsyncBody.Consumer<List<ByteBuffer>> consumer) {
+            completed(request, HttpResponse.isSuccessful(response.code()) ? null : String.valueOf(response.code()));
+        }
+
+        @Override
+        public void afterConnectionFailure(HttpRequest request, Throwable failure) {
+            completed(request, "connection");
+        }
+    }
+
+    /**
+     * Verb and resource of a Kubernetes API request.
+     */
+    static final class Request {
+        final String verb;
+        final String resource;
+
+        private Request(String verb, String resource) {
+            this.verb = verb;
+            this.resource = resource;
+        }
+
+        boolean isWatch() {
+            return "watch".equals(verb);
+        }
+
+        boolean isStreaming() {
+            return isWatch()
+                    || resource.endsWith(".exec")
+                    || resource.endsWith(".attach")
+                    || resource.endsWith(".portforward");
+        }
+
+        /**
+         * Parses paths such as {@code /api/v1/namespaces/ns/pods/name/log} or
+         * {@code /apis/group/version/namespaces/ns/resource}.
+         */
+        static Request of(String method, URI uri) {
+            List<String> segments = Arrays.asList(
+                    uri.getPath() == null ? new String[0] : uri.getPath().replaceAll("^/+", "").split("/+"));
+            int start;
+            if (!segments.isEmpty() && segments.get(0).equals("api")) {
+                start = 2;
+            } else if (!segments.isEmpty() && segments.get(0).equals("apis")) {
+                start = 3;
+            } else {
+                return new Request(method.toLowerCase(Locale.ROOT), "other");
+            }
+            List<String> rest = segments.subList(Math.min(start, segments.size()), segments.size());
+            if (rest.size() >= 3 && rest.get(0).equals("namespaces")) {
+                rest = rest.subList(2, rest.size());
+            }
+            String resource = rest.isEmpty() ? "discovery" : rest.get(0);
+            boolean named = rest.size() != 1;
+            if (rest.size() >= 3) {
+                resource = resource + "." + rest.get(2);
+            }
+            String query = uri.getRawQuery();
+            boolean watch = query != null && Arrays.asList(query.split("&")).contains("watch=true");
+            return new Request(verb(method, named, watch), resource);
+        }
+
+        private static String verb(String method, boolean named, boolean watch) {
+            switch (method.toUpperCase(Locale.ROOT)) {
+                case "GET":
+                    if (watch) {
+                        return "watch";
+                    }
+                    return named ? "get" : "list";
+                case "POST":
+                    return "create";
+                case "PUT":
+                    return "update";
+                case "PATCH":
+                    return "patch";
+                case "DELETE":
+                    return named ? "delete" : "deletecollection";
+                default:
+                    return method.toLowerCase(Locale.ROOT);
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import com.codahale.metrics.Gauge;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.http.BasicBuilder;
+import io.fabric8.kubernetes.client.http.HttpRequest;
+import io.fabric8.kubernetes.client.http.HttpResponse;
+import io.fabric8.kubernetes.client.http.Interceptor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.metrics.api.Metrics;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Schedules the Kubernetes API calls of a cloud according to their {@link ApiPriority}.
+ * <p>
+ * Calls are admitted by a token bucket refilled at {@link KubernetesCloud#getApiRateLimit()} requests per second.
+ * When calls have to wait, the most urgent is admitted first. A call waiting for longer than {@link #MAX_WAIT}
+ * seconds is admitted first regardless of its priority, so that less urgent calls are delayed but never starved.
+ * When the API server throttles the client with a 429 response, as API Priority and Fairness does, no call is
+ * admitted until the delay given by the {@code Retry-After} header has elapsed.
+ * <p>
+ * Only the calls made within an {@link ApiPriority#open() explicit priority scope}, that is from the plugin call
+ * sites, wait to be admitted. Other calls, such as retries, watch or informer reconnections and asynchronous callbacks
+ * made from the threads of the client, are never blocked as they may share these threads with other clouds. They take
+ * a token when one is available, so that they still count against the rate limit.
+ */
+@Restricted(NoExternalUse.class)
+public final class KubernetesApiScheduler {
+    private static final Logger LOGGER = Logger.getLogger(KubernetesApiScheduler.class.getName());
+
+    static final String INTERCEPTOR = "jenkins-api-scheduler";
+
+    private static final long MAX_WAIT =
+            SystemProperties.getLong(KubernetesApiScheduler.class.getName() + ".maxWait", 60L);
+
+    private static final long DEFAULT_RETRY_AFTER = 1;
+
+    private static final ConcurrentMap<String, KubernetesApiScheduler> schedulers = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final List<Waiter> waiters = new ArrayList<>();
+    private long sequence;
+
+    private double rate;
+    private double tokens;
+    private long refilled = System.nanoTime();
+
+    private boolean paused;
+    private long pausedUntil;
+
+    KubernetesApiScheduler(@NonNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param cloudName the name of the cloud
+     * @return the scheduler of the cloud
+     */
+    @NonNull
+    public static KubernetesApiScheduler forCloud(@NonNull String cloudName) {
+        return schedulers.computeIfAbsent(cloudName, KubernetesApiScheduler::new);
+    }
+
+    /**
+     * @return the number of calls waiting to be admitted, across all clouds
+     */
+    public static int getQueueDepth() {
+        int depth = 0;
+        for (KubernetesApiScheduler scheduler : schedulers.values()) {
+            depth += scheduler.getWaiting();
+        }
+        return depth;
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void registerMetrics() {
+        Metrics.metricRegistry()
+                .gauge(MetricNames.API_QUEUE_DEPTH, () -> (Gauge<Integer>) KubernetesApiScheduler::getQueueDepth);
+    }
+
+    /**
+     * @param rate the number of calls admitted per second, unlimited if 0
+     */
+    public void setRate(double rate) {
+        lock.lock();
+        try {
+            if (rate != this.rate) {
+                this.rate = Math.max(0, rate);
+                tokens = burst();
+                refilled = System.nanoTime();
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double burst() {
+        return Math.max(1, rate);
+    }
+
+    /**
+     * @return the number of calls waiting to be admitted
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a call can be made.
+     * @param priority the priority of the call
+     */
+    public void acquire(@NonNull ApiPriority priority) throws InterruptedException {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (waiters.isEmpty() && reserve(start) == 0) {
+                return;
+            }
+            Waiter waiter = new Waiter(priority, sequence++, start);
+            waiters.add(waiter);
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    if (next(now) == waiter) {
+                        long wait = reserve(now);
+                        if (wait == 0) {
+                            break;
+                        }
+                        changed.awaitNanos(wait);
+                    } else {
+                        // wake up when the waiter gets old enough to be admitted first
+                        changed.awaitNanos(Math.max(1, waiter.since + TimeUnit.SECONDS.toNanos(MAX_WAIT) - now));
+                    }
+                }
+            } finally {
+                waiters.remove(waiter);
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        Metrics.metricRegistry().timer(MetricNames.API_WAIT).update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Takes a token without waiting, if one is available and no call is waiting for it.
+     * @return true if a token was taken
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            return waiters.isEmpty() && reserve(System.nanoTime()) == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a token if one is available.
+     * @return 0 if a token was taken, otherwise the time to wait for one in nanoseconds
+     */
+    private long reserve(long now) {
+        if (paused) {
+            if (pausedUntil - now > 0) {
+                return pausedUntil - now;
+            }
+            paused = false;
+        }
+        if (rate <= 0) {
+            return 0;
+        }
+        tokens = Math.min(burst(), tokens + (now - refilled) * rate / TimeUnit.SECONDS.toNanos(1));
+        refilled = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) * TimeUnit.SECONDS.toNanos(1) / rate));
+    }
+
+    private Waiter next(long now) {
+        Waiter next = null;
+        for (Waiter waiter : waiters) {
+            if (next == null || waiter.isBefore(next, now)) {
+                next = waiter;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Stops admitting calls after the API server throttled the client.
+     * @param seconds the delay requested by the API server
+     */
+    public void throttled(long seconds) {
+        Metrics.metricRegistry().counter(MetricNames.API_THROTTLED).inc();
+        LOGGER.log(Level.FINE, "Kubernetes API throttled calls from {0}, pausing for {1}s", new Object[] {
+            name, seconds
+        });
+        lock.lock();
+        try {
+            long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            if (!paused || until - pausedUntil > 0) {
+                pausedUntil = until;
+            }
+            paused = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return an interceptor scheduling the calls of a client through this scheduler
+     */
+    @NonNull
+    Interceptor interceptor() {
+        return new SchedulingInterceptor();
+    }
+
+    private static final class Waiter {
+        private final ApiPriority priority;
+        private final long sequence;
+        private final long since;
+
+        Waiter(ApiPriority priority, long sequence, long since) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.since = since;
+        }
+
+        boolean isBefore(Waiter other, long now) {
+            boolean overdue = now - since >= TimeUnit.SECONDS.toNanos(MAX_WAIT);
+            boolean otherOverdue = now - other.since >= TimeUnit.SECONDS.toNanos(MAX_WAIT);
+            if (overdue != otherOverdue) {
+                return overdue;
+            }
+            if (!overdue && priority != other.priority) {
+                return priority.compareTo(other.priority) < 0;
+            }
+            return sequence < other.sequence;
+        }
+    }
+
+    private final class SchedulingInterceptor implements Interceptor {
+        @Override
+        public void before(BasicBuilder builder, HttpRequest request, RequestTags tags) {
+            if (!ApiPriority.isScoped()) {
+                tryAcquire();
+                return;
+            }
+            try {
+                acquire(ApiPriority.current());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KubernetesClientException("Interrupted while waiting for the Kubernetes API of " + name, e);
+            }
+        }
+
+        @Override
+        public CompletableFuture<Boolean> afterFailure(
+                BasicBuilder builder, HttpResponse<?> response, RequestTags tags) {
+            if (response.code() == 429) {
+                throttled(retryAfter(response.header("Retry-After")));
+            }
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    static long retryAfter(String header) {
+        if (header != null) {
+            try {
+                return Math.max(1, Long.parseLong(header.trim()));
+            } catch (NumberFormatException e) {
+                // HTTP dates are not used by the Kubernetes API server
+            }
+        }
+        return DEFAULT_RETRY_AFTER;
+    }
+}
@@ -0,0 +1,205 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import com.codahale.metrics.Gauge;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import io.fabric8.kubernetes.client.http.AsyncBody;
+import io.fabric8.kubernetes.client.http.HttpRequest;
+import io.fabric8.kubernetes.client.http.HttpResponse;
+import io.fabric8.kubernetes.client.http.Interceptor;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.metrics.api.Metrics;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Stops the plugin from calling the API server of a cloud while it is unreachable.
+ * <p>
+ * The breaker is fed by the outcome of the API calls made by the clients of the cloud. After
+ * {@link #FAILURE_THRESHOLD} consecutive connection failures or server errors, it opens: provisioning, reaping and
+ * garbage collection skip the cloud. After {@link #OPEN_DURATION} seconds it becomes half open and lets a single
+ * caller through as a probe. Any successful call closes the breaker again, while a failure opens it for another
+ * period.
+ */
+@Restricted(NoExternalUse.class)
+public final class KubernetesCircuitBreaker {
+    private static final Logger LOGGER = Logger.getLogger(KubernetesCircuitBreaker.class.getName());
+
+    static final String INTERCEPTOR = "jenkins-circuit-breaker";
+
+    private static final int FAILURE_THRESHOLD =
+            SystemProperties.getInteger(KubernetesCircuitBreaker.class.getName() + ".failureThreshold", 5);
+
+    private static final long OPEN_DURATION =
+            SystemProperties.getLong(KubernetesCircuitBreaker.class.getName() + ".openDuration", 30L);
+
+    private static final ConcurrentMap<String, KubernetesCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final long openDuration;
+    private State state = State.CLOSED;
+    private int failures;
+    /**
+     * When the breaker opened, or when the last probe was let through.
+     */
+    private long since;
+
+    KubernetesCircuitBreaker(@NonNull String name) {
+        this(name, TimeUnit.SECONDS.toNanos(OPEN_DURATION));
+    }
+
+    KubernetesCircuitBreaker(@NonNull String name, long openDuration) {
+        this.name = name;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * @param cloudName the name of the cloud
+     * @return the circuit breaker of the cloud
+     */
+    @NonNull
+    public static KubernetesCircuitBreaker forCloud(@NonNull String cloudName) {
+        return breakers.computeIfAbsent(cloudName, KubernetesCircuitBreaker::new);
+    }
+
+    /**
+     * Forgets the state of the breaker of a cloud, for instance after its configuration changed.
+     * @param cloudName the name of the cloud
+     */
+    public static void reset(@NonNull String cloudName) {
+        breakers.remove(cloudName);
+    }
+
+    static void resetAll() {
+        breakers.clear();
+    }
+
+    /**
+     * @return the number of clouds whose API server is considered unreachable
+     */
+    public static int getOpenCount() {
+        int open = 0;
+        for (KubernetesCircuitBreaker breaker : breakers.values()) {
+            if (breaker.getState() != State.CLOSED) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void registerMetrics() {
+        Metrics.metricRegistry()
+                .gauge(MetricNames.API_CIRCUIT_OPEN, () -> (Gauge<Integer>) KubernetesCircuitBreaker::getOpenCount);
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Checks whether calls to the API server are currently rejected, without letting a probe through. To be used
+     * where no call is made right away, such as when checking whether a cloud can provision agents.
+     * @return true if calls are rejected until the next probe
+     */
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED && System.nanoTime() - since < openDuration;
+    }
+
+    /**
+     * Checks whether the API server may be called, right before calling it. While the breaker is half open, only the first caller after
+     * each period is allowed, as a probe.
+     * @return true if the API server may be called
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+            case HALF_OPEN:
+                long now = System.nanoTime();
+                if (now - since < openDuration) {
+                    return false;
+                }
+                // let a probe through, and another one if it did not call the API server within a period
+                state = State.HALF_OPEN;
+                since = now;
+                LOGGER.log(Level.FINE, "Probing Kubernetes API server of {0}", name);
+                return true;
+            default:
+                throw new IllegalStateException(state.name());
+        }
+    }
+
+    /**
+     * Records that the API server answered a call.
+     */
+    public synchronized void onSuccess() {
+        failures = 0;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            LOGGER.log(Level.INFO, "Kubernetes API server of {0} is reachable again", name);
+        }
+    }
+
+    /**
+     * Records that a call could not reach the API server or failed with a server error.
+     */
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= FAILURE_THRESHOLD)) {
+            if (state == State.CLOSED) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "Kubernetes API server of {0} is unreachable, pausing calls for {1}s",
+                        new Object[] {name, TimeUnit.NANOSECONDS.toSeconds(openDuration)});
+            }
+            Metrics.metricRegistry().counter(MetricNames.API_CIRCUIT_OPENED).inc();
+            state = State.OPEN;
+            since = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return an interceptor feeding this breaker with the outcome of the calls of a client
+     */
+    @NonNull
+    Interceptor interceptor() {
+        return new BreakerInterceptor();
+    }
+
+    static boolean isServerFailure(int code) {
+        return code == 500 || code == 502 || code == 503 || code == 504;
+    }
+
+    private final class BreakerInterceptor implements Interceptor {
+        @Override
+        public void after(
+                HttpRequest request, HttpResponse<?> response, AsyncBody.Consumer<List<ByteBuffer>> consumer) {
+            if (isServerFailure(response.code())) {
+                onFailure();
+            } else {
+                onSuccess();
+            }
+        }
+
+        @Override
+        public void afterConnectionFailure(HttpRequest request, Throwable failure) {
+            onFailure();
+        }
+    }
+}
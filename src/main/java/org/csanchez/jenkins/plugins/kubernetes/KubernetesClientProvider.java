@@ -1,59 +1,133 @@
 package org.csanchez.jenkins.plugins.kubernetes;
 
+import com.codahale.metrics.Gauge;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
 import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
 import hudson.model.Saveable;
 import hudson.model.listeners.SaveableListener;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jenkins.metrics.api.Metrics;
 import jenkins.model.Jenkins;
+import jenkins.util.Timer;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 /**
  * Manages the Kubernetes client creation per cloud
+ * <p>
+ * A client replaced in the cache, for instance because the cloud configuration changed, is closed once its leases
+ * have been released, after a grace period for the calls in flight.
  */
 public class KubernetesClientProvider {
 
     private static final Logger LOGGER = Logger.getLogger(KubernetesClientProvider.class.getName());
 
     /**
-     * Client expiration in seconds.
+     * Client expiration in seconds, clients do not expire if 0.
      *
-     * Some providers such as Amazon EKS use a token with 15 minutes expiration, so expire clients after 10 minutes.
+     * Clients of {@link org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthToken} credentials refresh their token in
+     * place, see {@link KubernetesFactoryAdapter#TOKEN_REFRESH}, so they do not expire. Other credentials, such as
+     * certificates or kubeconfig files, may be rotated under the same id, so their clients are rebuilt after 10
+     * minutes. Expired clients are retired, so leased clients stay open until released.
      */
     private static final long CACHE_EXPIRATION = Long.getLong(
             KubernetesClientProvider.class.getPackage().getName() + ".clients.cacheExpiration",
             TimeUnit.MINUTES.toSeconds(10));
 
-    private static final Cache<String, Client> clients = Caffeine.newBuilder()
-            .expireAfterWrite(CACHE_EXPIRATION, TimeUnit.SECONDS)
-            .removalListener((key, value, cause) -> {
-                Client client = (Client) value;
-                if (client != null) {
-                    LOGGER.log(
-                            Level.FINE, () -> "Expiring Kubernetes client " + key + " " + client.client + ": " + cause);
-                }
-            })
-            .build();
+    /**
+     * Delay in seconds before a client that is no longer cached gets closed, so that calls in flight can complete.
+     * Clients with leases are only closed once the last lease is released.
+     */
+    @SuppressFBWarnings(
+            value = "MS_SHOULD_BE_FINAL",
+            justification = "Allow tests or groovy console to change the value")
+    static long RETIREMENT_GRACE = Long.getLong(
+            KubernetesClientProvider.class.getPackage().getName() + ".clients.retirementGrace", 60);
+
+    private static final Cache<String, Client> clients = newCache();
+
+    /**
+     * Clients no longer cached, waiting to be closed.
+     */
+    private static final Set<Client> retired = ConcurrentHashMap.newKeySet();
 
     private KubernetesClientProvider() {}
 
+    private static Cache<String, Client> newCache() {
+        return Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, Client>() {
+                    @Override
+                    public long expireAfterCreate(String key, Client value, long currentTime) {
+                        if (CACHE_EXPIRATION <= 0 || value.refreshingToken) {
+                            return Long.MAX_VALUE;
+                        }
+                        return TimeUnit.SECONDS.toNanos(CACHE_EXPIRATION);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Client value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Client value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener((String key, Client client, RemovalCause cause) -> {
+                    if (client != null) {
+                        LOGGER.log(
+                                Level.FINE,
+                                () -> "Retiring Kubernetes client " + key + " " + client.client + ": " + cause);
+                        retire(client);
+                    }
+                })
+                .build();
+    }
+
     static KubernetesClient createClient(KubernetesCloud cloud) throws KubernetesAuthException, IOException {
+        return getOrCreate(cloud).getClient();
+    }
+
+    /**
+     * Leases the client of a cloud, for long-lived usages such as watches, informers or exec sessions.
+     * The client is not closed as long as the lease is not released, even if the cloud configuration changes.
+     * @param cloud the cloud
+     * @return the lease, to be closed once the client is no longer used
+     */
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    public static Lease lease(@NonNull KubernetesCloud cloud) throws KubernetesAuthException, IOException {
+        return new Lease(getOrCreate(cloud));
+    }
+
+    private static Client getOrCreate(KubernetesCloud cloud) throws KubernetesAuthException, IOException {
         String displayName = cloud.getDisplayName();
-        final Client c = clients.getIfPresent(displayName);
+        KubernetesApiScheduler scheduler = KubernetesApiScheduler.forCloud(cloud.name);
+        scheduler.setRate(cloud.getApiRateLimit());
+        Client c = clients.getIfPresent(displayName);
         if (c == null) {
-            KubernetesClient client = new KubernetesFactoryAdapter(
+            KubernetesFactoryAdapter factory = new KubernetesFactoryAdapter(
                             cloud.getServerUrl(),
                             cloud.getNamespace(),
                             cloud.getServerCertificate(),
@@ -63,12 +137,69 @@ public class KubernetesClientProvider {
                             cloud.getReadTimeout(),
                             cloud.getMaxRequestsPerHost(),
                             cloud.isUseJenkinsProxy())
-                    .createClient();
-            clients.put(displayName, new Client(getValidity(cloud), client));
+                    .withScheduler(scheduler)
+                    .withMetrics(new KubernetesApiMetrics(cloud.name))
+                    .withCircuitBreaker(KubernetesCircuitBreaker.forCloud(cloud.name));
+            KubernetesClient client = factory.createClient();
+            c = new Client(getValidity(cloud), client, factory.isRefreshingToken());
+            clients.put(displayName, c);
             LOGGER.log(Level.FINE, "Created new Kubernetes client: {0} {1}", new Object[] {displayName, client});
-            return client;
         }
-        return c.getClient();
+        return c;
+    }
+
+    private static void retire(Client client) {
+        client.retiredAt = System.currentTimeMillis();
+        retired.add(client);
+        Timer.get().schedule(KubernetesClientProvider::closeRetired, RETIREMENT_GRACE, TimeUnit.SECONDS);
+    }
+
+    private static void closeRetired() {
+        long now = System.currentTimeMillis();
+        for (Client client : retired) {
+            if (client.leases.get() == 0 && now - client.retiredAt >= TimeUnit.SECONDS.toMillis(RETIREMENT_GRACE)) {
+                if (retired.remove(client)) {
+                    LOGGER.log(Level.FINE, "Closing Kubernetes client {0}", client.client);
+                    try {
+                        client.client.close();
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Failed to close Kubernetes client " + client.client, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of clients not closed yet, including retired ones still in use
+     */
+    @Restricted(NoExternalUse.class)
+    public static int getLiveClients() {
+        return (int) clients.estimatedSize() + retired.size();
+    }
+
+    /**
+     * @return the number of leases not released yet, that is long-lived connections to the Kubernetes API
+     */
+    @Restricted(NoExternalUse.class)
+    public static int getLeases() {
+        int leases = 0;
+        for (Client client : clients.asMap().values()) {
+            leases += client.leases.get();
+        }
+        for (Client client : retired) {
+            leases += client.leases.get();
+        }
+        return leases;
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    @Restricted(NoExternalUse.class)
+    public static void registerMetrics() {
+        Metrics.metricRegistry()
+                .gauge(MetricNames.CLIENTS_LIVE, () -> (Gauge<Integer>) KubernetesClientProvider::getLiveClients);
+        Metrics.metricRegistry()
+                .gauge(MetricNames.CLIENTS_LEASES, () -> (Gauge<Integer>) KubernetesClientProvider::getLeases);
     }
 
     /**
@@ -96,10 +227,14 @@ public class KubernetesClientProvider {
     private static class Client {
         private final KubernetesClient client;
         private final int validity;
+        private final boolean refreshingToken;
+        private final AtomicInteger leases = new AtomicInteger();
+        private volatile long retiredAt;
 
-        public Client(int validity, KubernetesClient client) {
+        public Client(int validity, KubernetesClient client, boolean refreshingToken) {
             this.client = client;
             this.validity = validity;
+            this.refreshingToken = refreshingToken;
         }
 
         public KubernetesClient getClient() {
@@ -109,6 +244,38 @@ public class KubernetesClientProvider {
         public int getValidity() {
             return validity;
         }
+
+        void release() {
+            if (leases.decrementAndGet() == 0 && retiredAt != 0) {
+                Timer.get().schedule(KubernetesClientProvider::closeRetired, RETIREMENT_GRACE, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * A lease on a client, which keeps it open until released.
+     */
+    @Restricted(NoExternalUse.class)
+    public static final class Lease implements Closeable {
+        private final Client client;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Lease(Client client) {
+            this.client = client;
+            client.leases.incrementAndGet();
+        }
+
+        @NonNull
+        public KubernetesClient getClient() {
+            return client.getClient();
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                client.release();
+            }
+        }
     }
 
     @Restricted(NoExternalUse.class) // testing only
@@ -119,6 +286,7 @@ public class KubernetesClientProvider {
     @Restricted(NoExternalUse.class) // testing only
     public static void invalidateAll() {
         clients.invalidateAll();
+        KubernetesCircuitBreaker.resetAll();
     }
 
     // set ordinal to 1 so it runs ahead of Reaper
@@ -134,6 +302,9 @@ public class KubernetesClientProvider {
                     Client client = clients.getIfPresent(displayName);
                     if (client == null || client.getValidity() == getValidity(cloud)) {
                         cloudDisplayNames.remove(displayName);
+                    } else {
+                        // the new configuration may reach the API server
+                        KubernetesCircuitBreaker.reset(cloud.name);
                     }
                 }
                 // Remove missing / invalid clients
@@ -40,6 +40,7 @@ import io.fabric8.kubernetes.client.VersionInfo;
 import io.fabric8.kubernetes.client.dsl.PodResource;
 import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
 import jakarta.servlet.ServletException;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.StringReader;
 import java.net.ConnectException;
@@ -53,6 +54,7 @@ import java.security.cert.Certificate;
 import java.security.interfaces.DSAPublicKey;
 import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collection;
@@ -63,8 +65,6 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.authentication.tokens.api.AuthenticationTokens;
@@ -80,7 +80,7 @@ import org.apache.commons.lang.StringUtils;
 import org.csanchez.jenkins.plugins.kubernetes.pipeline.PodTemplateMap;
 import org.csanchez.jenkins.plugins.kubernetes.pod.retention.Default;
 import org.csanchez.jenkins.plugins.kubernetes.pod.retention.PodRetention;
-import org.csanchez.jenkins.plugins.kubernetes.watch.PodStatusEventHandler;
+import org.csanchez.jenkins.plugins.kubernetes.watch.LaunchingPodEventHandler;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuth;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
 import org.jenkinsci.plugins.plaincredentials.impl.StringCredentialsImpl;
@@ -107,6 +107,7 @@ import org.kohsuke.stapler.verb.POST;
 public class KubernetesCloud extends Cloud implements PodTemplateGroup {
     public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 32;
     public static final Integer DEFAULT_WAIT_FOR_POD_SEC = 600;
+    public static final int DEFAULT_PROVISIONING_WEIGHT = 1;
 
     private static final Logger LOGGER = Logger.getLogger(KubernetesCloud.class.getName());
 
@@ -167,6 +168,13 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
     // Integer to differentiate null from 0
     private Integer waitForPodSec = DEFAULT_WAIT_FOR_POD_SEC;
 
+    private int provisioningWeight = DEFAULT_PROVISIONING_WEIGHT;
+
+    /**
+     * Number of Kubernetes API calls per second, unlimited if 0.
+     */
+    private int apiRateLimit;
+
     @CheckForNull
     private PodRetention podRetention = PodRetention.getKubernetesCloudDefault();
 
@@ -178,10 +186,15 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
             new DescribableList<>(Saveable.NOOP);
 
     /**
-     * namespace -> informer
-     * Use to watch pod events per namespace.
+     * Incremented every time {@link #templates} is modified through this class or {@link #getTemplates()}.
      */
-    private transient volatile Map<String, SharedIndexInformer<Pod>> informers = new ConcurrentHashMap<>();
+    private transient volatile long templatesModCount;
+
+    /**
+     * Lazily built index of {@link #getAllTemplates()}.
+     */
+    @CheckForNull
+    private transient volatile PodTemplateIndex templateIndex;
 
     @DataBoundConstructor
     public KubernetesCloud(String name) {
@@ -267,9 +280,15 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
         this.defaultsProviderTemplate = Util.fixEmpty(defaultsProviderTemplate);
     }
 
+    /**
+     * Returns the pod templates configured for this cloud.
+     * The returned list is a view, so that template lookups are kept up-to-date when it is modified. Templates whose
+     * name or label is changed in place are indexed again on the next lookup.
+     * @return the pod templates configured for this cloud.
+     */
     @NonNull
     public List<PodTemplate> getTemplates() {
-        return templates;
+        return new TemplatesView();
     }
 
     /**
@@ -284,6 +303,62 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
     @DataBoundSetter
     public void setTemplates(@NonNull List<PodTemplate> templates) {
         this.templates = new ArrayList<>(templates);
+        templatesModified();
+    }
+
+    private synchronized void templatesModified() {
+        templatesModCount++;
+    }
+
+    /**
+     * View of {@link #templates} recording its modifications.
+     */
+    private final class TemplatesView extends AbstractList<PodTemplate> {
+        @Override
+        public PodTemplate get(int index) {
+            return templates.get(index);
+        }
+
+        @Override
+        public int size() {
+            return templates.size();
+        }
+
+        @Override
+        public PodTemplate set(int index, PodTemplate element) {
+            PodTemplate previous = templates.set(index, element);
+            templatesModified();
+            return previous;
+        }
+
+        @Override
+        public void add(int index, PodTemplate element) {
+            templates.add(index, element);
+            templatesModified();
+        }
+
+        @Override
+        public PodTemplate remove(int index) {
+            PodTemplate removed = templates.remove(index);
+            templatesModified();
+            return removed;
+        }
+    }
+
+    /**
+     * Returns the index of all pod templates for this cloud, rebuilding it if any template source changed.
+     */
+    @NonNull
+    private PodTemplateIndex getTemplateIndex() {
+        long[] modificationCounts = PodTemplateSource.getModificationCounts(this);
+        PodTemplateIndex index = templateIndex;
+        if (index == null || !index.isUpToDate(modificationCounts)) {
+            index = new PodTemplateIndex(getAllTemplates(), modificationCounts);
+            if (modificationCounts != null) {
+                templateIndex = index;
+            }
+        }
+        return index;
     }
 
     public String getServerUrl() {
@@ -646,6 +721,23 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
         return client;
     }
 
+    /**
+     * Leases the client of this cloud, for long-lived usages such as watches, informers or exec sessions.
+     * @return the lease, to be closed once the client is no longer used
+     * @see KubernetesClientProvider#lease(KubernetesCloud)
+     */
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    public KubernetesClientProvider.Lease leaseClient() throws KubernetesAuthException, IOException {
+        try {
+            return KubernetesClientProvider.lease(this);
+        } catch (KubernetesAuthException e) {
+            // same as connect(), cached credentials may no longer be valid
+            KubernetesClientProvider.invalidate(this.getDisplayName());
+            return KubernetesClientProvider.lease(this);
+        }
+    }
+
     /**
      * Get {@link PodResource} from {@link KubernetesClient}.
      * @param namespace namespace pod is located in, possibly null
@@ -682,9 +774,44 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
         }
     }
 
+    /**
+     * Gets a pod, from the shared informer of its namespace when possible.
+     * <p>
+     * Informers are created for the namespaces where agents are launched. Their store is only used once it has
+     * synced and while its watch is connected, so a pod read from it lags behind the API server by no more than the
+     * delivery of the watch events, usually well under a second. Otherwise, and when the pod is not in the store
+     * (for instance because its labels do not match those of the informer), the pod is read from the API server.
+     * @param namespace namespace pod is located in, possibly null
+     * @param podName pod name, not null
+     * @return the pod, or null if it does not exist
+     * @throws KubernetesAuthException if cluster authentication failed
+     * @throws IOException if connection failed
+     * @see #getPodResource(String, String)
+     */
+    @CheckForNull
+    @Restricted(NoExternalUse.class)
+    public Pod getPod(@Nullable String namespace, @NonNull String podName)
+            throws KubernetesAuthException, IOException {
+        SharedIndexInformer<Pod> informer =
+                namespace == null ? null : KubernetesPodInformers.forCloud(name).getIfWatching(namespace);
+        if (informer != null) {
+            Pod pod = informer.getStore().getByKey(namespace + "/" + podName);
+            if (pod != null) {
+                Metrics.metricRegistry().counter(MetricNames.PODS_CACHE_HIT).inc();
+                return pod;
+            }
+        }
+        Metrics.metricRegistry().counter(MetricNames.PODS_CACHE_MISS).inc();
+        return getPodResource(namespace, podName).get();
+    }
+
     @Override
     public Collection<NodeProvisioner.PlannedNode> provision(
             @NonNull final Cloud.CloudState state, final int excessWorkload) {
+        // the planned agents create their pods right away, a half open breaker only lets the first round through
+        if (!KubernetesCircuitBreaker.forCloud(name).allowRequest()) {
+            return Collections.emptyList();
+        }
         var limitRegistrationResults = new LimitRegistrationResults(this);
         try {
             Label label = state.getLabel();
@@ -720,6 +847,7 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
                     Metrics.metricRegistry()
                             .counter(MetricNames.PROVISION_NODES)
                             .inc(plannedNodes.size());
+                    WarmPool.onMiss(podTemplate, plannedNodes.size());
                     return plannedNodes;
                 }
             }
@@ -832,7 +960,9 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
 
     @Override
     public boolean canProvision(@NonNull Cloud.CloudState state) {
-        return getTemplate(state.getLabel()) != null;
+        // skip the cloud while its API server is unreachable, so that other clouds take the load
+        return getTemplate(state.getLabel()) != null
+                && !KubernetesCircuitBreaker.forCloud(name).isOpen();
     }
 
     /**
@@ -842,7 +972,7 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
      */
     @CheckForNull
     public PodTemplate getTemplate(@CheckForNull Label label) {
-        return PodTemplateUtils.getTemplateByLabel(label, getAllTemplates());
+        return getTemplateIndex().getFirstMatching(label);
     }
 
     @SuppressWarnings("unused ") // stapler
@@ -853,19 +983,20 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
 
     @CheckForNull
     public PodTemplate getTemplateById(@NonNull String id) {
-        return getAllTemplates().stream()
-                .filter(t -> id.equals(t.getId()))
-                .findFirst()
-                .orElse(null);
+        return getTemplateIndex().getById(id);
     }
 
     /**
      * Unwraps the given pod template.
+     * The result is cached until the templates of this cloud or its defaults provider template change.
      * @param podTemplate the pod template to unwrap.
      * @return the unwrapped pod template
      */
     public PodTemplate getUnwrappedTemplate(PodTemplate podTemplate) {
-        return PodTemplateUtils.unwrap(podTemplate, getDefaultsProviderTemplate(), getAllTemplates());
+        if (podTemplate == null) {
+            return null;
+        }
+        return getTemplateIndex().unwrap(podTemplate, getDefaultsProviderTemplate());
     }
 
     /**
@@ -885,7 +1016,8 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
      * @return list of matching templates
      */
     public List<PodTemplate> getTemplatesFor(@CheckForNull Label label) {
-        return PodTemplateFilter.applyAll(this, getAllTemplates(), label);
+        // PodTemplateLabelFilter runs first, so only templates matching the label need to go through the filters
+        return PodTemplateFilter.applyAll(this, getTemplateIndex().getMatching(label), label);
     }
 
     /**
@@ -896,6 +1028,7 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
     public void addTemplate(PodTemplate t) {
         this.checkManagePermission();
         this.templates.add(t);
+        templatesModified();
         // t.parent = this;
     }
 
@@ -908,6 +1041,7 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
     public void removeTemplate(PodTemplate t) {
         this.checkManagePermission();
         this.templates.remove(t);
+        templatesModified();
     }
 
     @Override
@@ -958,6 +1092,8 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
                 && Objects.equals(getPodLabels(), that.getPodLabels())
                 && Objects.equals(podRetention, that.podRetention)
                 && Objects.equals(waitForPodSec, that.waitForPodSec)
+                && provisioningWeight == that.provisioningWeight
+                && apiRateLimit == that.apiRateLimit
                 && Objects.equals(garbageCollection, that.garbageCollection)
                 && useJenkinsProxy == that.useJenkinsProxy;
     }
@@ -987,7 +1123,9 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
                 maxRequestsPerHost,
                 podRetention,
                 useJenkinsProxy,
-                garbageCollection);
+                garbageCollection,
+                provisioningWeight,
+                apiRateLimit);
     }
 
     public Integer getWaitForPodSec() {
@@ -999,6 +1137,31 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
         this.waitForPodSec = waitForPodSec;
     }
 
+    /**
+     * @return the relative weight of this cloud when spreading provisioning across several Kubernetes clouds
+     */
+    public int getProvisioningWeight() {
+        return provisioningWeight;
+    }
+
+    @DataBoundSetter
+    public void setProvisioningWeight(int provisioningWeight) {
+        this.provisioningWeight = Math.max(provisioningWeight, 1);
+    }
+
+    /**
+     * @return the number of Kubernetes API calls per second allowed for this cloud, unlimited if 0
+     * @see KubernetesApiScheduler
+     */
+    public int getApiRateLimit() {
+        return apiRateLimit;
+    }
+
+    @DataBoundSetter
+    public void setApiRateLimit(int apiRateLimit) {
+        this.apiRateLimit = Math.max(apiRateLimit, 0);
+    }
+
     @Restricted(NoExternalUse.class) // jelly
     public PodTemplate.DescriptorImpl getTemplateDescriptor() {
         return (PodTemplate.DescriptorImpl) Jenkins.get().getDescriptorOrDie(PodTemplate.class);
@@ -1363,7 +1526,9 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
                 + podLabels + ", usageRestricted="
                 + usageRestricted + ", maxRequestsPerHost="
                 + maxRequestsPerHost + ", waitForPodSec="
-                + waitForPodSec + ", podRetention="
+                + waitForPodSec + ", provisioningWeight="
+                + provisioningWeight + ", apiRateLimit="
+                + apiRateLimit + ", podRetention="
                 + podRetention + ", useJenkinsProxy="
                 + useJenkinsProxy + ", templates="
                 + templates + ", garbageCollection="
@@ -1394,6 +1559,9 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
         if (waitForPodSec == null) {
             waitForPodSec = DEFAULT_WAIT_FOR_POD_SEC;
         }
+        if (provisioningWeight <= 0) {
+            provisioningWeight = DEFAULT_PROVISIONING_WEIGHT;
+        }
         if (podLabels == null && labels != null) {
             setPodLabels(PodLabel.fromMap(labels));
         }
@@ -1412,40 +1580,44 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
     }
 
     public void registerPodInformer(KubernetesSlave node) {
-        // even having readResolve initializing informers is not enough, there are some special cases where XStream will
-        // not call it, so let us make sure it is initialized before using
-        if (informers == null) {
-            synchronized (this) {
-                if (informers == null) {
-                    informers = new ConcurrentHashMap<>();
-                }
-            }
+        String namespace = node.getNamespace();
+        if (namespace != null) {
+            KubernetesPodInformers.forCloud(name).acquire(this, namespace, node.getNodeName(), true);
         }
-        informers.computeIfAbsent(node.getNamespace(), (n) -> {
-            KubernetesClient client;
-            try {
-                client = connect();
-            } catch (KubernetesAuthException | IOException e) {
-                LOGGER.log(
-                        Level.WARNING,
-                        "Cannot connect to K8s cloud. Pod events will not be available in build logs.",
-                        e);
-                return null;
-            }
-            Map<String, String> labelsFilter = new HashMap<>(getPodLabelsMap());
-            String jenkinsUrlLabel = sanitizeLabel(getJenkinsUrlOrNull());
-            if (jenkinsUrlLabel != null) {
-                labelsFilter.put(PodTemplateBuilder.LABEL_KUBERNETES_CONTROLLER, jenkinsUrlLabel);
-            }
-            SharedIndexInformer<Pod> inform = client.pods()
-                    .inNamespace(node.getNamespace())
-                    .withLabels(labelsFilter)
-                    .inform(new PodStatusEventHandler(), TimeUnit.SECONDS.toMillis(30));
-            LOGGER.info(String.format(
-                    "Registered informer to watch pod events on namespace [%s], with labels [%s] on cloud [%s]",
-                    namespace, labelsFilter, name));
-            return inform;
-        });
+    }
+
+    /**
+     * Watches a pod being launched through the shared informer of its namespace.
+     * @param namespace the namespace of the pod
+     * @param podName the name of the pod
+     * @param listener notified of the current state of the pod, then of each of its changes
+     * @param diagnostics whether pod events should be printed in build logs
+     * @return a handle to stop watching, {@code null} if the namespace cannot be watched
+     * @see KubernetesPodInformers
+     */
+    @CheckForNull
+    @Restricted(NoExternalUse.class)
+    public Closeable watchLaunchingPod(
+            @NonNull String namespace,
+            @NonNull String podName,
+            @NonNull LaunchingPodEventHandler.Listener listener,
+            boolean diagnostics) {
+        return KubernetesPodInformers.forCloud(name)
+                .watchLaunchingPod(this, namespace, podName, listener, diagnostics);
+    }
+
+    /**
+     * @return the labels selecting the agent pods created by this cloud for this controller
+     */
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    public Map<String, String> getAgentPodLabels() {
+        Map<String, String> labels = new HashMap<>(getPodLabelsMap());
+        String jenkinsUrlLabel = sanitizeLabel(getJenkinsUrlOrNull());
+        if (jenkinsUrlLabel != null) {
+            labels.put(PodTemplateBuilder.LABEL_KUBERNETES_CONTROLLER, jenkinsUrlLabel);
+        }
+        return labels;
     }
 
     @Extension
@@ -1455,6 +1627,11 @@ public class KubernetesCloud extends Cloud implements PodTemplateGroup {
         public List<PodTemplate> getList(@NonNull KubernetesCloud cloud) {
             return cloud.getTemplates();
         }
+
+        @Override
+        protected long getModificationCount(@NonNull KubernetesCloud cloud) {
+            return cloud.templatesModCount;
+        }
     }
 
     @Initializer(after = InitMilestone.SYSTEM_CONFIG_LOADED)
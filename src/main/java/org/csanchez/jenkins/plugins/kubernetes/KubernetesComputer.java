@@ -81,22 +81,24 @@ public class KubernetesComputer extends AbstractCloudComputer<KubernetesSlave> {
             return Collections.emptyList();
         }
 
-        KubernetesSlave slave = getNode();
-        if (slave == null) {
-            return Collections.emptyList();
-        }
+        try (ApiPriority.Scope scope = ApiPriority.UI.open()) {
+            KubernetesSlave slave = getNode();
+            if (slave == null) {
+                return Collections.emptyList();
+            }
 
-        KubernetesCloud cloud = slave.getKubernetesCloud();
-        KubernetesClient client = cloud.connect();
+            KubernetesCloud cloud = slave.getKubernetesCloud();
+            KubernetesClient client = cloud.connect();
 
-        String namespace = StringUtils.defaultIfBlank(slave.getNamespace(), client.getNamespace());
-        Pod pod = client.pods().inNamespace(namespace).withName(getName()).get();
+            String namespace = StringUtils.defaultIfBlank(slave.getNamespace(), client.getNamespace());
+            Pod pod = cloud.getPod(namespace, getName());
 
-        if (pod == null) {
-            return Collections.emptyList();
-        }
+            if (pod == null) {
+                return Collections.emptyList();
+            }
 
-        return pod.getSpec().getContainers();
+            return pod.getSpec().getContainers();
+        }
     }
 
     @Exported
@@ -106,35 +108,45 @@ public class KubernetesComputer extends AbstractCloudComputer<KubernetesSlave> {
             return Collections.emptyList();
         }
 
-        KubernetesSlave slave = getNode();
-        if (slave != null) {
-            KubernetesCloud cloud = slave.getKubernetesCloud();
-            KubernetesClient client = cloud.connect();
+        try (ApiPriority.Scope scope = ApiPriority.UI.open()) {
+            KubernetesSlave slave = getNode();
+            if (slave != null) {
+                KubernetesCloud cloud = slave.getKubernetesCloud();
+                KubernetesClient client = cloud.connect();
 
-            String namespace = StringUtils.defaultIfBlank(slave.getNamespace(), client.getNamespace());
+                String namespace = StringUtils.defaultIfBlank(slave.getNamespace(), client.getNamespace());
 
-            Pod pod = client.pods().inNamespace(namespace).withName(getName()).get();
-            if (pod != null) {
-                ObjectMeta podMeta = pod.getMetadata();
-                String podNamespace = podMeta.getNamespace();
-
-                Map<String, String> fields = new HashMap<>();
-                fields.put("involvedObject.uid", podMeta.getUid());
-                fields.put("involvedObject.name", podMeta.getName());
-                fields.put("involvedObject.namespace", podNamespace);
-
-                EventList eventList = client.v1()
-                        .events()
-                        .inNamespace(podNamespace)
-                        .withFields(fields)
-                        .list();
-                if (eventList != null) {
-                    return eventList.getItems();
+                // events of the namespace are watched while agents are launched or running there
+                List<Event> watched = namespace == null
+                        ? null
+                        : KubernetesPodInformers.forCloud(cloud.name).getPodEvents(namespace, getName());
+                if (watched != null) {
+                    return watched;
+                }
+
+                Pod pod = cloud.getPod(namespace, getName());
+                if (pod != null) {
+                    ObjectMeta podMeta = pod.getMetadata();
+                    String podNamespace = podMeta.getNamespace();
+
+                    Map<String, String> fields = new HashMap<>();
+                    fields.put("involvedObject.uid", podMeta.getUid());
+                    fields.put("involvedObject.name", podMeta.getName());
+                    fields.put("involvedObject.namespace", podNamespace);
+
+                    EventList eventList = client.v1()
+                            .events()
+                            .inNamespace(podNamespace)
+                            .withFields(fields)
+                            .list();
+                    if (eventList != null) {
+                        return eventList.getItems();
+                    }
                 }
             }
-        }
 
-        return Collections.emptyList();
+            return Collections.emptyList();
+        }
     }
 
     public void doContainerLog(@QueryParameter String containerId, StaplerRequest2 req, StaplerResponse2 rsp)
@@ -143,49 +155,51 @@ public class KubernetesComputer extends AbstractCloudComputer<KubernetesSlave> {
 
         ByteBuffer outputStream = new ByteBuffer();
         LargeText text = new LargeText(outputStream, false);
-        KubernetesSlave slave = getNode();
-        if (slave != null) {
-            KubernetesCloud cloud = slave.getKubernetesCloud();
-            String namespace = StringUtils.defaultIfBlank(slave.getNamespace(), cloud.getNamespace());
-            PodResource resource = cloud.getPodResource(namespace, containerId);
-
-            // check if pod exists
-            Pod pod = resource.get();
-            if (pod == null) {
-                outputStream.write("Pod not found".getBytes(StandardCharsets.UTF_8));
-                text.markAsComplete();
-                text.doProgressText(req, rsp);
-                return;
-            }
+        try (ApiPriority.Scope scope = ApiPriority.UI.open()) {
+            KubernetesSlave slave = getNode();
+            if (slave != null) {
+                KubernetesCloud cloud = slave.getKubernetesCloud();
+                String namespace = StringUtils.defaultIfBlank(slave.getNamespace(), cloud.getNamespace());
+                PodResource resource = cloud.getPodResource(namespace, containerId);
+
+                // check if pod exists
+                Pod pod = resource.get();
+                if (pod == null) {
+                    outputStream.write("Pod not found".getBytes(StandardCharsets.UTF_8));
+                    text.markAsComplete();
+                    text.doProgressText(req, rsp);
+                    return;
+                }
 
-            // Check if container exists and is running (maybe terminated if ephemeral)
-            Optional<ContainerStatus> status = PodContainerSource.lookupContainerStatus(pod, containerId);
-            if (status.isPresent()) {
-                ContainerStatus cs = status.get();
-                if (cs.getState().getTerminated() != null) {
-                    outputStream.write("Container terminated".getBytes(StandardCharsets.UTF_8));
+                // Check if container exists and is running (maybe terminated if ephemeral)
+                Optional<ContainerStatus> status = PodContainerSource.lookupContainerStatus(pod, containerId);
+                if (status.isPresent()) {
+                    ContainerStatus cs = status.get();
+                    if (cs.getState().getTerminated() != null) {
+                        outputStream.write("Container terminated".getBytes(StandardCharsets.UTF_8));
+                        text.markAsComplete();
+                        text.doProgressText(req, rsp);
+                        return;
+                    }
+                } else {
+                    outputStream.write("Container not found".getBytes(StandardCharsets.UTF_8));
                     text.markAsComplete();
                     text.doProgressText(req, rsp);
                     return;
                 }
+
+                // Get logs
+                try (LogWatch ignore =
+                        resource.inContainer(containerId).tailingLines(20).watchLog(outputStream)) {
+                    text.doProgressText(req, rsp);
+                } catch (KubernetesClientException kce) {
+                    LOGGER.log(Level.WARNING, "Failed getting container logs for " + containerId, kce);
+                }
             } else {
-                outputStream.write("Container not found".getBytes(StandardCharsets.UTF_8));
+                outputStream.write("Node not available".getBytes(StandardCharsets.UTF_8));
                 text.markAsComplete();
                 text.doProgressText(req, rsp);
-                return;
-            }
-
-            // Get logs
-            try (LogWatch ignore =
-                    resource.inContainer(containerId).tailingLines(20).watchLog(outputStream)) {
-                text.doProgressText(req, rsp);
-            } catch (KubernetesClientException kce) {
-                LOGGER.log(Level.WARNING, "Failed getting container logs for " + containerId, kce);
             }
-        } else {
-            outputStream.write("Node not available".getBytes(StandardCharsets.UTF_8));
-            text.markAsComplete();
-            text.doProgressText(req, rsp);
         }
     }
 
@@ -227,6 +241,7 @@ public class KubernetesComputer extends AbstractCloudComputer<KubernetesSlave> {
 
     public void setLaunching(boolean launching) {
         this.launching = launching;
+        DefaultInProvisioning.refresh(getNode());
     }
 
     /**
@@ -243,5 +258,6 @@ public class KubernetesComputer extends AbstractCloudComputer<KubernetesSlave> {
         if (acceptingTasks) {
             launching = false;
         }
+        DefaultInProvisioning.refresh(getNode());
     }
 }
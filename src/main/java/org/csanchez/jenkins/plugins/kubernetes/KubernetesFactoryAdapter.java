@@ -2,6 +2,7 @@ package org.csanchez.jenkins.plugins.kubernetes;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
 
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
@@ -17,10 +18,12 @@ import io.fabric8.kubernetes.client.Config;
 import io.fabric8.kubernetes.client.ConfigBuilder;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientBuilder;
+import io.fabric8.kubernetes.client.OAuthTokenProvider;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import jenkins.authentication.tokens.api.AuthenticationTokens;
 import jenkins.model.Jenkins;
@@ -28,6 +31,7 @@ import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuth;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthConfig;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
+import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthToken;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 
@@ -45,6 +49,15 @@ public class KubernetesFactoryAdapter {
     private static final int DEFAULT_CONNECT_TIMEOUT = 5;
     private static final int DEFAULT_READ_TIMEOUT = 15;
 
+    /**
+     * Period in seconds after which token based credentials are fetched again by the client.
+     *
+     * Some providers such as Amazon EKS use a token with 15 minutes expiration, so refresh tokens after 10 minutes.
+     */
+    static final long TOKEN_REFRESH = Long.getLong(
+            KubernetesFactoryAdapter.class.getPackage().getName() + ".clients.tokenRefresh",
+            TimeUnit.MINUTES.toSeconds(10));
+
     private final String serviceAddress;
     private final String namespace;
 
@@ -60,6 +73,15 @@ public class KubernetesFactoryAdapter {
     private final int maxRequestsPerHost;
     private final boolean useJenkinsProxy;
 
+    @CheckForNull
+    private KubernetesApiScheduler scheduler;
+
+    @CheckForNull
+    private KubernetesApiMetrics metrics;
+
+    @CheckForNull
+    private KubernetesCircuitBreaker circuitBreaker;
+
     public KubernetesFactoryAdapter(
             String serviceAddress,
             @CheckForNull String caCertData,
@@ -154,6 +176,33 @@ public class KubernetesFactoryAdapter {
         this.useJenkinsProxy = useJenkinsProxy;
     }
 
+    /**
+     * @param scheduler the scheduler of the API calls made by the client
+     * @return this instance
+     */
+    KubernetesFactoryAdapter withScheduler(@CheckForNull KubernetesApiScheduler scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * @param metrics the metrics of the API calls made by the client
+     * @return this instance
+     */
+    KubernetesFactoryAdapter withMetrics(@CheckForNull KubernetesApiMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * @param circuitBreaker the circuit breaker fed by the API calls made by the client
+     * @return this instance
+     */
+    KubernetesFactoryAdapter withCircuitBreaker(@CheckForNull KubernetesCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
     private static String decodeBase64IfNeeded(String caCertData) {
         if (Util.fixEmpty(caCertData) != null) {
             try {
@@ -167,6 +216,14 @@ public class KubernetesFactoryAdapter {
         return caCertData;
     }
 
+    /**
+     * @return true if the client fetches its token again from the credentials every {@link #TOKEN_REFRESH} seconds,
+     * so that it does not need to be rebuilt when the credentials change
+     */
+    public boolean isRefreshingToken() {
+        return auth instanceof KubernetesAuthToken;
+    }
+
     public KubernetesClient createClient() throws KubernetesAuthException {
 
         ConfigBuilder builder;
@@ -181,10 +238,16 @@ public class KubernetesFactoryAdapter {
         }
 
         if (auth != null) {
-            builder =
-                    auth.decorate(builder, new KubernetesAuthConfig(builder.getMasterUrl(), caCertData, skipTlsVerify));
+            KubernetesAuthConfig authConfig =
+                    new KubernetesAuthConfig(builder.getMasterUrl(), caCertData, skipTlsVerify);
+            builder = auth.decorate(builder, authConfig);
             // If authentication is provided, disable autoconfigure flag to deactivate auto refresh
             builder = builder.withAutoConfigure(false);
+            if (auth instanceof KubernetesAuthToken) {
+                // refresh the token in place rather than rebuilding the client when it expires
+                builder.withOauthTokenProvider(new RefreshingTokenProvider(
+                        (KubernetesAuthToken) auth, authConfig, builder.getOauthToken()));
+            }
         }
 
         if (skipTlsVerify) {
@@ -228,7 +291,24 @@ public class KubernetesFactoryAdapter {
                 }
             }
         }
-        return new KubernetesClientBuilder().withConfig(builder.build()).build();
+        KubernetesClientBuilder clientBuilder = new KubernetesClientBuilder().withConfig(builder.build());
+        KubernetesApiScheduler s = scheduler;
+        KubernetesApiMetrics m = metrics;
+        KubernetesCircuitBreaker cb = circuitBreaker;
+        if (s != null || m != null || cb != null) {
+            clientBuilder.withHttpClientBuilderConsumer(b -> {
+                if (s != null) {
+                    b.addOrReplaceInterceptor(KubernetesApiScheduler.INTERCEPTOR, s.interceptor());
+                }
+                if (m != null) {
+                    b.addOrReplaceInterceptor(KubernetesApiMetrics.INTERCEPTOR, m.interceptor());
+                }
+                if (cb != null) {
+                    b.addOrReplaceInterceptor(KubernetesCircuitBreaker.INTERCEPTOR, cb.interceptor());
+                }
+            });
+        }
+        return clientBuilder.build();
     }
 
     /**
@@ -273,6 +353,38 @@ public class KubernetesFactoryAdapter {
                 + ", connectTimeout=" + connectTimeout + ", readTimeout=" + readTimeout + "]";
     }
 
+    /**
+     * Provides the token of the client, fetched again from the credentials every {@link #TOKEN_REFRESH} seconds.
+     */
+    private static final class RefreshingTokenProvider implements OAuthTokenProvider {
+        private final KubernetesAuthToken auth;
+        private final KubernetesAuthConfig config;
+        private String token;
+        private long fetched;
+
+        RefreshingTokenProvider(KubernetesAuthToken auth, KubernetesAuthConfig config, String token) {
+            this.auth = auth;
+            this.config = config;
+            this.token = token;
+            this.fetched = System.nanoTime();
+        }
+
+        @Override
+        public synchronized String getToken() {
+            if (System.nanoTime() - fetched >= TimeUnit.SECONDS.toNanos(TOKEN_REFRESH)) {
+                try {
+                    token = auth.getToken(config);
+                    LOGGER.log(FINE, "Refreshed Kubernetes token");
+                } catch (KubernetesAuthException | RuntimeException e) {
+                    // keep using the previous token, it may still be valid
+                    LOGGER.log(WARNING, "Failed to refresh Kubernetes token", e);
+                }
+                fetched = System.nanoTime();
+            }
+            return token;
+        }
+    }
+
     @CheckForNull
     private static StandardCredentials resolveCredentials(@CheckForNull String credentialsId, @NonNull ItemGroup owner)
             throws KubernetesAuthException {
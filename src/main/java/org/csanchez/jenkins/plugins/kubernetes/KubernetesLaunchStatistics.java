@@ -0,0 +1,170 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Recent launch outcomes per kubernetes cloud.
+ * <p>
+ * Samples decay exponentially with their age, so that a cloud recovering from an outage or a slowdown
+ * regains its standing after a few {@link #HALF_LIFE half-lives}.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public final class KubernetesLaunchStatistics {
+
+    /**
+     * Age after which a sample only weighs half as much as a new one, in milliseconds.
+     */
+    static final long HALF_LIFE = SystemProperties.getLong(
+            KubernetesLaunchStatistics.class.getName() + ".halfLife", TimeUnit.MINUTES.toMillis(10));
+
+    private final ConcurrentMap<String, CloudStatistics> clouds = new ConcurrentHashMap<>();
+
+    private final LongSupplier clock;
+
+    private final long halfLife;
+
+    public KubernetesLaunchStatistics() {
+        this(System::currentTimeMillis, HALF_LIFE);
+    }
+
+    /**
+     * @param clock the time source, in milliseconds
+     * @param halfLife the half-life of samples, in milliseconds
+     */
+    public KubernetesLaunchStatistics(@NonNull LongSupplier clock, long halfLife) {
+        this.clock = clock;
+        this.halfLife = Math.max(halfLife, 1);
+    }
+
+    /**
+     * @return the singleton instance
+     */
+    public static KubernetesLaunchStatistics get() {
+        return ExtensionList.lookupSingleton(KubernetesLaunchStatistics.class);
+    }
+
+    /**
+     * Records an agent that came online.
+     * @param cloudName the name of the cloud the agent runs on
+     * @param timeToOnline the time it took for the agent to come online, in milliseconds
+     */
+    public void recordLaunched(@NonNull String cloudName, long timeToOnline) {
+        statistics(cloudName).record(clock.getAsLong(), Math.max(timeToOnline, 0), false);
+    }
+
+    /**
+     * Records an agent that failed to be created or to come online.
+     * @param cloudName the name of the cloud the agent was meant to run on
+     */
+    public void recordFailure(@NonNull String cloudName) {
+        statistics(cloudName).record(clock.getAsLong(), 0, true);
+    }
+
+    /**
+     * @param cloudName the name of the cloud
+     * @return the decayed statistics of the cloud
+     */
+    @NonNull
+    public Snapshot getSnapshot(@NonNull String cloudName) {
+        CloudStatistics statistics = clouds.get(cloudName);
+        return statistics == null ? Snapshot.EMPTY : statistics.snapshot(clock.getAsLong());
+    }
+
+    /**
+     * Forgets the statistics of a cloud.
+     * @param cloudName the name of the cloud
+     */
+    public void reset(@NonNull String cloudName) {
+        clouds.remove(cloudName);
+    }
+
+    private CloudStatistics statistics(String cloudName) {
+        return clouds.computeIfAbsent(cloudName, k -> new CloudStatistics());
+    }
+
+    private final class CloudStatistics {
+        private long lastUpdate;
+        private double launches;
+        private double timeToOnline;
+        private double attempts;
+        private double failures;
+
+        synchronized void record(long now, long duration, boolean failure) {
+            decay(now);
+            attempts++;
+            if (failure) {
+                failures++;
+            } else {
+                launches++;
+                timeToOnline += duration;
+            }
+        }
+
+        synchronized Snapshot snapshot(long now) {
+            decay(now);
+            return new Snapshot(
+                    launches > 0 ? timeToOnline / launches : Double.NaN,
+                    attempts > 0 ? failures / attempts : 0,
+                    attempts);
+        }
+
+        private void decay(long now) {
+            if (lastUpdate != 0 && now > lastUpdate) {
+                double factor = Math.pow(0.5, (double) (now - lastUpdate) / halfLife);
+                launches *= factor;
+                timeToOnline *= factor;
+                attempts *= factor;
+                failures *= factor;
+            }
+            lastUpdate = Math.max(lastUpdate, now);
+        }
+    }
+
+    /**
+     * Decayed launch statistics of a cloud.
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Double.NaN, 0, 0);
+
+        private final double timeToOnline;
+        private final double failureRate;
+        private final double weight;
+
+        Snapshot(double timeToOnline, double failureRate, double weight) {
+            this.timeToOnline = timeToOnline;
+            this.failureRate = failureRate;
+            this.weight = weight;
+        }
+
+        /**
+         * @return the average time to online of recent launches in milliseconds, {@link Double#NaN} if unknown
+         */
+        public double getTimeToOnline() {
+            return timeToOnline;
+        }
+
+        /**
+         * @return the ratio of recent launch attempts that failed, between 0 and 1
+         */
+        public double getFailureRate() {
+            return failureRate;
+        }
+
+        /**
+         * @return the decayed number of recent launch attempts backing this snapshot
+         */
+        public double getWeight() {
+            return weight;
+        }
+    }
+}
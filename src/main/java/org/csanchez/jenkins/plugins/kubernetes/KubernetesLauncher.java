@@ -28,20 +28,28 @@ import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
 
+import com.codahale.metrics.Gauge;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
 import hudson.Functions;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
 import hudson.model.Descriptor;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.slaves.ComputerLauncher;
+import hudson.slaves.ComputerListener;
 import hudson.slaves.JNLPLauncher;
 import hudson.slaves.SlaveComputer;
 import io.fabric8.kubernetes.api.model.ContainerStatus;
 import io.fabric8.kubernetes.api.model.ObjectMeta;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodStatus;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.readiness.Readiness;
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -49,7 +57,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -72,8 +84,26 @@ public class KubernetesLauncher extends JNLPLauncher {
 
     private static final Logger LOGGER = Logger.getLogger(KubernetesLauncher.class.getName());
 
+    /**
+     * Attempts to create a pod that conflicts with a pod which cannot be found.
+     */
+    private static final int CREATE_ATTEMPTS = 3;
+
+    /**
+     * Interval at which a pod that cannot be watched is polled while launching.
+     */
+    private static final long POLL_INTERVAL = TimeUnit.SECONDS.toMillis(1L);
+
+    private static final AtomicInteger LAUNCHES_IN_PROGRESS = new AtomicInteger();
+
     private volatile boolean launched = false;
 
+    /**
+     * Launch in progress, if any.
+     */
+    @CheckForNull
+    private transient volatile Launch currentLaunch;
+
     private static final boolean DISABLE_DIAGNOSTIC_LOGS =
             SystemProperties.getBoolean(KubernetesLauncher.class.getName() + ".disableDiagnosticLogs", false);
 
@@ -97,9 +127,16 @@ public class KubernetesLauncher extends JNLPLauncher {
         return !launched;
     }
 
+    /**
+     * Launches the agent.
+     * <p>
+     * The launch runs on the calling thread until the agent connects: {@link SlaveComputer} fails the launch if this
+     * method returns without a channel, and the listener is only valid until then. Waiting for the pod does not poll
+     * the API server when the namespace is watched by a shared informer, and the API calls are throttled per cloud
+     * by the {@link KubernetesApiScheduler}.
+     */
     @Override
-    @SuppressFBWarnings(value = "SWL_SLEEP_WITH_LOCK_HELD", justification = "This is fine")
-    public synchronized void launch(SlaveComputer computer, TaskListener listener) {
+    public void launch(SlaveComputer computer, TaskListener listener) throws InterruptedException {
         if (!(computer instanceof KubernetesComputer)) {
             throw new IllegalArgumentException("This Launcher can be used only with KubernetesComputer");
         }
@@ -116,14 +153,127 @@ public class KubernetesLauncher extends JNLPLauncher {
             computer.setAcceptingTasks(true);
             return;
         }
+        Launch launch;
+        boolean pending;
+        synchronized (this) {
+            launch = currentLaunch;
+            pending = launch != null;
+            if (!pending) {
+                launch = new Launch(kubernetesComputer, node, listener);
+                currentLaunch = launch;
+            }
+        }
+        if (pending) {
+            LOGGER.log(FINE, "Agent is already being launched: {0}", node.getNodeName());
+            try {
+                launch.done.get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            return;
+        }
+        LAUNCHES_IN_PROGRESS.incrementAndGet();
+        try (ApiPriority.Scope scope = ApiPriority.LAUNCH.open()) {
+            launch.run();
+        } finally {
+            LAUNCHES_IN_PROGRESS.decrementAndGet();
+            synchronized (this) {
+                if (currentLaunch == launch) {
+                    currentLaunch = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of launches in progress
+     */
+    public static int getLaunchesInProgress() {
+        return LAUNCHES_IN_PROGRESS.get();
+    }
 
-        String cloudName = node.getCloudName();
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void registerMetrics() {
+        Metrics.metricRegistry()
+                .gauge(
+                        MetricNames.LAUNCHES_IN_PROGRESS,
+                        () -> (Gauge<Integer>) KubernetesLauncher::getLaunchesInProgress);
+    }
 
-        try {
-            PodTemplate template = node.getTemplate();
-            KubernetesCloud cloud = node.getKubernetesCloud();
-            KubernetesClient client = cloud.connect();
-            Pod pod;
+    /**
+     * The launch of an agent: building the pod, creating it, waiting for it to be ready, then waiting for the agent
+     * to connect.
+     */
+    private final class Launch {
+        private final KubernetesComputer computer;
+        private final KubernetesSlave node;
+        private final TaskListener listener;
+        private final String cloudName;
+        private final long launchStart = System.currentTimeMillis();
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        private final CompletableFuture<Void> connected = new CompletableFuture<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private KubernetesCloud cloud;
+        private PodTemplate template;
+        private KubernetesClient client;
+        private Pod pod;
+        private String podName;
+        private String namespace;
+
+        @CheckForNull
+        private Closeable podWatch;
+
+        private long readyTimestamp;
+        private long lastReport;
+        private volatile String status;
+        private volatile List<ContainerStatus> containerStatuses;
+        private boolean failing;
+
+        /**
+         * The containers whose last lines are logged when the launch fails, if any.
+         */
+        @CheckForNull
+        private volatile List<ContainerStatus> failedContainers;
+
+        @CheckForNull
+        private volatile Map<String, Integer> exitCodes;
+
+        Launch(KubernetesComputer computer, KubernetesSlave node, TaskListener listener) {
+            this.computer = computer;
+            this.node = node;
+            this.listener = listener;
+            this.cloudName = node.getCloudName();
+        }
+
+        void run() throws InterruptedException {
+            try {
+                cloud = node.getKubernetesCloud();
+                if (prepare()) {
+                    create();
+                    waitForAgent();
+                    launched();
+                }
+                done.complete(null);
+            } catch (InterruptedException e) {
+                fail(e);
+                failed(e);
+                done.completeExceptionally(e);
+                throw e;
+            } catch (Throwable t) {
+                fail(t);
+                failed(t);
+                done.completeExceptionally(t);
+                throw new RuntimeException(t);
+            }
+        }
+
+        /**
+         * @return {@code false} if the pod could not be built and the agent got terminated
+         */
+        private boolean prepare() throws Exception {
+            template = node.getTemplate();
+            client = cloud.connect();
             try {
                 pod = template.build(node);
             } catch (PodDecoratorException e) {
@@ -135,13 +285,13 @@ public class KubernetesLauncher extends JNLPLauncher {
                 e.printStackTrace(listener.fatalError("Failed to build pod definition"));
                 setProblem(e);
                 terminateOrLog(node);
-                return;
+                return false;
             }
             node.assignPod(pod);
 
-            String podName = pod.getMetadata().getName();
+            podName = pod.getMetadata().getName();
 
-            String namespace = Arrays.asList( //
+            namespace = Arrays.asList( //
                             pod.getMetadata().getNamespace(), template.getNamespace(), client.getNamespace()) //
                     .stream()
                     .filter(s -> StringUtils.isNotBlank(s))
@@ -153,167 +303,269 @@ public class KubernetesLauncher extends JNLPLauncher {
             if (!DISABLE_DIAGNOSTIC_LOGS) {
                 cloud.registerPodInformer(node);
             }
+            return true;
+        }
 
-            // if the controller was interrupted after creating the pod but before it connected back, then
-            // the pod might already exist and the creating logic must be skipped.
-            Pod existingPod =
-                    client.pods().inNamespace(namespace).withName(podName).get();
-            if (existingPod == null) {
-                LOGGER.log(FINE, () -> "Creating Pod: " + cloudName + " " + namespace + "/" + podName);
-                try {
-                    pod = client.pods().inNamespace(namespace).create(pod);
-                } catch (KubernetesClientException e) {
-                    Metrics.metricRegistry()
-                            .counter(MetricNames.CREATION_FAILED)
-                            .inc();
-                    int httpCode = e.getCode();
-                    if (400 <= httpCode && httpCode < 500) { // 4xx
-                        if (httpCode == 403 && e.getMessage().contains("is forbidden: exceeded quota")) {
-                            node.getRunListener()
-                                    .getLogger()
-                                    .printf(
-                                            "WARNING: Unable to create pod: %s %s/%s because kubernetes resource quota exceeded. %n%s%nRetrying...%n%n",
-                                            cloudName,
-                                            namespace,
-                                            pod.getMetadata().getName(),
-                                            e.getMessage());
-                        } else if (httpCode == 409
-                                && e.getMessage().contains("Operation cannot be fulfilled on resourcequotas")) {
-                            // See: https://github.com/kubernetes/kubernetes/issues/67761 ; A retry usually works.
-                            node.getRunListener()
-                                    .getLogger()
-                                    .printf(
-                                            "WARNING: Unable to create pod: %s %s/%s because kubernetes resource quota update conflict. %n%s%nRetrying...%n%n",
-                                            cloudName,
-                                            namespace,
-                                            pod.getMetadata().getName(),
-                                            e.getMessage());
-                        } else {
-                            node.getRunListener()
-                                    .getLogger()
-                                    .printf(
-                                            "ERROR: Unable to create pod %s %s/%s.%n%s%n",
-                                            cloudName,
-                                            namespace,
-                                            pod.getMetadata().getName(),
-                                            e.getMessage());
-                            PodUtils.cancelQueueItemFor(pod, e.getMessage());
-                        }
-                    } else if (500 <= httpCode && httpCode < 600) { // 5xx
-                        LOGGER.log(FINE, "Kubernetes returned HTTP code {0} {1}. Retrying...", new Object[] {
-                            e.getCode(), e.getStatus()
-                        });
+        private void create() {
+            LOGGER.log(FINE, () -> "Creating Pod: " + cloudName + " " + namespace + "/" + podName);
+            PodCreation creation;
+            try {
+                creation = createOrGet(client, namespace, pod);
+            } catch (KubernetesClientException e) {
+                Metrics.metricRegistry().counter(MetricNames.CREATION_FAILED).inc();
+                int httpCode = e.getCode();
+                if (isAlreadyExists(e)) {
+                    // the pod kept being deleted after conflicting, let the agent be provisioned again
+                    LOGGER.log(WARNING, "Pod {0}/{1} already exists but could not be found. Retrying...", new Object[] {
+                        namespace, podName
+                    });
+                } else if (400 <= httpCode && httpCode < 500) { // 4xx
+                    if (httpCode == 403 && e.getMessage().contains("is forbidden: exceeded quota")) {
+                        node.getRunListener()
+                                .getLogger()
+                                .printf(
+                                        "WARNING: Unable to create pod: %s %s/%s because kubernetes resource quota exceeded. %n%s%nRetrying...%n%n",
+                                        cloudName,
+                                        namespace,
+                                        pod.getMetadata().getName(),
+                                        e.getMessage());
+                    } else if (httpCode == 409
+                            && e.getMessage().contains("Operation cannot be fulfilled on resourcequotas")) {
+                        // See: https://github.com/kubernetes/kubernetes/issues/67761 ; A retry usually works.
+                        node.getRunListener()
+                                .getLogger()
+                                .printf(
+                                        "WARNING: Unable to create pod: %s %s/%s because kubernetes resource quota update conflict. %n%s%nRetrying...%n%n",
+                                        cloudName,
+                                        namespace,
+                                        pod.getMetadata().getName(),
+                                        e.getMessage());
                     } else {
-                        LOGGER.log(WARNING, "Kubernetes returned unhandled HTTP code {0} {1}", new Object[] {
-                            e.getCode(), e.getStatus()
-                        });
+                        node.getRunListener()
+                                .getLogger()
+                                .printf(
+                                        "ERROR: Unable to create pod %s %s/%s.%n%s%n",
+                                        cloudName,
+                                        namespace,
+                                        pod.getMetadata().getName(),
+                                        e.getMessage());
+                        PodUtils.cancelQueueItemFor(pod, e.getMessage());
                     }
-                    throw e;
+                } else if (500 <= httpCode && httpCode < 600) { // 5xx
+                    LOGGER.log(FINE, "Kubernetes returned HTTP code {0} {1}. Retrying...", new Object[] {
+                        e.getCode(), e.getStatus()
+                    });
+                } else {
+                    LOGGER.log(WARNING, "Kubernetes returned unhandled HTTP code {0} {1}", new Object[] {
+                        e.getCode(), e.getStatus()
+                    });
                 }
+                throw e;
+            }
+            pod = creation.pod;
+            if (creation.existed) {
+                LOGGER.log(INFO, () -> "Pod already exists: " + cloudName + " " + namespace + "/" + podName);
+                listener.getLogger().printf("Pod already exists: %s %s/%s%n", cloudName, namespace, podName);
+            } else {
                 LOGGER.log(INFO, () -> "Created Pod: " + cloudName + " " + namespace + "/" + podName);
                 listener.getLogger().printf("Created Pod: %s %s/%s%n", cloudName, namespace, podName);
                 Metrics.metricRegistry().counter(MetricNames.PODS_CREATED).inc();
 
                 node.getRunListener().getLogger().printf("Created Pod: %s %s/%s%n", cloudName, namespace, podName);
-            } else {
-                LOGGER.log(INFO, () -> "Pod already exists: " + cloudName + " " + namespace + "/" + podName);
-                listener.getLogger().printf("Pod already exists: %s %s/%s%n", cloudName, namespace, podName);
             }
-            kubernetesComputer.setLaunching(true);
+            computer.setLaunching(true);
 
             ObjectMeta podMetadata = pod.getMetadata();
             template.getWorkspaceVolume().createVolume(client, podMetadata);
             template.getVolumes().forEach(volume -> volume.createVolume(client, podMetadata));
+        }
 
-            client.pods()
-                    .inNamespace(namespace)
-                    .withName(podName)
-                    .waitUntilReady(template.getSlaveConnectTimeout(), TimeUnit.SECONDS);
-
-            LOGGER.log(INFO, () -> "Pod is running: " + cloudName + " " + namespace + "/" + podName);
-
-            // We need the pod to be running and connected before returning
-            // otherwise this method keeps being called multiple times
-            // so wait for agent to be online
-            int waitForSlaveToConnect = template.getSlaveConnectTimeout();
-            int waitedForSlave;
-
-            SlaveComputer slaveComputer = null;
-            String status = null;
-            List<ContainerStatus> containerStatuses = null;
-            long lastReportTimestamp = System.currentTimeMillis();
-            for (waitedForSlave = 0; waitedForSlave < waitForSlaveToConnect; waitedForSlave++) {
-                slaveComputer = node.getComputer();
-                if (slaveComputer == null) {
-                    Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
-                    throw new IllegalStateException("Node was deleted, computer is null");
+        /**
+         * Follows the pod until the agent connects.
+         * <p>
+         * Pod changes come from the shared informer of the namespace, or from polling the pod if the namespace
+         * cannot be watched. The agent coming online is notified by {@link ComputerListenerImpl}.
+         */
+        private void waitForAgent() throws Exception {
+            int timeout = template.getSlaveConnectTimeout();
+            podWatch = cloud.watchLaunchingPod(namespace, podName, this::onPod, !DISABLE_DIAGNOSTIC_LOGS);
+            try {
+                lastReport = System.currentTimeMillis();
+                if (!await(ready, lastReport + TimeUnit.SECONDS.toMillis(timeout), timeout)) {
+                    throw new IllegalStateException("Pod " + podName + " is not ready after " + timeout + " seconds");
                 }
-                if (slaveComputer.isOnline()) {
-                    break;
+                LOGGER.log(INFO, () -> "Pod is running: " + cloudName + " " + namespace + "/" + podName);
+                readyTimestamp = System.currentTimeMillis();
+                // We need the pod to be running and connected before completing the launch
+                // so wait for agent to be online
+                if (!await(connected, readyTimestamp + TimeUnit.SECONDS.toMillis(timeout), timeout)) {
+                    timedOut();
+                }
+            } finally {
+                if (podWatch != null) {
+                    try {
+                        podWatch.close();
+                    } catch (IOException e) {
+                        LOGGER.log(FINE, "Failed to stop watching pod " + podName, e);
+                    }
                 }
+            }
+        }
 
-                // Check that the pod hasn't failed already
-                pod = client.pods().inNamespace(namespace).withName(podName).get();
-                if (pod == null) {
-                    Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
-                    throw new IllegalStateException("Pod no longer exists: " + podName);
+        /**
+         * Waits for a step of the launch, polling the pod if it cannot be watched.
+         * @param step completed by {@link #onPod} or {@link #onOnline}
+         * @param deadline when to stop waiting
+         * @param timeout the connection timeout, in seconds
+         * @return {@code false} if the step is not complete by the deadline
+         */
+        private boolean await(CompletableFuture<Void> step, long deadline, int timeout) throws Exception {
+            while (!step.isDone()) {
+                SlaveComputer slaveComputer = node.getComputer();
+                if (slaveComputer != null && slaveComputer.isOnline()) {
+                    onOnline();
+                    break;
                 }
-                status = pod.getStatus().getPhase();
-                if (POD_TERMINATED_STATES.contains(status)) {
-                    Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
-                    Metrics.metricRegistry()
-                            .counter(MetricNames.metricNameForPodStatus(status))
-                            .inc();
-                    logLastLines(containerStatuses, podName, namespace, node, null, client);
-                    throw new IllegalStateException("Pod '" + podName + "' is terminated. Status: " + status);
+                if (podWatch == null) {
+                    onPod(client.pods().inNamespace(namespace).withName(podName).get());
+                }
+                long now = System.currentTimeMillis();
+                if (now >= deadline) {
+                    return step.isDone();
+                }
+                if (now - lastReport >= REPORT_INTERVAL) {
+                    report(timeout);
+                    lastReport = now;
+                }
+                try {
+                    step.get(Math.min(deadline - now, POLL_INTERVAL), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // check again
                 }
+            }
+            try {
+                step.get();
+                return true;
+            } catch (ExecutionException e) {
+                List<ContainerStatus> containers = failedContainers;
+                if (containers != null) {
+                    logLastLines(containers, podName, namespace, node, exitCodes, client);
+                }
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        }
+
+        void onOnline() {
+            ready.complete(null);
+            connected.complete(null);
+        }
+
+        private void fail(Throwable t) {
+            ready.completeExceptionally(t);
+            connected.completeExceptionally(t);
+        }
 
-                containerStatuses = pod.getStatus().getContainerStatuses();
-                List<ContainerStatus> terminatedContainers = new ArrayList<>();
-                for (ContainerStatus info : containerStatuses) {
-                    if (info != null) {
-                        if (info.getState().getTerminated() != null) {
-                            // Container has errored
-                            LOGGER.log(INFO, "Container is terminated {0} [{2}]: {1}", new Object[] {
-                                podName, info.getState().getTerminated(), info.getName()
-                            });
-                            listener.getLogger()
-                                    .printf(
-                                            "Container is terminated %1$s [%3$s]: %2$s%n",
-                                            podName, info.getState().getTerminated(), info.getName());
-                            Metrics.metricRegistry()
-                                    .counter(MetricNames.LAUNCH_FAILED)
-                                    .inc();
-                            terminatedContainers.add(info);
-                        }
+        /**
+         * Checks the state of the pod. Called from the informer thread, so API calls are left to the launching thread.
+         * @param current the current state of the pod, {@code null} if it has been deleted
+         */
+        private synchronized void onPod(@CheckForNull Pod current) {
+            if (connected.isDone() || failing) {
+                return;
+            }
+            if (current == null) {
+                failing = true;
+                Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+                fail(new IllegalStateException("Pod no longer exists: " + podName));
+                return;
+            }
+            pod = current;
+            PodStatus podStatus = current.getStatus();
+            if (podStatus == null) {
+                return;
+            }
+            status = podStatus.getPhase();
+            if (POD_TERMINATED_STATES.contains(status)) {
+                failing = true;
+                Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+                Metrics.metricRegistry()
+                        .counter(MetricNames.metricNameForPodStatus(status))
+                        .inc();
+                failedContainers = containerStatuses;
+                fail(new IllegalStateException("Pod '" + podName + "' is terminated. Status: " + status));
+                return;
+            }
+
+            containerStatuses = podStatus.getContainerStatuses();
+            List<ContainerStatus> terminatedContainers = new ArrayList<>();
+            for (ContainerStatus info : containerStatuses) {
+                if (info != null) {
+                    if (info.getState().getTerminated() != null) {
+                        // Container has errored
+                        LOGGER.log(INFO, "Container is terminated {0} [{2}]: {1}", new Object[] {
+                            podName, info.getState().getTerminated(), info.getName()
+                        });
+                        listener.getLogger()
+                                .printf(
+                                        "Container is terminated %1$s [%3$s]: %2$s%n",
+                                        podName, info.getState().getTerminated(), info.getName());
+                        Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+                        terminatedContainers.add(info);
                     }
                 }
+            }
+            if (!terminatedContainers.isEmpty()) {
+                failing = true;
+                Map<String, Integer> errors = terminatedContainers.stream()
+                        .collect(Collectors.toMap(
+                                ContainerStatus::getName,
+                                (info) -> info.getState().getTerminated().getExitCode()));
+                failedContainers = terminatedContainers;
+                exitCodes = errors;
+                fail(new IllegalStateException("Containers are terminated with exit codes: " + errors));
+                return;
+            }
 
-                checkTerminatedContainers(terminatedContainers, podName, namespace, node, client);
+            if (Readiness.isPodReady(current)) {
+                ready.complete(null);
+            }
+        }
 
-                if (lastReportTimestamp + REPORT_INTERVAL < System.currentTimeMillis()) {
-                    LOGGER.log(INFO, "Waiting for agent to connect ({1}/{2}): {0}", new Object[] {
-                        podName, waitedForSlave, waitForSlaveToConnect
-                    });
-                    listener.getLogger()
-                            .printf(
-                                    "Waiting for agent to connect (%2$s/%3$s): %1$s%n",
-                                    podName, waitedForSlave, waitForSlaveToConnect);
-                    lastReportTimestamp = System.currentTimeMillis();
-                }
-                Thread.sleep(1000);
+        private void report(int timeout) {
+            if (ready.isDone()) {
+                long waitedForSlave = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - readyTimestamp);
+                LOGGER.log(INFO, "Waiting for agent to connect ({1}/{2}): {0}", new Object[] {
+                    podName, waitedForSlave, timeout
+                });
+                listener.getLogger()
+                        .printf("Waiting for agent to connect (%2$s/%3$s): %1$s%n", podName, waitedForSlave, timeout);
             }
-            if (slaveComputer == null || slaveComputer.isOffline()) {
-                Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
-                Metrics.metricRegistry().counter(MetricNames.FAILED_TIMEOUT).inc();
+        }
 
-                logLastLines(containerStatuses, podName, namespace, node, null, client);
-                throw new IllegalStateException(
-                        "Agent is not connected after " + waitedForSlave + " seconds, status: " + status);
+        private void timedOut() {
+            SlaveComputer slaveComputer = node.getComputer();
+            if (slaveComputer == null) {
+                Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+                throw new IllegalStateException("Node was deleted, computer is null");
+            }
+            if (slaveComputer.isOnline()) {
+                onOnline();
+                return;
             }
+            Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+            Metrics.metricRegistry().counter(MetricNames.FAILED_TIMEOUT).inc();
 
-            computer.setAcceptingTasks(true);
+            logLastLines(containerStatuses, podName, namespace, node, null, client);
+            long waitedForSlave = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - readyTimestamp);
+            throw new IllegalStateException(
+                    "Agent is not connected after " + waitedForSlave + " seconds, status: " + status);
+        }
+
+        private void launched() {
+            // mark as launched first, so that listeners of the accepting tasks transition see the agent as ready
             launched = true;
+            computer.setAcceptingTasks(true);
             try {
                 // We need to persist the "launched" setting...
                 node.save();
@@ -321,7 +573,11 @@ public class KubernetesLauncher extends JNLPLauncher {
                 LOGGER.log(Level.WARNING, "Could not save() agent: " + e.getMessage(), e);
             }
             Metrics.metricRegistry().counter(MetricNames.PODS_LAUNCHED).inc();
-        } catch (Throwable ex) {
+            KubernetesLaunchStatistics.get().recordLaunched(cloudName, System.currentTimeMillis() - launchStart);
+        }
+
+        private void failed(Throwable ex) {
+            KubernetesLaunchStatistics.get().recordFailure(cloudName);
             setProblem(ex);
             Functions.printStackTrace(ex, node.getRunListener().error("Failed to launch " + node.getPodName()));
             LOGGER.log(
@@ -330,7 +586,6 @@ public class KubernetesLauncher extends JNLPLauncher {
                     ex);
             LOGGER.log(Level.FINER, "Removing Jenkins node: {0}", node.getNodeName());
             terminateOrLog(node);
-            throw new RuntimeException(ex);
         }
     }
 
@@ -342,24 +597,6 @@ public class KubernetesLauncher extends JNLPLauncher {
         }
     }
 
-    private void checkTerminatedContainers(
-            List<ContainerStatus> terminatedContainers,
-            String podId,
-            String namespace,
-            KubernetesSlave slave,
-            KubernetesClient client) {
-        if (!terminatedContainers.isEmpty()) {
-            Map<String, Integer> errors = terminatedContainers.stream()
-                    .collect(Collectors.toMap(
-                            ContainerStatus::getName,
-                            (info) -> info.getState().getTerminated().getExitCode()));
-
-            // Print the last lines of failed containers
-            logLastLines(terminatedContainers, podId, namespace, slave, errors, client);
-            throw new IllegalStateException("Containers are terminated with exit codes: " + errors);
-        }
-    }
-
     /**
      * Log the last lines of containers logs
      */
@@ -409,6 +646,86 @@ public class KubernetesLauncher extends JNLPLauncher {
         return new DescriptorImpl();
     }
 
+    /**
+     * Creates a pod, or gets it if it already exists.
+     * <p>
+     * If the controller was interrupted after creating the pod but before it connected back, then the pod might
+     * already exist and the creating logic must be skipped. A pod deleted between the conflict and its lookup is
+     * created again.
+     * @param client the client
+     * @param namespace the namespace of the pod
+     * @param pod the pod to create
+     * @return the created or existing pod
+     * @throws KubernetesClientException if the pod cannot be created, or still conflicts after
+     * {@link #CREATE_ATTEMPTS} attempts without being found
+     */
+    static PodCreation createOrGet(KubernetesClient client, String namespace, Pod pod) {
+        String name = pod.getMetadata().getName();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return new PodCreation(client.pods().inNamespace(namespace).create(pod), false);
+            } catch (KubernetesClientException e) {
+                if (!isAlreadyExists(e)) {
+                    throw e;
+                }
+                Pod existing = client.pods().inNamespace(namespace).withName(name).get();
+                if (existing != null) {
+                    Metrics.metricRegistry()
+                            .counter(MetricNames.PODS_ALREADY_EXISTING)
+                            .inc();
+                    return new PodCreation(existing, true);
+                }
+                if (attempt >= CREATE_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.log(FINE, "Pod {0}/{1} was deleted after conflicting, creating it again", new Object[] {
+                    namespace, name
+                });
+            }
+        }
+    }
+
+    /**
+     * The outcome of {@link #createOrGet}.
+     */
+    static final class PodCreation {
+        final Pod pod;
+        final boolean existed;
+
+        PodCreation(Pod pod, boolean existed) {
+            this.pod = pod;
+            this.existed = existed;
+        }
+    }
+
+    /**
+     * @return whether the creation of a resource failed because it already exists
+     */
+    private static boolean isAlreadyExists(KubernetesClientException e) {
+        return e.getCode() == 409
+                && e.getStatus() != null
+                && "AlreadyExists".equals(e.getStatus().getReason());
+    }
+
+    /**
+     * Completes the launch of agents as soon as they come online.
+     */
+    @Extension
+    public static class ComputerListenerImpl extends ComputerListener {
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            if (c instanceof KubernetesComputer) {
+                KubernetesSlave node = ((KubernetesComputer) c).getNode();
+                if (node != null && node.getLauncher() instanceof KubernetesLauncher) {
+                    Launch launch = ((KubernetesLauncher) node.getLauncher()).currentLaunch;
+                    if (launch != null) {
+                        launch.onOnline();
+                    }
+                }
+            }
+        }
+    }
+
     // Only there to avoid throwing unnecessary exceptions. KubernetesLauncher is never instantiated via UI.
     private static class DescriptorImpl extends Descriptor<ComputerLauncher> {}
 }
@@ -0,0 +1,518 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import com.codahale.metrics.Gauge;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.slaves.Cloud;
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.metrics.api.Metrics;
+import jenkins.model.Jenkins;
+import jenkins.model.NodeListener;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.csanchez.jenkins.plugins.kubernetes.watch.LaunchingPodEventHandler;
+import org.csanchez.jenkins.plugins.kubernetes.watch.PodStatusEventHandler;
+import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * The shared pod informers of a cloud, one per namespace where agents run.
+ * <p>
+ * An informer is held by the agents of its namespace, from their launch until their node is removed, and by the
+ * launches following their pod through it. Once no longer held, it is stopped after {@link #IDLE_TIMEOUT} seconds,
+ * releasing its watch, its cached pods and its lease on the client. An informer is recreated when the connection
+ * settings or the pod labels of the cloud change. Informers do not resync: the launches and the diagnostics only
+ * need the changes of the pods.
+ * <p>
+ * Along with its informer, each namespace has a single watch of the events of its pods, see
+ * {@link NamespaceEventWatcher}.
+ */
+@Restricted(NoExternalUse.class)
+public final class KubernetesPodInformers {
+    private static final Logger LOGGER = Logger.getLogger(KubernetesPodInformers.class.getName());
+
+    /**
+     * Delay before stopping an informer no longer held by any agent or launch.
+     */
+    @SuppressFBWarnings(
+            value = "MS_SHOULD_BE_FINAL",
+            justification = "Allow tests or groovy console to change the value")
+    static long IDLE_TIMEOUT =
+            SystemProperties.getLong(KubernetesPodInformers.class.getName() + ".idleTimeout", 300L);
+
+    private static final ConcurrentMap<String, KubernetesPodInformers> registry = new ConcurrentHashMap<>();
+
+    private final String cloudName;
+
+    /**
+     * Dispatches the events of the pods being launched, registered on every informer.
+     */
+    private final LaunchingPodEventHandler launchingPods = new LaunchingPodEventHandler();
+
+    /**
+     * namespace -> informer
+     */
+    private final Map<String, NamespaceInformer> informers = new ConcurrentHashMap<>();
+
+    /**
+     * namespace -> informer being started
+     */
+    private final ConcurrentMap<String, CompletableFuture<NamespaceInformer>> starting = new ConcurrentHashMap<>();
+
+    KubernetesPodInformers(@NonNull String cloudName) {
+        this.cloudName = cloudName;
+    }
+
+    /**
+     * @param cloudName the name of the cloud
+     * @return the informers of the cloud
+     */
+    @NonNull
+    public static KubernetesPodInformers forCloud(@NonNull String cloudName) {
+        return registry.computeIfAbsent(cloudName, KubernetesPodInformers::new);
+    }
+
+    /**
+     * @return the number of running informers, across all clouds
+     */
+    public static int getInformerCount() {
+        int count = 0;
+        for (KubernetesPodInformers informers : registry.values()) {
+            count += informers.informers.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of pods cached by the informers, across all clouds
+     */
+    public static int getStoreSize() {
+        int size = 0;
+        for (KubernetesPodInformers informers : registry.values()) {
+            for (NamespaceInformer ni : informers.informers.values()) {
+                size += ni.informer.getStore().listKeys().size();
+            }
+        }
+        return size;
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void registerMetrics() {
+        Metrics.metricRegistry()
+                .gauge(MetricNames.INFORMERS, () -> (Gauge<Integer>) KubernetesPodInformers::getInformerCount);
+        Metrics.metricRegistry()
+                .gauge(MetricNames.INFORMERS_STORE_SIZE, () -> (Gauge<Integer>) KubernetesPodInformers::getStoreSize);
+    }
+
+    @Terminator
+    public static void shutdown() {
+        for (KubernetesPodInformers informers : registry.values()) {
+            informers.stopAll();
+        }
+        registry.clear();
+    }
+
+    /**
+     * Holds the informer of a namespace, creating it if needed.
+     * @param cloud the cloud
+     * @param namespace the namespace
+     * @param holder identifies the holder, such as the name of an agent
+     * @param diagnostics whether pod events should be printed in build logs
+     * @return the informer, {@code null} if the namespace cannot be watched
+     */
+    @CheckForNull
+    public SharedIndexInformer<Pod> acquire(
+            @NonNull KubernetesCloud cloud, @NonNull String namespace, @NonNull String holder, boolean diagnostics) {
+        while (true) {
+            NamespaceInformer ni = start(cloud, namespace);
+            if (ni == null) {
+                return null;
+            }
+            synchronized (this) {
+                // unless stopped meanwhile
+                if (informers.get(namespace) == ni) {
+                    ni.holders.add(holder);
+                    ni.cancelIdle();
+                    ni.watchEvents();
+                    if (diagnostics) {
+                        ni.enableDiagnostics();
+                    }
+                    return ni.informer;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the informer of a namespace, starting it if needed. Starting an informer waits for the pods to be listed,
+     * so it is done outside of the monitor, and concurrent callers wait for the same start.
+     * @return the informer, {@code null} if the namespace cannot be watched
+     */
+    @CheckForNull
+    private NamespaceInformer start(KubernetesCloud cloud, String namespace) {
+        CompletableFuture<NamespaceInformer> pending;
+        CompletableFuture<NamespaceInformer> started = new CompletableFuture<>();
+        Set<String> holders = new HashSet<>();
+        boolean diagnostics = false;
+        synchronized (this) {
+            NamespaceInformer ni = informers.get(namespace);
+            if (ni != null && ni.isValid(cloud)) {
+                return ni;
+            }
+            pending = starting.putIfAbsent(namespace, started);
+            if (pending == null && ni != null) {
+                LOGGER.log(
+                        Level.INFO,
+                        "Recreating informer of {0} in namespace {1} after the cloud changed",
+                        new Object[] {cloudName, namespace});
+                informers.remove(namespace);
+                ni.stop();
+                holders.addAll(ni.holders);
+                diagnostics = ni.diagnostics;
+            }
+        }
+        if (pending != null) {
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        NamespaceInformer ni = null;
+        try {
+            ni = create(cloud, namespace, holders);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                starting.remove(namespace, started);
+            }
+            started.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            if (!starting.remove(namespace, started)) {
+                // all informers were stopped meanwhile
+                if (ni != null) {
+                    ni.stop();
+                    ni = null;
+                }
+            } else if (ni != null) {
+                informers.put(namespace, ni);
+                if (diagnostics) {
+                    ni.enableDiagnostics();
+                }
+                if (!holders.isEmpty()) {
+                    ni.watchEvents();
+                }
+            }
+        }
+        started.complete(ni);
+        return ni;
+    }
+
+    /**
+     * Releases an informer held through {@link #acquire}.
+     * @param namespace the namespace
+     * @param holder the holder
+     */
+    public synchronized void release(@NonNull String namespace, @NonNull String holder) {
+        NamespaceInformer ni = informers.get(namespace);
+        if (ni != null && ni.holders.remove(holder) && ni.holders.isEmpty()) {
+            ni.scheduleIdle();
+        }
+    }
+
+    /**
+     * @param namespace the namespace
+     * @return the informer of the namespace, if it has synced and is watching
+     */
+    @CheckForNull
+    public SharedIndexInformer<Pod> getIfWatching(@NonNull String namespace) {
+        NamespaceInformer ni = informers.get(namespace);
+        if (ni != null && ni.informer.hasSynced() && ni.informer.isWatching()) {
+            return ni.informer;
+        }
+        return null;
+    }
+
+    /**
+     * @param namespace the namespace of the pod
+     * @param podName the name of the pod
+     * @return the last events of the pod, {@code null} if the events of the namespace are not being watched
+     */
+    @CheckForNull
+    public List<Event> getPodEvents(@NonNull String namespace, @NonNull String podName) {
+        NamespaceInformer ni = informers.get(namespace);
+        if (ni != null && ni.events.isWatching()) {
+            return ni.events.getEvents(podName);
+        }
+        return null;
+    }
+
+    /**
+     * Watches a pod being launched.
+     * @param cloud the cloud
+     * @param namespace the namespace of the pod
+     * @param podName the name of the pod
+     * @param listener notified of the current state of the pod, then of each of its changes
+     * @param diagnostics whether pod events should be printed in build logs
+     * @return a handle to stop watching, {@code null} if the namespace cannot be watched
+     */
+    @CheckForNull
+    Closeable watchLaunchingPod(
+            @NonNull KubernetesCloud cloud,
+            @NonNull String namespace,
+            @NonNull String podName,
+            @NonNull LaunchingPodEventHandler.Listener listener,
+            boolean diagnostics) {
+        String holder = "launch:" + podName;
+        SharedIndexInformer<Pod> informer = acquire(cloud, namespace, holder, diagnostics);
+        if (informer == null) {
+            return null;
+        }
+        Closeable registration = launchingPods.register(namespace, podName, listener);
+        // the pod may have changed before the registration
+        Pod current = informer.getStore().getByKey(namespace + "/" + podName);
+        if (current != null) {
+            listener.onPod(current);
+        }
+        return () -> {
+            registration.close();
+            release(namespace, holder);
+        };
+    }
+
+    @CheckForNull
+    private NamespaceInformer create(KubernetesCloud cloud, String namespace, Set<String> holders) {
+        KubernetesClientProvider.Lease lease;
+        try {
+            lease = cloud.leaseClient();
+        } catch (KubernetesAuthException | IOException e) {
+            LOGGER.log(
+                    Level.WARNING, "Cannot connect to K8s cloud. Pod events will not be available in build logs.", e);
+            return null;
+        }
+        Map<String, String> labelsFilter = cloud.getAgentPodLabels();
+        SharedIndexInformer<Pod> informer;
+        try {
+            informer = lease.getClient()
+                    .pods()
+                    .inNamespace(namespace)
+                    .withLabels(labelsFilter)
+                    .inform(launchingPods, 0);
+        } catch (RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+        LOGGER.info(String.format(
+                "Registered informer to watch pod events on namespace [%s], with labels [%s] on cloud [%s]",
+                namespace, labelsFilter, cloudName));
+        return new NamespaceInformer(
+                namespace, informer, lease, KubernetesClientProvider.getValidity(cloud), labelsFilter, holders);
+    }
+
+    private void forgetPod(String namespace, String podName) {
+        NamespaceInformer ni = informers.get(namespace);
+        if (ni != null) {
+            ni.events.forget(podName);
+        }
+    }
+
+    private synchronized void stopIfIdle(NamespaceInformer ni) {
+        if (ni.holders.isEmpty() && informers.remove(ni.namespace, ni)) {
+            LOGGER.log(Level.FINE, "Stopping idle informer of {0} in namespace {1}", new Object[] {
+                cloudName, ni.namespace
+            });
+            ni.stop();
+        }
+    }
+
+    private synchronized void stopAll() {
+        informers.values().forEach(NamespaceInformer::stop);
+        informers.clear();
+        starting.clear();
+    }
+
+    private final class NamespaceInformer {
+        private final String namespace;
+        private final SharedIndexInformer<Pod> informer;
+        private final KubernetesClientProvider.Lease lease;
+        private final int validity;
+        private final Map<String, String> labels;
+        private final Set<String> holders;
+        private volatile NamespaceEventWatcher events;
+        private boolean diagnostics;
+
+        @CheckForNull
+        private Future<?> idle;
+
+        NamespaceInformer(
+                String namespace,
+                SharedIndexInformer<Pod> informer,
+                KubernetesClientProvider.Lease lease,
+                int validity,
+                Map<String, String> labels,
+                Set<String> holders) {
+            this.namespace = namespace;
+            this.informer = informer;
+            this.lease = lease;
+            this.validity = validity;
+            this.labels = labels;
+            this.holders = holders;
+            this.events = new NamespaceEventWatcher(cloudName, namespace);
+        }
+
+        void watchEvents() {
+            if (events.isWatching()) {
+                return;
+            }
+            events.stop();
+            events = new NamespaceEventWatcher(cloudName, namespace);
+            if (diagnostics) {
+                events.enableDiagnostics();
+            }
+            try {
+                events.start(lease.getClient());
+            } catch (RuntimeException e) {
+                LOGGER.log(
+                        Level.WARNING, e, () -> "Cannot watch events of " + cloudName + " in namespace " + namespace);
+            }
+        }
+
+        boolean isValid(KubernetesCloud cloud) {
+            return validity == KubernetesClientProvider.getValidity(cloud)
+                    && Objects.equals(labels, cloud.getAgentPodLabels());
+        }
+
+        void enableDiagnostics() {
+            if (!diagnostics) {
+                diagnostics = true;
+                informer.addEventHandler(new PodStatusEventHandler());
+                events.enableDiagnostics();
+            }
+        }
+
+        void scheduleIdle() {
+            cancelIdle();
+            idle = Timer.get().schedule(() -> stopIfIdle(this), IDLE_TIMEOUT, TimeUnit.SECONDS);
+        }
+
+        void cancelIdle() {
+            if (idle != null) {
+                idle.cancel(false);
+                idle = null;
+            }
+        }
+
+        void stop() {
+            cancelIdle();
+            try {
+                events.stop();
+                informer.stop();
+            } finally {
+                lease.close();
+            }
+        }
+    }
+
+    /**
+     * Releases the informers held by agents once their node is removed.
+     */
+    @Extension
+    public static class NodeListenerImpl extends NodeListener {
+        @Override
+        protected void onDeleted(@NonNull Node node) {
+            if (node instanceof KubernetesSlave) {
+                KubernetesSlave agent = (KubernetesSlave) node;
+                KubernetesPodInformers informers = registry.get(agent.getCloudName());
+                if (informers != null && agent.getNamespace() != null) {
+                    informers.release(agent.getNamespace(), agent.getNodeName());
+                    informers.forgetPod(agent.getNamespace(), agent.getPodName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the informers of the clouds that were removed, and recreates those of the clouds whose connection
+     * settings or pod labels changed.
+     */
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Jenkins) {
+                Jenkins jenkins = (Jenkins) o;
+                for (KubernetesPodInformers informers : registry.values()) {
+                    Cloud cloud = jenkins.getCloud(informers.cloudName);
+                    if (cloud instanceof KubernetesCloud) {
+                        informers.refresh((KubernetesCloud) cloud);
+                    } else {
+                        informers.stopAll();
+                        registry.remove(informers.cloudName, informers);
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized void refresh(KubernetesCloud cloud) {
+        for (NamespaceInformer ni : informers.values()) {
+            if (!ni.isValid(cloud)) {
+                informers.remove(ni.namespace);
+                ni.stop();
+                if (!ni.holders.isEmpty()) {
+                    // starting an informer waits for the pods to be listed
+                    Computer.threadPoolForRemoting.submit(() -> recreate(cloud, ni));
+                }
+            }
+        }
+    }
+
+    private void recreate(KubernetesCloud cloud, NamespaceInformer stopped) {
+        try {
+            NamespaceInformer ni = start(cloud, stopped.namespace);
+            if (ni == null) {
+                return;
+            }
+            synchronized (this) {
+                ni.holders.addAll(stopped.holders);
+                ni.cancelIdle();
+                ni.watchEvents();
+                if (stopped.diagnostics) {
+                    ni.enableDiagnostics();
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Cannot recreate informer of " + cloudName + " in namespace "
+                    + stopped.namespace);
+        }
+    }
+}
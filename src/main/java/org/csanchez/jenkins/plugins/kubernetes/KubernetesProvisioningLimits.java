@@ -3,64 +3,92 @@ package org.csanchez.jenkins.plugins.kubernetes;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.ExtensionList;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Label;
 import hudson.model.Node;
 import hudson.model.Queue;
+import hudson.model.TaskListener;
+import hudson.slaves.NodeProvisioner;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.metrics.api.Metrics;
 import jenkins.model.Jenkins;
 import jenkins.model.NodeListener;
+import jenkins.util.SystemProperties;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 /**
- * Implements provisioning limits for clouds and pod templates
+ * Implements provisioning limits for clouds and pod templates.
+ * <p>
+ * Counts are kept in atomic counters, so clouds and templates never contend with each other.
+ * A slot is reserved on the cloud first, then on the pod template, and released again if the latter fails.
  */
 @Extension
 public final class KubernetesProvisioningLimits {
     private static final Logger LOGGER = Logger.getLogger(KubernetesProvisioningLimits.class.getName());
 
-    private final AtomicBoolean init = new AtomicBoolean();
+    private static final long RECONCILIATION_PERIOD = SystemProperties.getLong(
+            KubernetesProvisioningLimits.class.getName() + ".reconciliationPeriod", TimeUnit.MINUTES.toSeconds(5));
+
+    private volatile boolean initialized;
 
     /**
      * Tracks current number of kubernetes agents per pod template
      */
-    private final ConcurrentMap<String, Integer> podTemplateCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> podTemplateCounts = new ConcurrentHashMap<>();
 
     /**
      * Tracks current number of kubernetes agents per kubernetes cloud
      */
-    private final ConcurrentMap<String, Integer> cloudCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> cloudCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Excess counts found by the previous reconciliation, per cloud and per pod template.
+     * Only an excess found by two consecutive reconciliations is corrected.
+     */
+    private Map<String, Integer> previousCloudExcess = Map.of();
+
+    private Map<String, Integer> previousPodTemplateExcess = Map.of();
 
     /**
      * Initialize limits counter
      * @return whether the instance was already initialized before this call.
      */
     private boolean initInstance() {
-        if (init.compareAndSet(false, true)) {
-            Queue.withLock(() -> {
-                synchronized (this) {
+        if (initialized) {
+            return true;
+        }
+        AtomicBoolean initializedNow = new AtomicBoolean();
+        Queue.withLock(() -> {
+            synchronized (this) {
+                if (!initialized) {
                     Jenkins.get().getNodes().stream()
                             .filter(KubernetesSlave.class::isInstance)
                             .map(KubernetesSlave.class::cast)
                             .forEach(node -> {
-                                cloudCounts.put(
-                                        node.getCloudName(),
-                                        getGlobalCount(node.getCloudName()) + node.getNumExecutors());
-                                podTemplateCounts.put(
-                                        node.getTemplateId(),
-                                        getPodTemplateCount(node.getTemplateId()) + node.getNumExecutors());
+                                counter(cloudCounts, node.getCloudName()).addAndGet(node.getNumExecutors());
+                                counter(podTemplateCounts, node.getTemplateId()).addAndGet(node.getNumExecutors());
                             });
+                    initialized = true;
+                    initializedNow.set(true);
                 }
-            });
-
-            return false;
-        } else {
-            return true;
-        }
+            }
+        });
+        return !initializedNow.get();
     }
 
     /**
@@ -78,41 +106,32 @@ public final class KubernetesProvisioningLimits {
      */
     public boolean register(@NonNull KubernetesCloud cloud, @NonNull PodTemplate podTemplate, int numExecutors) {
         initInstance();
-        synchronized (this) {
-            int newGlobalCount = getGlobalCount(cloud.name) + numExecutors;
-            if (newGlobalCount <= cloud.getContainerCap()) {
-                int newPodTemplateCount = getPodTemplateCount(podTemplate.getId()) + numExecutors;
-                if (newPodTemplateCount <= podTemplate.getInstanceCap()) {
-                    cloudCounts.put(cloud.name, newGlobalCount);
-                    LOGGER.log(
-                            Level.FINEST,
-                            () -> cloud.name + " global limit: " + newGlobalCount + "/" + cloud.getContainerCap());
-
-                    podTemplateCounts.put(podTemplate.getId(), newPodTemplateCount);
-                    LOGGER.log(
-                            Level.FINEST,
-                            () -> podTemplate.getName() + " template limit: " + newPodTemplateCount + "/"
-                                    + podTemplate.getInstanceCap());
-                    return true;
-                } else {
-                    LOGGER.log(
-                            Level.FINEST,
-                            () -> podTemplate.getName() + " template limit reached: "
-                                    + getPodTemplateCount(podTemplate.getId()) + "/" + podTemplate.getInstanceCap()
-                                    + ". Cannot add " + numExecutors + " more!");
-                    Metrics.metricRegistry()
-                            .counter(MetricNames.REACHED_POD_CAP)
-                            .inc();
-                }
-            } else {
-                LOGGER.log(
-                        Level.FINEST,
-                        () -> cloud.name + " global limit reached: " + getGlobalCount(cloud.name) + "/"
-                                + cloud.getContainerCap() + ". Cannot add " + numExecutors + " more!");
-                Metrics.metricRegistry().counter(MetricNames.REACHED_GLOBAL_CAP).inc();
-            }
+        AtomicInteger globalCount = counter(cloudCounts, cloud.name);
+        if (!reserve(globalCount, numExecutors, cloud.getContainerCap())) {
+            LOGGER.log(
+                    Level.FINEST,
+                    () -> cloud.name + " global limit reached: " + globalCount.get() + "/" + cloud.getContainerCap()
+                            + ". Cannot add " + numExecutors + " more!");
+            Metrics.metricRegistry().counter(MetricNames.REACHED_GLOBAL_CAP).inc();
             return false;
         }
+        AtomicInteger podTemplateCount = counter(podTemplateCounts, podTemplate.getId());
+        if (!reserve(podTemplateCount, numExecutors, podTemplate.getInstanceCap())) {
+            release(globalCount, numExecutors);
+            LOGGER.log(
+                    Level.FINEST,
+                    () -> podTemplate.getName() + " template limit reached: " + podTemplateCount.get() + "/"
+                            + podTemplate.getInstanceCap() + ". Cannot add " + numExecutors + " more!");
+            Metrics.metricRegistry().counter(MetricNames.REACHED_POD_CAP).inc();
+            return false;
+        }
+        LOGGER.log(
+                Level.FINEST, () -> cloud.name + " global limit: " + globalCount.get() + "/" + cloud.getContainerCap());
+        LOGGER.log(
+                Level.FINEST,
+                () -> podTemplate.getName() + " template limit: " + podTemplateCount.get() + "/"
+                        + podTemplate.getInstanceCap());
+        return true;
     }
 
     /**
@@ -123,46 +142,192 @@ public final class KubernetesProvisioningLimits {
      */
     public void unregister(@NonNull KubernetesCloud cloud, @NonNull PodTemplate podTemplate, int numExecutors) {
         if (initInstance()) {
+            AtomicInteger globalCount = counter(cloudCounts, cloud.name);
+            if (!release(globalCount, numExecutors)) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "Global count for " + cloud.name
+                                + " went below zero. There is likely a bug in kubernetes-plugin");
+            }
+            LOGGER.log(
+                    Level.FINEST,
+                    () -> cloud.name + " global limit: " + globalCount.get() + "/" + cloud.getContainerCap());
+
+            AtomicInteger podTemplateCount = counter(podTemplateCounts, podTemplate.getId());
+            if (!release(podTemplateCount, numExecutors)) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "Pod template count for " + podTemplate.getName()
+                                + " went below zero. There is likely a bug in kubernetes-plugin");
+            }
+            LOGGER.log(
+                    Level.FINEST,
+                    () -> podTemplate.getName() + " template limit: " + podTemplateCount.get() + "/"
+                            + podTemplate.getInstanceCap());
+        }
+    }
+
+    /**
+     * Recomputes the counts from the Kubernetes agents known to Jenkins, including the ones planned but not added yet,
+     * and corrects the counters that drifted.
+     * <p>
+     * Counts lower than the actual number of agents are corrected immediately.
+     * Counts higher than the actual number of agents may be caused by an agent being removed concurrently,
+     * so they are only corrected once confirmed by the next reconciliation.
+     */
+    @Restricted(NoExternalUse.class)
+    void reconcile() {
+        if (!initialized) {
+            return;
+        }
+        Queue.withLock(() -> {
             synchronized (this) {
-                int newGlobalCount = getGlobalCount(cloud.name) - numExecutors;
-                if (newGlobalCount < 0) {
-                    LOGGER.log(
-                            Level.WARNING,
-                            "Global count for " + cloud.name
-                                    + " went below zero. There is likely a bug in kubernetes-plugin");
+                Jenkins jenkins = Jenkins.get();
+                Map<String, Integer> observedCloudCounts = new HashMap<>();
+                Map<String, Integer> observedPodTemplateCounts = new HashMap<>();
+                for (Node node : jenkins.getNodes()) {
+                    count(node, observedCloudCounts, observedPodTemplateCounts);
                 }
-                cloudCounts.put(cloud.name, Math.max(0, newGlobalCount));
-                LOGGER.log(
-                        Level.FINEST,
-                        () -> cloud.name + " global limit: " + Math.max(0, newGlobalCount) + "/"
-                                + cloud.getContainerCap());
+                boolean unresolvedLaunches = false;
+                List<NodeProvisioner> provisioners = new ArrayList<>();
+                provisioners.add(jenkins.unlabeledNodeProvisioner);
+                for (Label label : jenkins.getLabels()) {
+                    provisioners.add(label.nodeProvisioner);
+                }
+                for (NodeProvisioner provisioner : provisioners) {
+                    for (NodeProvisioner.PlannedNode plannedNode : provisioner.getPendingLaunches()) {
+                        if (!plannedNode.future.isDone()) {
+                            unresolvedLaunches = true;
+                            continue;
+                        }
+                        try {
+                            Node node = plannedNode.future.get();
+                            if (node != null && jenkins.getNode(node.getNodeName()) != node) {
+                                count(node, observedCloudCounts, observedPodTemplateCounts);
+                            }
+                        } catch (ExecutionException | CancellationException e) {
+                            // failed launches do not hold any slot
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                }
+                // launches that did not complete yet cannot be attributed to a cloud, so keep excess counts as is
+                previousCloudExcess =
+                        correct(cloudCounts, observedCloudCounts, previousCloudExcess, unresolvedLaunches);
+                previousPodTemplateExcess = correct(
+                        podTemplateCounts, observedPodTemplateCounts, previousPodTemplateExcess, unresolvedLaunches);
+            }
+        });
+    }
+
+    private static void count(
+            Node node, Map<String, Integer> observedCloudCounts, Map<String, Integer> observedPodTemplateCounts) {
+        if (node instanceof KubernetesSlave) {
+            KubernetesSlave kubernetesNode = (KubernetesSlave) node;
+            observedCloudCounts.merge(kubernetesNode.getCloudName(), node.getNumExecutors(), Integer::sum);
+            observedPodTemplateCounts.merge(kubernetesNode.getTemplateId(), node.getNumExecutors(), Integer::sum);
+        }
+    }
 
-                int newPodTemplateCount = getPodTemplateCount(podTemplate.getId()) - numExecutors;
-                if (newPodTemplateCount < 0) {
+    /**
+     * Corrects counters according to the observed counts.
+     * @return the excess counts left uncorrected
+     */
+    private static Map<String, Integer> correct(
+            ConcurrentMap<String, AtomicInteger> counts,
+            Map<String, Integer> observed,
+            Map<String, Integer> previousExcess,
+            boolean keepExcess) {
+        Map<String, Integer> excess = new HashMap<>();
+        Set<String> keys = new HashSet<>(counts.keySet());
+        keys.addAll(observed.keySet());
+        for (String key : keys) {
+            AtomicInteger counter = counter(counts, key);
+            int drift = counter.get() - observed.getOrDefault(key, 0);
+            if (drift < 0) {
+                counter.addAndGet(-drift);
+                LOGGER.log(Level.WARNING, "Count for {0} was {1} below the number of agents, corrected", new Object[] {
+                    key, -drift
+                });
+                Metrics.metricRegistry().counter(MetricNames.PROVISION_LIMITS_DRIFT).inc(-drift);
+            } else if (drift > 0) {
+                int correction = keepExcess ? 0 : Math.min(drift, previousExcess.getOrDefault(key, 0));
+                if (correction > 0) {
+                    release(counter, correction);
                     LOGGER.log(
-                            Level.WARNING,
-                            "Pod template count for " + podTemplate.getName()
-                                    + " went below zero. There is likely a bug in kubernetes-plugin");
+                            Level.WARNING, "Count for {0} was {1} above the number of agents, corrected", new Object[] {
+                                key, correction
+                            });
+                    Metrics.metricRegistry().counter(MetricNames.PROVISION_LIMITS_DRIFT).inc(correction);
+                }
+                if (drift > correction) {
+                    excess.put(key, drift - correction);
                 }
-                podTemplateCounts.put(podTemplate.getId(), Math.max(0, newPodTemplateCount));
-                LOGGER.log(
-                        Level.FINEST,
-                        () -> podTemplate.getName() + " template limit: " + Math.max(0, newPodTemplateCount) + "/"
-                                + podTemplate.getInstanceCap());
             }
         }
+        return excess;
+    }
+
+    @NonNull
+    private static AtomicInteger counter(ConcurrentMap<String, AtomicInteger> counts, String key) {
+        return counts.computeIfAbsent(key, k -> new AtomicInteger());
+    }
+
+    /**
+     * Adds to a counter unless the result would exceed the given cap.
+     * @return whether the counter was updated
+     */
+    private static boolean reserve(AtomicInteger counter, int amount, int cap) {
+        while (true) {
+            int current = counter.get();
+            if (current > cap - amount) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + amount)) {
+                return true;
+            }
+            Metrics.metricRegistry().counter(MetricNames.PROVISION_LIMITS_CONTENTION).inc();
+        }
+    }
+
+    /**
+     * Subtracts from a counter, without going below zero.
+     * @return {@code false} if the counter would have gone below zero
+     */
+    private static boolean release(AtomicInteger counter, int amount) {
+        while (true) {
+            int current = counter.get();
+            if (counter.compareAndSet(current, Math.max(0, current - amount))) {
+                return current >= amount;
+            }
+            Metrics.metricRegistry().counter(MetricNames.PROVISION_LIMITS_CONTENTION).inc();
+        }
+    }
+
+    /**
+     * @param cloud the kubernetes cloud
+     * @return the number of executors the cloud can still provision before reaching its container cap
+     */
+    @Restricted(NoExternalUse.class)
+    public int getRemainingCapacity(@NonNull KubernetesCloud cloud) {
+        initInstance();
+        return Math.max(0, cloud.getContainerCap() - getGlobalCount(cloud.name));
     }
 
     @NonNull
     @Restricted(NoExternalUse.class)
     int getGlobalCount(String cloudName) {
-        return cloudCounts.getOrDefault(cloudName, 0);
+        AtomicInteger count = cloudCounts.get(cloudName);
+        return count == null ? 0 : count.get();
     }
 
     @NonNull
     @Restricted(NoExternalUse.class)
     int getPodTemplateCount(String podTemplate) {
-        return podTemplateCounts.getOrDefault(podTemplate, 0);
+        AtomicInteger count = podTemplateCounts.get(podTemplate);
+        return count == null ? 0 : count.get();
     }
 
     @Extension
@@ -179,4 +344,24 @@ public final class KubernetesProvisioningLimits {
             }
         }
     }
+
+    /**
+     * Periodically corrects the counts that drifted from the actual number of agents.
+     */
+    @Extension
+    public static final class Reconciliation extends AsyncPeriodicWork {
+        public Reconciliation() {
+            super("Reconciliation of Kubernetes provisioning limits");
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            KubernetesProvisioningLimits.get().reconcile();
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.SECONDS.toMillis(RECONCILIATION_PERIOD);
+        }
+    }
 }
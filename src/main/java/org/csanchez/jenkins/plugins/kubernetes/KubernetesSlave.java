@@ -85,6 +85,11 @@ public class KubernetesSlave extends AbstractCloudSlave {
     @CheckForNull
     private transient Pod pod;
 
+    /**
+     * When the pod was last annotated by {@link #annotateTtl}, in milliseconds since the epoch.
+     */
+    private transient volatile long ttlRefreshed;
+
     @NonNull
     public PodTemplate getTemplate() throws IllegalStateException {
         // Look up updated pod template after a restart
@@ -217,7 +222,11 @@ public class KubernetesSlave extends AbstractCloudSlave {
     }
 
     public void setNamespace(@NonNull String namespace) {
+        String oldNamespace = this.namespace;
         this.namespace = namespace;
+        if (!namespace.equals(oldNamespace)) {
+            KubernetesSlaveIndex.onNamespaceChanged(this, oldNamespace);
+        }
     }
 
     @Nullable
@@ -282,9 +291,7 @@ public class KubernetesSlave extends AbstractCloudSlave {
         if (p == null) {
             // if jenkins restarts the transient pod reference may not be available
             try {
-                p = getKubernetesCloud()
-                        .getPodResource(getNamespace(), getPodName())
-                        .get();
+                p = getKubernetesCloud().getPod(getNamespace(), getPodName());
                 if (p != null) {
                     assignPod(p);
                     return Optional.of(p);
@@ -401,6 +408,7 @@ public class KubernetesSlave extends AbstractCloudSlave {
         // Prior to termination, determine if we should delete the slave pod based on
         // the slave pod's current state and the pod retention policy.
         // Healthy slave pods should still have a JNLP agent running at this point.
+        // The pod is read from the API server, as the informer may not have seen its last status yet.
         boolean deletePod = getPodRetention(cloud)
                 .shouldDeletePod(cloud, () -> KubernetesCloud.getPodResource(client, getNamespace(), name)
                         .get());
@@ -451,7 +459,7 @@ public class KubernetesSlave extends AbstractCloudSlave {
         if (getNamespace() == null) {
             return;
         }
-        try {
+        try (ApiPriority.Scope scope = ApiPriority.LAUNCH.open()) {
             boolean deleted = client.pods()
                             .inNamespace(getNamespace())
                             .withName(name)
@@ -562,35 +570,57 @@ public class KubernetesSlave extends AbstractCloudSlave {
     }
 
     public void annotateTtl(TaskListener listener) {
+        annotateTtl(listener, Instant.now());
+    }
+
+    /**
+     * Annotates the pod with the time it was last seen alive, so that it is not garbage collected.
+     * @param listener notified of failures
+     * @param now the refresh time
+     * @return true if the pod was annotated
+     */
+    boolean annotateTtl(TaskListener listener, Instant now) {
         try {
             var kubernetesCloud = getKubernetesCloud();
-            Optional.ofNullable(kubernetesCloud.getGarbageCollection()).ifPresent(gc -> {
-                var ns = getNamespace();
-                var name = getPodName();
-                var l = Instant.now();
-                try {
-                    kubernetesCloud
-                            .getPodResource(ns, name)
-                            .patch("{\"metadata\":{\"annotations\":{\"" + GarbageCollection.ANNOTATION_LAST_REFRESH
-                                    + "\":\"" + l.toEpochMilli() + "\"}}}");
-                } catch (KubernetesAuthException e) {
-                    e.printStackTrace(listener.error("Failed to authenticate to Kubernetes cluster"));
-                } catch (IOException e) {
-                    e.printStackTrace(listener.error("Failed to connect to Kubernetes cluster"));
-                }
-                listener.getLogger().println("Annotated agent pod " + ns + "/" + name + " with TTL");
-                LOGGER.log(Level.FINE, () -> "Annotated agent pod " + ns + "/" + name + " with TTL");
-                try {
-                    save();
-                } catch (IOException e) {
-                    LOGGER.log(Level.WARNING, e, () -> "Failed to save");
-                }
-            });
+            var gc = kubernetesCloud.getGarbageCollection();
+            if (gc == null) {
+                return false;
+            }
+            var ns = getNamespace();
+            var name = getPodName();
+            try {
+                kubernetesCloud
+                        .getPodResource(ns, name)
+                        .patch("{\"metadata\":{\"annotations\":{\"" + GarbageCollection.ANNOTATION_LAST_REFRESH
+                                + "\":\"" + now.toEpochMilli() + "\"}}}");
+            } catch (KubernetesAuthException e) {
+                e.printStackTrace(listener.error("Failed to authenticate to Kubernetes cluster"));
+                return false;
+            } catch (IOException e) {
+                e.printStackTrace(listener.error("Failed to connect to Kubernetes cluster"));
+                return false;
+            }
+            ttlRefreshed = now.toEpochMilli();
+            // the annotation is only stored in the pod, there is nothing to save
+            LOGGER.log(Level.FINE, () -> "Annotated agent pod " + ns + "/" + name + " with TTL");
+            return true;
         } catch (RuntimeException e) {
             e.printStackTrace(listener.error("Failed to annotate agent pod with TTL"));
+            return false;
         }
     }
 
+    /**
+     * @param gc the garbage collection settings of the cloud
+     * @param now the current time
+     * @param fraction the fraction of the garbage collection timeout after which the annotation is refreshed
+     * @return whether the annotation of the pod should be refreshed
+     */
+    boolean isTtlRefreshDue(@NonNull GarbageCollection gc, @NonNull Instant now, double fraction) {
+        long age = now.toEpochMilli() - ttlRefreshed;
+        return age < 0 || age >= gc.getDurationTimeout().toMillis() * fraction;
+    }
+
     /**
      * Builds a {@link KubernetesSlave} instance.
      */
@@ -666,7 +696,7 @@ public class KubernetesSlave extends AbstractCloudSlave {
             return this;
         }
 
-        private static RetentionStrategy determineRetentionStrategy(
+        static RetentionStrategy determineRetentionStrategy(
                 @NonNull KubernetesCloud cloud, @NonNull PodTemplate podTemplate) {
             if (podTemplate.getIdleMinutes() == 0) {
                 return new OnceRetentionStrategy(cloud.getRetentionTimeout());
@@ -0,0 +1,132 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Node;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jenkins.model.Jenkins;
+import jenkins.model.NodeListener;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Index of the {@link KubernetesSlave} nodes by namespace and pod name, so that pod events can be matched with
+ * their agent without going through all nodes.
+ * <p>
+ * The index is built from the nodes on first use, then kept up to date as nodes are added, updated or removed, and
+ * when the namespace of an agent changes.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public final class KubernetesSlaveIndex extends NodeListener {
+
+    private final ConcurrentMap<String, KubernetesSlave> agents = new ConcurrentHashMap<>();
+
+    private volatile boolean initialized;
+
+    /**
+     * @return the singleton instance
+     */
+    public static KubernetesSlaveIndex get() {
+        return ExtensionList.lookupSingleton(KubernetesSlaveIndex.class);
+    }
+
+    /**
+     * @param namespace the namespace of the pod
+     * @param podName the name of the pod
+     * @return the agent running in the pod, if any
+     */
+    @CheckForNull
+    public KubernetesSlave get(@CheckForNull String namespace, @CheckForNull String podName) {
+        if (namespace == null || podName == null) {
+            return null;
+        }
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return null;
+        }
+        initialize(jenkins);
+        String key = key(namespace, podName);
+        KubernetesSlave agent = agents.get(key);
+        if (agent != null && (jenkins.getNode(agent.getNodeName()) != agent || !isIndexedAs(agent, key))) {
+            // removed or renamed without notification
+            agents.remove(key, agent);
+            return null;
+        }
+        return agent;
+    }
+
+    /**
+     * Called when the namespace of an agent changes.
+     */
+    static void onNamespaceChanged(@NonNull KubernetesSlave agent, @CheckForNull String oldNamespace) {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return;
+        }
+        KubernetesSlaveIndex index = get();
+        if (oldNamespace == null || index.agents.remove(key(oldNamespace, agent.getPodName()), agent)) {
+            // only agents known to Jenkins are indexed
+            if (oldNamespace != null || Jenkins.get().getNode(agent.getNodeName()) == agent) {
+                index.add(agent);
+            }
+        }
+    }
+
+    private void initialize(Jenkins jenkins) {
+        if (!initialized) {
+            synchronized (this) {
+                if (!initialized) {
+                    for (Node node : jenkins.getNodes()) {
+                        add(node);
+                    }
+                    initialized = true;
+                }
+            }
+        }
+    }
+
+    private void add(Node node) {
+        if (node instanceof KubernetesSlave) {
+            KubernetesSlave agent = (KubernetesSlave) node;
+            if (agent.getNamespace() != null) {
+                agents.put(key(agent.getNamespace(), agent.getPodName()), agent);
+            }
+        }
+    }
+
+    private void remove(Node node) {
+        if (node instanceof KubernetesSlave) {
+            KubernetesSlave agent = (KubernetesSlave) node;
+            if (agent.getNamespace() != null) {
+                agents.remove(key(agent.getNamespace(), agent.getPodName()), agent);
+            }
+        }
+    }
+
+    private static boolean isIndexedAs(KubernetesSlave agent, String key) {
+        return agent.getNamespace() != null && key.equals(key(agent.getNamespace(), agent.getPodName()));
+    }
+
+    private static String key(String namespace, String podName) {
+        return namespace + "/" + podName;
+    }
+
+    @Override
+    protected void onCreated(@NonNull Node node) {
+        add(node);
+    }
+
+    @Override
+    protected void onUpdated(@NonNull Node oldOne, @NonNull Node newOne) {
+        remove(oldOne);
+        add(newOne);
+    }
+
+    @Override
+    protected void onDeleted(@NonNull Node node) {
+        remove(node);
+    }
+}
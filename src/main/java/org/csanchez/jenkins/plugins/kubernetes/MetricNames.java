@@ -7,17 +7,65 @@ public class MetricNames {
 
     public static final String CREATION_FAILED = PREFIX + ".pods.creation.failed";
     public static final String PODS_CREATED = PREFIX + ".pods.created";
+    public static final String PODS_ALREADY_EXISTING = PREFIX + ".pods.created.already.existing";
+    public static final String PODS_CACHE_HIT = PREFIX + ".pods.cache.hit";
+    public static final String PODS_CACHE_MISS = PREFIX + ".pods.cache.miss";
     public static final String LAUNCH_FAILED = PREFIX + ".pods.launch.failed";
     public static final String PODS_TERMINATED = PREFIX + ".pods.terminated";
     public static final String REACHED_POD_CAP = PREFIX + ".provision.reached.pod.cap";
     public static final String REACHED_GLOBAL_CAP = PREFIX + ".provision.reached.global.cap";
+    public static final String PROVISION_LIMITS_CONTENTION = PREFIX + ".provision.limits.contention";
+    public static final String PROVISION_LIMITS_DRIFT = PREFIX + ".provision.limits.drift";
     public static final String FAILED_TIMEOUT = PREFIX + ".pods.launch.failed.timeout";
     public static final String PROVISION_NODES = PREFIX + ".provision.nodes";
     public static final String PROVISION_FAILED = PREFIX + ".provision.failed";
     public static final String PODS_LAUNCHED = PREFIX + ".pods.launched";
+    public static final String PODS_IN_PROVISIONING = PREFIX + ".pods.in.provisioning";
+    public static final String LAUNCHES_IN_PROGRESS = PREFIX + ".pods.launching";
+    public static final String WARM_POOL_SIZE = PREFIX + ".warm.pool.size";
+    public static final String WARM_POOL_HIT = PREFIX + ".warm.pool.hit";
+    public static final String WARM_POOL_MISS = PREFIX + ".warm.pool.miss";
+    public static final String WARM_POOL_REPLENISH = PREFIX + ".warm.pool.replenish";
+    public static final String CLIENTS_LIVE = PREFIX + ".clients.live";
+    public static final String CLIENTS_LEASES = PREFIX + ".clients.leases";
+    public static final String INFORMERS = PREFIX + ".informers";
+    public static final String INFORMERS_STORE_SIZE = PREFIX + ".informers.store.size";
+    public static final String API_QUEUE_DEPTH = PREFIX + ".api.queue.depth";
+    public static final String API_WAIT = PREFIX + ".api.wait";
+    public static final String API_THROTTLED = PREFIX + ".api.throttled";
+    public static final String API_CIRCUIT_OPEN = PREFIX + ".api.circuit.open";
+    public static final String API_CIRCUIT_OPENED = PREFIX + ".api.circuit.opened";
+    public static final String REAPER_ACTIVATION = PREFIX + ".reaper.activation";
+    public static final String REAPER_DISPATCH_QUEUE = PREFIX + ".reaper.dispatch.queue";
+    public static final String REAPER_DISPATCH_LAG = PREFIX + ".reaper.dispatch.lag";
+    public static final String REAPER_DISPATCH_BACKPRESSURE = PREFIX + ".reaper.dispatch.backpressure";
+    public static final String EXEC_OPEN = PREFIX + ".exec.open";
+    public static final String UNWRAP_CACHE_HIT = PREFIX + ".templates.unwrap.cache.hit";
+    public static final String UNWRAP_CACHE_MISS = PREFIX + ".templates.unwrap.cache.miss";
 
     public static String metricNameForPodStatus(String status) {
         String formattedStatus = status == null ? "null" : status.toLowerCase(Locale.getDefault());
         return PREFIX + ".pods.launch.status." + formattedStatus;
     }
+
+    public static String metricNameForApiRequests(String cloud, String verb, String resource) {
+        return apiPrefix(cloud) + "." + verb + "." + resource + ".requests";
+    }
+
+    public static String metricNameForApiLatency(String cloud, String verb, String resource) {
+        return apiPrefix(cloud) + "." + verb + "." + resource + ".latency";
+    }
+
+    public static String metricNameForApiErrors(String cloud, String code) {
+        return apiPrefix(cloud) + ".errors." + code;
+    }
+
+    public static String metricNameForApiWatchConnects(String cloud, String resource) {
+        return apiPrefix(cloud) + ".watch." + resource + ".connects";
+    }
+
+    private static String apiPrefix(String cloud) {
+        String formattedCloud = cloud == null ? "null" : cloud.replaceAll("[^A-Za-z0-9_-]", "_");
+        return PREFIX + ".api." + formattedCloud;
+    }
 }
@@ -0,0 +1,171 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.ObjectReference;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.WatcherException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+
+/**
+ * Watches the events of the pods of a namespace, for all the agents of a cloud in that namespace.
+ * <p>
+ * The last {@link #MAX_EVENTS_PER_POD} events of each agent pod are kept for the UI and, when diagnostics are
+ * enabled, events are printed in the build log of the agent as {@link TaskListenerEventWatcher} does.
+ */
+class NamespaceEventWatcher implements Watcher<Event> {
+    private static final Logger LOGGER = Logger.getLogger(NamespaceEventWatcher.class.getName());
+
+    private static final int MAX_EVENTS_PER_POD = Math.max(
+            1, SystemProperties.getInteger(NamespaceEventWatcher.class.getName() + ".maxEventsPerPod", 20));
+
+    private final String cloudName;
+    private final String namespace;
+
+    /**
+     * pod name -> last events of the pod
+     */
+    private final ConcurrentMap<String, Deque<Event>> events = new ConcurrentHashMap<>();
+
+    private volatile boolean diagnostics;
+
+    @CheckForNull
+    private volatile Watch watch;
+
+    private volatile boolean closed;
+
+    NamespaceEventWatcher(@NonNull String cloudName, @NonNull String namespace) {
+        this.cloudName = cloudName;
+        this.namespace = namespace;
+    }
+
+    void start(@NonNull KubernetesClient client) {
+        watch = client.v1()
+                .events()
+                .inNamespace(namespace)
+                .withField("involvedObject.kind", "Pod")
+                .watch(this);
+    }
+
+    void stop() {
+        Watch w = watch;
+        if (w != null) {
+            w.close();
+        }
+        events.clear();
+    }
+
+    void enableDiagnostics() {
+        diagnostics = true;
+    }
+
+    /**
+     * @return whether events are being received
+     */
+    boolean isWatching() {
+        return watch != null && !closed;
+    }
+
+    /**
+     * @param podName the name of the pod
+     * @return the last events of the pod, oldest first
+     */
+    @NonNull
+    List<Event> getEvents(@NonNull String podName) {
+        Deque<Event> podEvents = events.get(podName);
+        if (podEvents == null) {
+            return new ArrayList<>();
+        }
+        synchronized (podEvents) {
+            return new ArrayList<>(podEvents);
+        }
+    }
+
+    /**
+     * Forgets the events of a pod.
+     * @param podName the name of the pod
+     */
+    void forget(@NonNull String podName) {
+        events.remove(podName);
+    }
+
+    @Override
+    public void eventReceived(Action action, Event event) {
+        if ((action != Action.ADDED && action != Action.MODIFIED) || event == null) {
+            return;
+        }
+        ObjectReference involved = event.getInvolvedObject();
+        if (involved == null || involved.getName() == null) {
+            return;
+        }
+        KubernetesSlave agent = KubernetesSlaveIndex.get().get(namespace, involved.getName());
+        if (agent == null || !cloudName.equals(agent.getCloudName())) {
+            return;
+        }
+        Deque<Event> podEvents = events.computeIfAbsent(involved.getName(), k -> new ArrayDeque<>());
+        synchronized (podEvents) {
+            if (!record(podEvents, event)) {
+                // already seen, for instance when the watch was restarted
+                return;
+            }
+        }
+        if (diagnostics && event.getMessage() != null) {
+            new TaskListenerEventWatcher(involved.getName(), agent.getRunListener()).eventReceived(action, event);
+        }
+    }
+
+    /**
+     * @return false if the event was already recorded
+     */
+    private static boolean record(Deque<Event> podEvents, Event event) {
+        String uid = event.getMetadata() == null ? null : event.getMetadata().getUid();
+        if (uid != null) {
+            for (Iterator<Event> it = podEvents.iterator(); it.hasNext(); ) {
+                Event recorded = it.next();
+                if (recorded.getMetadata() != null && uid.equals(recorded.getMetadata().getUid())) {
+                    if (Objects.equals(recorded.getCount(), event.getCount())
+                            && Objects.equals(recorded.getMessage(), event.getMessage())) {
+                        return false;
+                    }
+                    it.remove();
+                    break;
+                }
+            }
+        }
+        while (podEvents.size() >= MAX_EVENTS_PER_POD) {
+            podEvents.pollFirst();
+        }
+        podEvents.addLast(event);
+        return true;
+    }
+
+    @Override
+    public void onClose(WatcherException cause) {
+        closed = true;
+        LOGGER.log(
+                Level.FINE, cause, () -> "Event watch of " + cloudName + " in namespace " + namespace + " closed");
+    }
+
+    @Override
+    public void onClose() {
+        closed = true;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [cloud=" + cloudName + ", namespace=" + namespace + "]";
+    }
+}
@@ -16,6 +16,7 @@ import hudson.model.labels.LabelAtom;
 import hudson.security.Permission;
 import hudson.slaves.NodeProperty;
 import hudson.util.FormApply;
+import hudson.util.FormValidation;
 import hudson.util.XStream2;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.client.KubernetesClient;
@@ -53,6 +54,7 @@ import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.HttpRedirect;
 import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.verb.POST;
@@ -141,6 +143,10 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
 
     private int activeDeadlineSeconds;
 
+    private int warmPoolSize;
+
+    private String warmPoolSchedule;
+
     private String label;
 
     /**
@@ -475,6 +481,33 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
         }
     }
 
+    /**
+     * @param warmPoolSize the number of agents to keep launched ahead of demand, outside of the scheduled windows
+     * @see WarmPoolPolicy
+     */
+    @DataBoundSetter
+    public void setWarmPoolSize(int warmPoolSize) {
+        this.warmPoolSize = Math.max(0, warmPoolSize);
+    }
+
+    public int getWarmPoolSize() {
+        return warmPoolSize;
+    }
+
+    /**
+     * @param warmPoolSchedule the size of the warm pool by time of the day
+     * @see WarmPoolPolicy
+     */
+    @DataBoundSetter
+    public void setWarmPoolSchedule(String warmPoolSchedule) {
+        this.warmPoolSchedule = Util.fixEmptyAndTrim(warmPoolSchedule);
+    }
+
+    @CheckForNull
+    public String getWarmPoolSchedule() {
+        return warmPoolSchedule;
+    }
+
     public Set<LabelAtom> getLabelSet() {
         return labelSet;
     }
@@ -1129,6 +1162,17 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
             return DescriptorVisibilityFilter.apply(null, Jenkins.get().getDescriptorList(TemplateEnvVar.class));
         }
 
+        @SuppressWarnings("unused") // Used by jelly
+        @Restricted(DoNotUse.class) // Used by jelly
+        public FormValidation doCheckWarmPoolSchedule(@QueryParameter String value) {
+            try {
+                WarmPoolPolicy.parse(value);
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+            return FormValidation.ok();
+        }
+
         @SuppressWarnings("unused") // Used by jelly
         @Restricted(DoNotUse.class) // Used by jelly
         public WorkspaceVolume getDefaultWorkspaceVolume() {
@@ -1170,6 +1214,8 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
                         : ", slaveConnectTimeout=" + slaveConnectTimeout)
                 + (idleMinutes == 0 ? "" : ", idleMinutes=" + idleMinutes)
                 + (activeDeadlineSeconds == 0 ? "" : ", activeDeadlineSeconds=" + activeDeadlineSeconds)
+                + (warmPoolSize == 0 ? "" : ", warmPoolSize=" + warmPoolSize)
+                + (warmPoolSchedule == null ? "" : ", warmPoolSchedule='" + warmPoolSchedule + '\'')
                 + (label == null ? "" : ", label='" + label + '\'')
                 + (serviceAccount == null ? "" : ", serviceAccount='" + serviceAccount + '\'')
                 + (schedulerName == null ? "" : ", schedulerName='" + schedulerName + '\'')
@@ -96,6 +96,11 @@ public class PodTemplateBuilder {
     public static final Pattern FROM_DIRECTIVE = Pattern.compile("^FROM (.*)$");
 
     public static final String LABEL_KUBERNETES_CONTROLLER = "kubernetes.jenkins.io/controller";
+    /**
+     * Identifies the controller instance which created the pod, as controllers may share the same Jenkins URL. Only
+     * set when garbage collection uses a {@link ControllerLease}.
+     */
+    public static final String LABEL_KUBERNETES_CONTROLLER_ID = "kubernetes.jenkins.io/controller-id";
     static final String NO_RECONNECT_AFTER_TIMEOUT =
             SystemProperties.getString(PodTemplateBuilder.class.getName() + ".noReconnectAfter", "1d");
     private static final String JENKINS_AGENT_FILE_ENVVAR = "JENKINS_AGENT_FILE";
@@ -234,6 +239,11 @@ public class PodTemplateBuilder {
         }
         if (cloud != null) {
             metadataBuilder.addToLabels(LABEL_KUBERNETES_CONTROLLER, sanitizeLabel(cloud.getJenkinsUrlOrNull()));
+            GarbageCollection gc = cloud.getGarbageCollection();
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            if (gc != null && gc.isUseLease() && jenkins != null) {
+                metadataBuilder.addToLabels(LABEL_KUBERNETES_CONTROLLER_ID, jenkins.getLegacyInstanceId());
+            }
         }
 
         Map<String, String> annotations = getAnnotationsMap(template.getAnnotations());
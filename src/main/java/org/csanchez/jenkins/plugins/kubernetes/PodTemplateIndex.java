@@ -0,0 +1,200 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.labels.LabelAtom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import jenkins.metrics.api.Metrics;
+
+/**
+ * Snapshot of the pod templates available to a {@link KubernetesCloud}, indexed by id and by label atom.
+ * <p>
+ * Lookups for label expressions and unwrapped templates are memoized for the lifetime of the snapshot.
+ * A snapshot is replaced as soon as any {@link PodTemplateSource} reports a modification, or the id, name, label,
+ * usage mode or parent of one of its templates was changed in place.
+ */
+final class PodTemplateIndex {
+
+    @CheckForNull
+    private final long[] modificationCounts;
+
+    private final List<PodTemplate> templates;
+
+    /**
+     * The lookup fields of {@link #templates} when they were indexed.
+     */
+    private final List<LookupKey> keys = new ArrayList<>();
+
+    private final Map<String, PodTemplate> byId = new HashMap<>();
+
+    private final Map<LabelAtom, List<PodTemplate>> byLabelAtom = new HashMap<>();
+
+    private final List<PodTemplate> normalMode = new ArrayList<>();
+
+    private final Map<Label, List<PodTemplate>> byLabel = new ConcurrentHashMap<>();
+
+    private final Map<String, Unwrapped> unwrapped = new ConcurrentHashMap<>();
+
+    /**
+     * @param templates all the templates of the cloud, in lookup order
+     * @param modificationCounts the modification counts of the template sources when the templates were collected
+     */
+    PodTemplateIndex(@NonNull List<PodTemplate> templates, @CheckForNull long[] modificationCounts) {
+        this.modificationCounts = modificationCounts;
+        this.templates = Collections.unmodifiableList(new ArrayList<>(templates));
+        for (PodTemplate t : this.templates) {
+            keys.add(new LookupKey(t));
+            byId.putIfAbsent(t.getId(), t);
+            for (LabelAtom atom : t.getLabelSet()) {
+                byLabelAtom.computeIfAbsent(atom, k -> new ArrayList<>()).add(t);
+            }
+            if (t.getNodeUsageMode() == Node.Mode.NORMAL) {
+                normalMode.add(t);
+            }
+        }
+    }
+
+    /**
+     * @param modificationCounts the current modification counts of the template sources
+     * @return {@code true} if this snapshot is still up-to-date
+     */
+    boolean isUpToDate(@CheckForNull long[] modificationCounts) {
+        if (this.modificationCounts == null
+                || modificationCounts == null
+                || !Arrays.equals(this.modificationCounts, modificationCounts)) {
+            return false;
+        }
+        for (int i = 0; i < templates.size(); i++) {
+            if (!keys.get(i).matches(templates.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NonNull
+    List<PodTemplate> getAll() {
+        return templates;
+    }
+
+    @CheckForNull
+    PodTemplate getById(@NonNull String id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Gets the templates matching a label, in lookup order.
+     * @param label the label, if {@code null} templates in {@link Node.Mode#NORMAL} mode are returned
+     * @return the matching templates
+     */
+    @NonNull
+    List<PodTemplate> getMatching(@CheckForNull Label label) {
+        if (label == null) {
+            return Collections.unmodifiableList(normalMode);
+        }
+        if (label instanceof LabelAtom) {
+            return Collections.unmodifiableList(byLabelAtom.getOrDefault(label, Collections.emptyList()));
+        }
+        return byLabel.computeIfAbsent(label, l -> {
+            List<PodTemplate> result = new ArrayList<>();
+            for (PodTemplate t : templates) {
+                if (l.matches(t.getLabelSet())) {
+                    result.add(t);
+                }
+            }
+            return Collections.unmodifiableList(result);
+        });
+    }
+
+    /**
+     * @param label the label
+     * @return the first template matching the label, if any
+     */
+    @CheckForNull
+    PodTemplate getFirstMatching(@CheckForNull Label label) {
+        List<PodTemplate> matching = getMatching(label);
+        return matching.isEmpty() ? null : matching.get(0);
+    }
+
+    /**
+     * Unwraps the hierarchy of a template against the templates of this snapshot.
+     * <p>
+     * The combined parents of the template are reused for subsequent calls with the same template instance and
+     * defaults provider template, but each call returns a new template, so that callers may modify it.
+     * Templates not part of this snapshot, such as the ones transformed by a {@link PodTemplateFilter},
+     * are unwrapped on every call.
+     *
+     * @param template the template to unwrap
+     * @param defaultsProviderTemplate the name of the template that provides the default values
+     * @return the unwrapped template
+     */
+    PodTemplate unwrap(@NonNull PodTemplate template, @CheckForNull String defaultsProviderTemplate) {
+        if (byId.get(template.getId()) != template) {
+            Metrics.metricRegistry().counter(MetricNames.UNWRAP_CACHE_MISS).inc();
+            return PodTemplateUtils.unwrap(template, defaultsProviderTemplate, templates);
+        }
+        Unwrapped cached = unwrapped.get(template.getId());
+        if (cached != null && Objects.equals(cached.defaultsProviderTemplate, defaultsProviderTemplate)) {
+            Metrics.metricRegistry().counter(MetricNames.UNWRAP_CACHE_HIT).inc();
+        } else {
+            Metrics.metricRegistry().counter(MetricNames.UNWRAP_CACHE_MISS).inc();
+            cached = new Unwrapped(
+                    defaultsProviderTemplate,
+                    PodTemplateUtils.unwrapParent(template, defaultsProviderTemplate, templates));
+            unwrapped.put(template.getId(), cached);
+        }
+        return PodTemplateUtils.unwrapWithParent(template, cached.parent);
+    }
+
+    private static final class Unwrapped {
+        @CheckForNull
+        private final String defaultsProviderTemplate;
+
+        /**
+         * The combined parents of the template, only read from.
+         */
+        @CheckForNull
+        private final PodTemplate parent;
+
+        Unwrapped(@CheckForNull String defaultsProviderTemplate, @CheckForNull PodTemplate parent) {
+            this.defaultsProviderTemplate = defaultsProviderTemplate;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * The fields of a template which its lookups and unwrapping depend on.
+     */
+    private static final class LookupKey {
+        private final String id;
+        private final String name;
+        private final String label;
+        private final Node.Mode nodeUsageMode;
+        private final String inheritFrom;
+
+        LookupKey(PodTemplate template) {
+            this.id = template.getId();
+            this.name = template.getName();
+            this.label = template.getLabel();
+            this.nodeUsageMode = template.getNodeUsageMode();
+            this.inheritFrom = template.getInheritFrom();
+        }
+
+        boolean matches(PodTemplate template) {
+            return Objects.equals(id, template.getId())
+                    && Objects.equals(name, template.getName())
+                    && Objects.equals(label, template.getLabel())
+                    && nodeUsageMode == template.getNodeUsageMode()
+                    && Objects.equals(inheritFrom, template.getInheritFrom());
+        }
+    }
+}
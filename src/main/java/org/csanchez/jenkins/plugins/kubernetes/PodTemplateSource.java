@@ -2,6 +2,7 @@ package org.csanchez.jenkins.plugins.kubernetes;
 
 import static java.util.stream.Collectors.toList;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.ExtensionList;
 import hudson.ExtensionPoint;
@@ -12,6 +13,11 @@ import java.util.List;
  * A source of pod templates.
  */
 public abstract class PodTemplateSource implements ExtensionPoint {
+    /**
+     * Value returned by {@link #getModificationCount(KubernetesCloud)} when a source cannot track its modifications.
+     */
+    protected static final long UNTRACKED = -1;
+
     public static List<PodTemplate> getAll(@NonNull KubernetesCloud cloud) {
         return ExtensionList.lookup(PodTemplateSource.class).stream()
                 .map(s -> s.getList(cloud))
@@ -19,6 +25,26 @@ public abstract class PodTemplateSource implements ExtensionPoint {
                 .collect(toList());
     }
 
+    /**
+     * Collects the modification counts of all sources for the given cloud.
+     * @param cloud the cloud
+     * @return the modification counts, or {@code null} if any source does not track its modifications.
+     */
+    @CheckForNull
+    static long[] getModificationCounts(@NonNull KubernetesCloud cloud) {
+        ExtensionList<PodTemplateSource> sources = ExtensionList.lookup(PodTemplateSource.class);
+        long[] counts = new long[sources.size()];
+        int i = 0;
+        for (PodTemplateSource source : sources) {
+            long count = source.getModificationCount(cloud);
+            if (count == UNTRACKED) {
+                return null;
+            }
+            counts[i++] = count;
+        }
+        return counts;
+    }
+
     /**
      * The list of {@link PodTemplate} contributed by this implementation.
      * @return The list of {@link PodTemplate} contributed by this implementation.
@@ -26,4 +52,15 @@ public abstract class PodTemplateSource implements ExtensionPoint {
      */
     @NonNull
     protected abstract List<PodTemplate> getList(@NonNull KubernetesCloud cloud);
+
+    /**
+     * A counter that changes every time the list returned by {@link #getList(KubernetesCloud)} changes for the given
+     * cloud. It allows {@link KubernetesCloud} to keep an index of its templates between provisioning rounds.
+     * @param cloud the cloud
+     * @return the modification count, or {@link #UNTRACKED} if this implementation cannot track modifications,
+     * in which case templates are looked up again on every call.
+     */
+    protected long getModificationCount(@NonNull KubernetesCloud cloud) {
+        return UNTRACKED;
+    }
 }
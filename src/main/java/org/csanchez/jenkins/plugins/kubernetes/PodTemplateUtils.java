@@ -558,23 +558,42 @@ public class PodTemplateUtils {
         if (template == null) {
             return null;
         }
+        return unwrapWithParent(template, unwrapParent(template, defaultProviderTemplate, allTemplates));
+    }
 
-        List<String> inheritFrom = computedInheritFrom(template, defaultProviderTemplate);
-        if (inheritFrom.isEmpty()) {
-            return template;
-        } else {
-            PodTemplate parent = null;
-            for (String name : inheritFrom) {
-                PodTemplate next = getTemplateByName(name, allTemplates);
-                if (next != null) {
-                    parent = combine(parent, unwrap(next, allTemplates));
-                }
+    /**
+     * Combines the templates a template inherits from.
+     * @param template the template
+     * @param defaultProviderTemplate the name of the template that provides the default values
+     * @param allTemplates the templates to look up parents from
+     * @return the combined parents, {@code null} if the template does not inherit from any template
+     */
+    @CheckForNull
+    static PodTemplate unwrapParent(
+            @NonNull PodTemplate template, String defaultProviderTemplate, Collection<PodTemplate> allTemplates) {
+        PodTemplate parent = null;
+        for (String name : computedInheritFrom(template, defaultProviderTemplate)) {
+            PodTemplate next = getTemplateByName(name, allTemplates);
+            if (next != null) {
+                parent = combine(parent, unwrap(next, allTemplates));
             }
-            PodTemplate combined = combine(parent, template);
-            combined.setUnwrapped(true);
-            LOGGER.log(Level.FINEST, "Combined parent + template is {0}", combined);
-            return combined;
         }
+        return parent;
+    }
+
+    /**
+     * @param template the template
+     * @param parent the combined parents of the template, as returned by {@link #unwrapParent}
+     * @return a new template combining the template with its parents, or the template itself if it has no parent
+     */
+    static PodTemplate unwrapWithParent(@NonNull PodTemplate template, @CheckForNull PodTemplate parent) {
+        if (parent == null) {
+            return template;
+        }
+        PodTemplate combined = combine(parent, template);
+        combined.setUnwrapped(true);
+        LOGGER.log(Level.FINEST, "Combined parent + template is {0}", combined);
+        return combined;
     }
 
     private static List<String> computedInheritFrom(PodTemplate template, String defaultProviderTemplate) {
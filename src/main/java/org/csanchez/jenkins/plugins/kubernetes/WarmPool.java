@@ -0,0 +1,242 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import com.codahale.metrics.Gauge;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Descriptor;
+import hudson.model.Executor;
+import hudson.model.Node;
+import hudson.model.Queue;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.metrics.api.Metrics;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Keeps agents launched ahead of demand for the pod templates that have a {@link WarmPoolPolicy}.
+ * <p>
+ * Warm agents are regular {@link KubernetesSlave} instances, so the queue hands them out as soon as a matching item
+ * appears. The pool is replenished after each hit and periodically, within the limits enforced by
+ * {@link KubernetesProvisioningLimits}.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public final class WarmPool {
+    private static final Logger LOGGER = Logger.getLogger(WarmPool.class.getName());
+
+    private static final long RECURRENCE_PERIOD =
+            SystemProperties.getLong(WarmPool.class.getName() + ".recurrencePeriod", 30L);
+
+    private final AtomicBoolean replenishScheduled = new AtomicBoolean();
+
+    public WarmPool() {
+        Metrics.metricRegistry().gauge(MetricNames.WARM_POOL_SIZE, () -> (Gauge<Integer>) this::size);
+    }
+
+    /**
+     * @return the singleton instance
+     */
+    public static WarmPool get() {
+        return ExtensionList.lookupSingleton(WarmPool.class);
+    }
+
+    /**
+     * @return the number of warm agents, across all clouds
+     */
+    public int size() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return 0;
+        }
+        int size = 0;
+        for (Node node : jenkins.getNodes()) {
+            if (isWarm(node)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private static boolean isWarm(Node node) {
+        return node instanceof KubernetesSlave
+                && node.getRetentionStrategy() instanceof WarmPoolRetentionStrategy
+                && ((WarmPoolRetentionStrategy) node.getRetentionStrategy()).isWarm();
+    }
+
+    /**
+     * Called when a warm agent accepts its first task.
+     */
+    void onHit(Executor executor) {
+        Metrics.metricRegistry().counter(MetricNames.WARM_POOL_HIT).inc();
+        LOGGER.log(Level.FINE, "Warm agent {0} taken", executor.getOwner().getName());
+        replenishSoon();
+    }
+
+    /**
+     * Called when agents are provisioned for a template because its pool had no agent left.
+     */
+    static void onMiss(@NonNull PodTemplate template, int count) {
+        if (WarmPoolPolicy.of(template).isEnabled()) {
+            Metrics.metricRegistry().counter(MetricNames.WARM_POOL_MISS).inc(count);
+        }
+    }
+
+    private void replenishSoon() {
+        if (replenishScheduled.compareAndSet(false, true)) {
+            Timer.get().submit(() -> {
+                replenishScheduled.set(false);
+                replenish();
+            });
+        }
+    }
+
+    /**
+     * Brings the pool of each pod template back to its current size.
+     */
+    synchronized void replenish() {
+        Jenkins jenkins = Jenkins.get();
+        LocalTime now = LocalTime.now();
+        for (KubernetesCloud cloud : jenkins.clouds.getAll(KubernetesCloud.class)) {
+            for (PodTemplate template : cloud.getTemplates()) {
+                WarmPoolPolicy policy = WarmPoolPolicy.of(template);
+                List<KubernetesSlave> warm = warmAgents(jenkins, cloud, template);
+                if (!policy.isEnabled() && warm.isEmpty()) {
+                    continue;
+                }
+                int target = policy.getSize(now);
+                if (target == warm.size() || !KubernetesCircuitBreaker.forCloud(cloud.name).allowRequest()) {
+                    continue;
+                }
+                for (int i = warm.size(); i < target; i++) {
+                    if (!add(jenkins, cloud, template)) {
+                        break;
+                    }
+                }
+                for (int i = target; i < warm.size(); i++) {
+                    remove(warm.get(i));
+                }
+            }
+        }
+    }
+
+    private static List<KubernetesSlave> warmAgents(Jenkins jenkins, KubernetesCloud cloud, PodTemplate template) {
+        List<KubernetesSlave> warm = new ArrayList<>();
+        for (Node node : jenkins.getNodes()) {
+            if (isWarm(node)) {
+                KubernetesSlave agent = (KubernetesSlave) node;
+                if (cloud.name.equals(agent.getCloudName()) && template.getId().equals(agent.getTemplateId())) {
+                    warm.add(agent);
+                }
+            }
+        }
+        return warm;
+    }
+
+    private static boolean add(Jenkins jenkins, KubernetesCloud cloud, PodTemplate template) {
+        if (!KubernetesProvisioningLimits.get().register(cloud, template, 1)) {
+            LOGGER.log(Level.FINE, "Cannot add warm agent for template {0}: limits reached", template.getName());
+            return false;
+        }
+        try {
+            PodTemplate unwrapped = cloud.getUnwrappedTemplate(template);
+            KubernetesSlave agent = KubernetesSlave.builder()
+                    .podTemplate(unwrapped)
+                    .cloud(cloud)
+                    .retentionStrategy(new WarmPoolRetentionStrategy(
+                            KubernetesSlave.Builder.determineRetentionStrategy(cloud, unwrapped)))
+                    .build();
+            jenkins.addNode(agent);
+            LOGGER.log(Level.FINE, "Added warm agent {0} for template {1}", new Object[] {
+                agent.getNodeName(), template.getName()
+            });
+            return true;
+        } catch (IOException | Descriptor.FormException | RuntimeException e) {
+            KubernetesProvisioningLimits.get().unregister(cloud, template, 1);
+            LOGGER.log(Level.WARNING, e, () -> "Failed to add warm agent for template " + template.getName());
+            return false;
+        }
+    }
+
+    /**
+     * Removes an agent from the pool, unless the queue already assigned it a task.
+     * @return whether the agent was removed
+     */
+    static boolean remove(KubernetesSlave agent) {
+        AtomicBoolean removable = new AtomicBoolean();
+        Queue.withLock(() -> {
+            WarmPoolRetentionStrategy strategy = (WarmPoolRetentionStrategy) agent.getRetentionStrategy();
+            Computer computer = agent.toComputer();
+            // a task may have been assigned to the agent before taskAccepted marks it as used
+            if (!strategy.isWarm() || (computer != null && !computer.isIdle())) {
+                return;
+            }
+            if (computer != null) {
+                computer.setAcceptingTasks(false);
+            }
+            strategy.release();
+            removable.set(true);
+        });
+        if (!removable.get()) {
+            LOGGER.log(Level.FINE, "Warm agent {0} is in use, not removing it", agent.getNodeName());
+            return false;
+        }
+        try {
+            agent.terminate();
+            LOGGER.log(Level.FINE, "Removed warm agent {0}", agent.getNodeName());
+        } catch (IOException | InterruptedException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Failed to remove warm agent " + agent.getNodeName());
+        }
+        return true;
+    }
+
+    /**
+     * Periodically brings the pools back to size, including when the size changes with the time of the day.
+     */
+    @Extension
+    public static final class Replenishment extends AsyncPeriodicWork {
+        public Replenishment() {
+            super("Kubernetes warm pool replenishment");
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            WarmPool.get().replenish();
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.SECONDS.toMillis(RECURRENCE_PERIOD);
+        }
+    }
+
+    @Extension
+    public static class ComputerListenerImpl extends ComputerListener {
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            Node node = c.getNode();
+            if (node instanceof KubernetesSlave && node.getRetentionStrategy() instanceof WarmPoolRetentionStrategy) {
+                long latency = ((WarmPoolRetentionStrategy) node.getRetentionStrategy()).online();
+                if (latency >= 0) {
+                    Metrics.metricRegistry()
+                            .timer(MetricNames.WARM_POOL_REPLENISH)
+                            .update(latency, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Size of the warm pool of a {@link PodTemplate}, either fixed or depending on the time of the day.
+ * <p>
+ * The schedule is a list of lines {@code HH:mm-HH:mm=size}, in the local time of the controller. The first window
+ * containing the current time gives the size of the pool, the fixed size applies outside of all windows. Windows
+ * may span midnight, such as {@code 22:00-06:00=0}. Blank lines and lines starting with {@code #} are ignored.
+ */
+public final class WarmPoolPolicy {
+
+    private static final Pattern WINDOW =
+            Pattern.compile("(\\d{1,2}:\\d{2})\\s*-\\s*(\\d{1,2}:\\d{2})\\s*=\\s*(\\d+)");
+
+    private final int size;
+    private final List<Window> windows;
+
+    private WarmPoolPolicy(int size, List<Window> windows) {
+        this.size = size;
+        this.windows = windows;
+    }
+
+    /**
+     * @param template the pod template
+     * @return the warm pool policy of the template
+     */
+    @NonNull
+    public static WarmPoolPolicy of(@NonNull PodTemplate template) {
+        List<Window> windows;
+        try {
+            windows = parse(template.getWarmPoolSchedule());
+        } catch (IllegalArgumentException e) {
+            windows = Collections.emptyList();
+        }
+        return new WarmPoolPolicy(Math.max(0, template.getWarmPoolSize()), windows);
+    }
+
+    /**
+     * @param now the current time
+     * @return the number of warm agents to keep at the given time
+     */
+    public int getSize(@NonNull LocalTime now) {
+        for (Window window : windows) {
+            if (window.contains(now)) {
+                return window.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return whether a warm pool may be kept at some time of the day
+     */
+    public boolean isEnabled() {
+        return size > 0 || windows.stream().anyMatch(w -> w.size > 0);
+    }
+
+    /**
+     * @param schedule the schedule
+     * @return the windows of the schedule
+     * @throws IllegalArgumentException if a line of the schedule is invalid
+     */
+    @NonNull
+    static List<Window> parse(@CheckForNull String schedule) {
+        if (StringUtils.isBlank(schedule)) {
+            return Collections.emptyList();
+        }
+        List<Window> windows = new ArrayList<>();
+        for (String line : schedule.split("\\r?\\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            Matcher m = WINDOW.matcher(trimmed);
+            if (!m.matches()) {
+                throw new IllegalArgumentException("Invalid warm pool window, expected HH:mm-HH:mm=size: " + trimmed);
+            }
+            try {
+                windows.add(new Window(parseTime(m.group(1)), parseTime(m.group(2)), Integer.parseInt(m.group(3))));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid warm pool window: " + trimmed, e);
+            }
+        }
+        return windows;
+    }
+
+    private static LocalTime parseTime(String time) {
+        return LocalTime.parse(time.length() == 4 ? "0" + time : time);
+    }
+
+    static final class Window {
+        private final LocalTime from;
+        private final LocalTime to;
+        private final int size;
+
+        Window(LocalTime from, LocalTime to, int size) {
+            this.from = from;
+            this.to = to;
+            this.size = size;
+        }
+
+        boolean contains(LocalTime time) {
+            if (from.isBefore(to)) {
+                return !time.isBefore(from) && time.isBefore(to);
+            }
+            // spans midnight
+            return !time.isBefore(from) || time.isBefore(to);
+        }
+    }
+}
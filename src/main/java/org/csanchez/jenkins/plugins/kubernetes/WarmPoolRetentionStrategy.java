@@ -0,0 +1,122 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Descriptor;
+import hudson.model.Executor;
+import hudson.model.ExecutorListener;
+import hudson.model.Queue;
+import hudson.slaves.AbstractCloudComputer;
+import hudson.slaves.RetentionStrategy;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Retention strategy of the agents of a {@link WarmPool}.
+ * <p>
+ * The agent is kept while it waits in the pool. Once it has accepted a task, it is retained as any other agent of its
+ * template would be.
+ */
+@Restricted(NoExternalUse.class)
+public class WarmPoolRetentionStrategy extends RetentionStrategy<AbstractCloudComputer> implements ExecutorListener {
+
+    @NonNull
+    private final RetentionStrategy delegate;
+
+    private final long created = System.currentTimeMillis();
+
+    private volatile boolean online;
+
+    private volatile boolean used;
+
+    public WarmPoolRetentionStrategy(@NonNull RetentionStrategy delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return whether the agent is still waiting in the pool
+     */
+    public boolean isWarm() {
+        return !used;
+    }
+
+    /**
+     * Marks the agent as removed from the pool, so that it is retained as any other agent.
+     */
+    void release() {
+        used = true;
+    }
+
+    /**
+     * Marks the agent as online.
+     * @return the time it took to bring the agent online, in milliseconds, or -1 if it was online already
+     */
+    long online() {
+        if (online) {
+            return -1;
+        }
+        online = true;
+        return System.currentTimeMillis() - created;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public long check(@NonNull AbstractCloudComputer c) {
+        if (!used) {
+            return 1;
+        }
+        return delegate.check(c);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void start(@NonNull AbstractCloudComputer c) {
+        delegate.start(c);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean isManualLaunchAllowed(AbstractCloudComputer c) {
+        return delegate.isManualLaunchAllowed(c);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean isAcceptingTasks(AbstractCloudComputer c) {
+        return delegate.isAcceptingTasks(c);
+    }
+
+    @Override
+    public void taskAccepted(Executor executor, Queue.Task task) {
+        if (!used) {
+            used = true;
+            WarmPool.get().onHit(executor);
+        }
+        if (delegate instanceof ExecutorListener) {
+            ((ExecutorListener) delegate).taskAccepted(executor, task);
+        }
+    }
+
+    @Override
+    public void taskCompleted(Executor executor, Queue.Task task, long durationMS) {
+        if (delegate instanceof ExecutorListener) {
+            ((ExecutorListener) delegate).taskCompleted(executor, task, durationMS);
+        }
+    }
+
+    @Override
+    public void taskCompletedWithProblems(Executor executor, Queue.Task task, long durationMS, Throwable problems) {
+        if (delegate instanceof ExecutorListener) {
+            ((ExecutorListener) delegate).taskCompletedWithProblems(executor, task, durationMS, problems);
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<RetentionStrategy<?>> {
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Kubernetes Warm Pool";
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.csanchez.jenkins.plugins.kubernetes.pipeline;
 
 import static org.csanchez.jenkins.plugins.kubernetes.pipeline.Constants.EXIT;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.AbortException;
@@ -34,6 +35,7 @@ import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.dsl.ExecListener;
 import io.fabric8.kubernetes.client.dsl.ExecWatch;
+import io.fabric8.kubernetes.client.dsl.PodResource;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.FileNotFoundException;
@@ -60,10 +62,14 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
+import jenkins.metrics.api.Metrics;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.output.TeeOutputStream;
+import org.csanchez.jenkins.plugins.kubernetes.ApiPriority;
 import org.csanchez.jenkins.plugins.kubernetes.ContainerTemplate;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesClientProvider;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
+import org.csanchez.jenkins.plugins.kubernetes.MetricNames;
 import org.csanchez.jenkins.plugins.kubernetes.PodContainerSource;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
 import org.jenkinsci.plugins.workflow.steps.EnvironmentExpander;
@@ -111,6 +117,11 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
     @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "not needed on deserialization")
     private transient List<Closeable> closables;
 
+    /**
+     * Keeps the client open while exec sessions of this decorator may use it.
+     */
+    private transient KubernetesClientProvider.Lease lease;
+
     private String containerName;
     private EnvironmentExpander environmentExpander;
     private EnvVars globalVars;
@@ -445,6 +456,7 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                 if (closables == null) {
                     closables = new ArrayList<>();
                 }
+                KubernetesClientProvider.Lease execLease = leaseClient();
 
                 int attempts = 0;
                 ExecWatchWrapper watchWrapper = null;
@@ -466,14 +478,18 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                         }
                     }
 
-                    try {
+                    try (ApiPriority.Scope scope = ApiPriority.EXEC.open()) {
                         final AtomicBoolean alive = new AtomicBoolean(false);
                         final CountDownLatch started = new CountDownLatch(1);
                         final CountDownLatch finished = new CountDownLatch(1);
                         final AtomicLong startAlive = new AtomicLong();
+                        final long opening = System.nanoTime();
 
-                        ExecWatch watch = nodeContext
-                                .getPodResource()
+                        // exec sessions go through the leased client, which stays open if the cloud is reconfigured
+                        PodResource podResource = execLease != null
+                                ? nodeContext.getPodResource(execLease.getClient())
+                                : nodeContext.getPodResource();
+                        ExecWatch watch = podResource
                                 .inContainer(containerName)
                                 .redirectingInput(STDIN_BUFFER_SIZE) // JENKINS-50429
                                 .writingOutput(stream)
@@ -484,6 +500,9 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                                         alive.set(true);
                                         started.countDown();
                                         startAlive.set(System.nanoTime());
+                                        Metrics.metricRegistry()
+                                                .timer(MetricNames.EXEC_OPEN)
+                                                .update(startAlive.get() - opening, TimeUnit.NANOSECONDS);
                                         LOGGER.log(Level.FINEST, "onOpen : {0}", finished);
                                     }
 
@@ -747,6 +766,22 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
         return windows ? "\r\n" : "\n";
     }
 
+    /**
+     * @return the lease on the client used by exec sessions, {@code null} if the client could not be leased
+     */
+    @CheckForNull
+    private synchronized KubernetesClientProvider.Lease leaseClient() {
+        if (lease == null && nodeContext != null) {
+            try {
+                lease = nodeContext.leaseClient();
+                closables.add(lease);
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Failed to lease Kubernetes client", e);
+            }
+        }
+        return lease;
+    }
+
     @Override
     public void close() throws IOException {
         if (closables == null) return;
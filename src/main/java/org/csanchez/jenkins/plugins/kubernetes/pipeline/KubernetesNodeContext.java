@@ -25,6 +25,7 @@ import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.dsl.PodResource;
 import java.io.IOException;
 import java.io.Serializable;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesClientProvider;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
@@ -85,10 +86,26 @@ public class KubernetesNodeContext implements Serializable {
         return getKubernetesSlave().getKubernetesCloud().getPodResource(namespace, podName);
     }
 
+    /**
+     * Get node {@link PodResource} from a given client, such as a leased one.
+     * @param client the client
+     * @return client pod resource, never {@code null}
+     */
+    @NonNull
+    PodResource getPodResource(@NonNull KubernetesClient client) {
+        return namespace == null
+                ? client.pods().withName(podName)
+                : client.pods().inNamespace(namespace).withName(podName);
+    }
+
     KubernetesClient connectToCloud() throws Exception {
         return getKubernetesSlave().getKubernetesCloud().connect();
     }
 
+    KubernetesClientProvider.Lease leaseClient() throws Exception {
+        return getKubernetesSlave().getKubernetesCloud().leaseClient();
+    }
+
     /**
      * Get {@link Node} from the {@link StepContext}. If the context instance is instance of
      * {@link KubernetesSlave} it will be returned otherwise an exception is thrown.
@@ -7,7 +7,9 @@ import hudson.util.CopyOnWriteMap;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
@@ -30,6 +32,11 @@ public class PodTemplateMap {
      */
     private Map<String, List<PodTemplate>> map = new CopyOnWriteMap.Hash<>();
 
+    /**
+     * Modification counts indexed by cloud name
+     */
+    private final Map<String, AtomicLong> modCounts = new ConcurrentHashMap<>();
+
     /**
      * Returns a read-only view of the templates available for the corresponding cloud instance.
      * @param cloud The kubernetes cloud instance for which templates are needed
@@ -58,6 +65,7 @@ public class PodTemplateMap {
             List<PodTemplate> list = getOrCreateTemplateList(cloud);
             list.add(podTemplate);
             map.put(cloud.name, list);
+            modified(cloud);
         }
     }
 
@@ -67,9 +75,24 @@ public class PodTemplateMap {
                     Level.FINE,
                     "Unregistering template with id=" + podTemplate.getId() + " from kubernetes cloud " + cloud.name);
             getOrCreateTemplateList(cloud).remove(podTemplate);
+            modified(cloud);
         }
     }
 
+    /**
+     * Returns a counter incremented every time templates are added to or removed from the corresponding cloud instance.
+     * @param cloud The cloud instance.
+     * @return the modification count.
+     */
+    public long getModificationCount(@NonNull KubernetesCloud cloud) {
+        AtomicLong modCount = modCounts.get(cloud.name);
+        return modCount == null ? 0 : modCount.get();
+    }
+
+    private void modified(@NonNull KubernetesCloud cloud) {
+        modCounts.computeIfAbsent(cloud.name, k -> new AtomicLong()).incrementAndGet();
+    }
+
     @Extension
     public static class PodTemplateSourceImpl extends PodTemplateSource {
 
@@ -78,5 +101,10 @@ public class PodTemplateMap {
         public List<PodTemplate> getList(@NonNull KubernetesCloud cloud) {
             return PodTemplateMap.get().getTemplates(cloud);
         }
+
+        @Override
+        protected long getModificationCount(@NonNull KubernetesCloud cloud) {
+            return PodTemplateMap.get().getModificationCount(cloud);
+        }
     }
 }
@@ -43,6 +43,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import org.csanchez.jenkins.plugins.kubernetes.ApiPriority;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesComputer;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
 import org.csanchez.jenkins.plugins.kubernetes.PodTemplate;
@@ -164,7 +165,8 @@ public final class SecretsMasker extends TaskListenerDecorator {
                     if (unix == null) {
                         return null;
                     }
-                    try (OutputStream errs = new LogTaskListener(LOGGER, Level.FINE).getLogger();
+                    try (ApiPriority.Scope scope = ApiPriority.EXEC.open();
+                            OutputStream errs = new LogTaskListener(LOGGER, Level.FINE).getLogger();
                             ExecWatch exec = slave.getKubernetesCloud()
                                     .connect()
                                     .pods()
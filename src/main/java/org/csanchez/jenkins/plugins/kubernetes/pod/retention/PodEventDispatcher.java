@@ -0,0 +1,113 @@
+package org.csanchez.jenkins.plugins.kubernetes.pod.retention;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.metrics.api.Metrics;
+import jenkins.util.SystemProperties;
+import org.csanchez.jenkins.plugins.kubernetes.MetricNames;
+
+/**
+ * Runs the {@link Reaper.Listener} callbacks off the watch threads.
+ * <p>
+ * Events are spread over {@link #STRIPES} single threaded executors by pod, so that the events of a pod are handled
+ * in order while a slow pod only delays the pods sharing its stripe. Each stripe queues at most
+ * {@link #QUEUE_CAPACITY} events; once full, the watch thread waits for room rather than dropping events, which
+ * slows down the reading of the watch stream.
+ */
+class PodEventDispatcher {
+    private static final Logger LOGGER = Logger.getLogger(PodEventDispatcher.class.getName());
+
+    private static final int STRIPES =
+            Math.max(1, SystemProperties.getInteger(PodEventDispatcher.class.getName() + ".stripes", 8));
+
+    private static final int QUEUE_CAPACITY =
+            Math.max(1, SystemProperties.getInteger(PodEventDispatcher.class.getName() + ".queueCapacity", 1000));
+
+    /**
+     * Seconds after which the thread of a stripe without events stops.
+     */
+    private static final long KEEP_ALIVE = 60;
+
+    private final ThreadPoolExecutor[] stripes = new ThreadPoolExecutor[STRIPES];
+
+    PodEventDispatcher() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ThreadPoolExecutor(
+                    1,
+                    1,
+                    KEEP_ALIVE,
+                    TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Reaper.dispatcher-" + i),
+                    PodEventDispatcher::waitForRoom);
+            // only keep threads for the stripes with events
+            stripes[i].allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * @return the number of events waiting to be handled
+     */
+    int getQueued() {
+        int queued = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            queued += stripe.getQueue().size();
+        }
+        return queued;
+    }
+
+    /**
+     * Handles an event after the events previously dispatched for the same pod.
+     * @param key identifies the pod, such as its uid
+     * @param task the handling of the event
+     */
+    void dispatch(@NonNull String key, @NonNull Runnable task) {
+        long queued = System.nanoTime();
+        try {
+            stripes[Math.floorMod(key.hashCode(), STRIPES)].execute(() -> {
+                Metrics.metricRegistry()
+                        .timer(MetricNames.REAPER_DISPATCH_LAG)
+                        .update(System.nanoTime() - queued, TimeUnit.NANOSECONDS);
+                try {
+                    task.run();
+                } catch (RuntimeException x) {
+                    LOGGER.log(Level.WARNING, "Failed to handle event for " + key, x);
+                }
+            });
+        } catch (RejectedExecutionException x) {
+            LOGGER.log(Level.FINE, "Dropping event for " + key + " after shutdown", x);
+        }
+    }
+
+    void shutdown() {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdownNow();
+        }
+    }
+
+    private static void waitForRoom(Runnable r, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Reaper is shut down");
+        }
+        Metrics.metricRegistry().counter(MetricNames.REAPER_DISPATCH_BACKPRESSURE).inc();
+        BlockingQueue<Runnable> queue = executor.getQueue();
+        try {
+            while (!queue.offer(r, 1, TimeUnit.SECONDS)) {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("Reaper is shut down");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.csanchez.jenkins.plugins.kubernetes.pod.retention;
 
+import com.codahale.metrics.Gauge;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
@@ -26,19 +27,24 @@ import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.ExtensionPoint;
 import hudson.XmlFile;
+import hudson.init.Terminator;
 import hudson.model.Computer;
 import hudson.model.Node;
 import hudson.model.Saveable;
 import hudson.model.TaskListener;
 import hudson.model.listeners.ItemListener;
 import hudson.model.listeners.SaveableListener;
+import hudson.slaves.Cloud;
 import hudson.slaves.ComputerListener;
 import hudson.slaves.EphemeralNode;
 import hudson.slaves.OfflineCause;
 import io.fabric8.kubernetes.api.model.ContainerStateTerminated;
 import io.fabric8.kubernetes.api.model.ContainerStateWaiting;
 import io.fabric8.kubernetes.api.model.ContainerStatus;
+import io.fabric8.kubernetes.api.model.ListMeta;
+import io.fabric8.kubernetes.api.model.ListOptionsBuilder;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.api.model.PodStatus;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.Watch;
@@ -47,26 +53,36 @@ import io.fabric8.kubernetes.client.WatcherException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import jenkins.metrics.api.Metrics;
 import jenkins.model.Jenkins;
 import jenkins.util.Listeners;
 import jenkins.util.SystemProperties;
 import jenkins.util.Timer;
+import org.apache.commons.lang.StringUtils;
+import org.csanchez.jenkins.plugins.kubernetes.ApiPriority;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesCircuitBreaker;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesClientProvider;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesComputer;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlaveIndex;
+import org.csanchez.jenkins.plugins.kubernetes.MetricNames;
 import org.csanchez.jenkins.plugins.kubernetes.PodUtils;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
 
@@ -95,6 +111,21 @@ public class Reaper extends ComputerListener {
         }
     }
 
+    @Terminator
+    public static void shutdown() {
+        for (Reaper reaper : ExtensionList.lookup(Reaper.class)) {
+            synchronized (reaper.dispatcherLock) {
+                PodEventDispatcher dispatcher = reaper.dispatcher;
+                if (dispatcher != null) {
+                    dispatcher.shutdown();
+                    reaper.dispatcher = null;
+                }
+            }
+        }
+        // the gauge would otherwise keep the dispatcher of this instance after a restart in the same JVM
+        Metrics.metricRegistry().remove(MetricNames.REAPER_DISPATCH_QUEUE);
+    }
+
     public static Reaper getInstance() {
         return ExtensionList.lookupSingleton(Reaper.class);
     }
@@ -105,8 +136,58 @@ public class Reaper extends ComputerListener {
      */
     private final AtomicBoolean activated = new AtomicBoolean();
 
+    /**
+     * Minimum number of agents in a namespace for their pods to be listed at once on activation.
+     */
+    @SuppressFBWarnings(
+            value = "MS_SHOULD_BE_FINAL",
+            justification = "Allow tests or groovy console to change the value")
+    static int REAP_LIST_THRESHOLD = SystemProperties.getInteger(Reaper.class.getName() + ".reapListThreshold", 2);
+
+    /**
+     * Maximum number of pods per page when listing the agent pods of a namespace.
+     */
+    @SuppressFBWarnings(
+            value = "MS_SHOULD_BE_FINAL",
+            justification = "Allow tests or groovy console to change the value")
+    static long REAP_LIST_PAGE_SIZE = SystemProperties.getLong(Reaper.class.getName() + ".reapListPageSize", 500L);
+
+    /**
+     * Delay before watching a cloud again after its watch was closed by an error.
+     */
+    @SuppressFBWarnings(
+            value = "MS_SHOULD_BE_FINAL",
+            justification = "Allow tests or groovy console to change the value")
+    static long RESUME_DELAY_MS = SystemProperties.getLong(Reaper.class.getName() + ".resumeDelay", 5000L);
+
     private final Map<String, CloudPodWatcher> watchers = new ConcurrentHashMap<>();
 
+    private final AtomicBoolean namespacesUpdateScheduled = new AtomicBoolean();
+
+    /**
+     * Delay before updating the watched namespaces after the agents changed, so that changes are coalesced.
+     */
+    private static final long NAMESPACES_UPDATE_DELAY_MS =
+            SystemProperties.getLong(Reaper.class.getName() + ".namespacesUpdateDelay", 1000L);
+
+    /**
+     * Last resource version seen by the watch of each cloud and namespace, to resume watching from it.
+     */
+    private final Map<String, String> resourceVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Clouds and namespaces whose watch could not be set up, so that the failure is only logged once.
+     */
+    private final Set<String> failedWatches = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Runs the listeners, so that watch threads do not wait for their API calls. Created once pods get watched.
+     */
+    @CheckForNull
+    private volatile PodEventDispatcher dispatcher;
+
+    private final Object dispatcherLock = new Object();
+
     private final LoadingCache<String, Set<String>> terminationReasons =
             Caffeine.newBuilder().expireAfterAccess(1, TimeUnit.DAYS).build(k -> new ConcurrentSkipListSet<>());
 
@@ -115,10 +196,13 @@ public class Reaper extends ComputerListener {
         if (c instanceof KubernetesComputer) {
             Timer.get().schedule(this::maybeActivate, 10, TimeUnit.SECONDS);
 
-            // ensure associated cloud is being watched. the watch may have been closed due to exception or
-            // failure to register on initial activation.
+            // ensure associated cloud and namespace are being watched. the watch may have been closed due to
+            // exception or failure to register on initial activation, or the agent may use a new namespace.
             KubernetesSlave node = ((KubernetesComputer) c).getNode();
-            if (node != null && !isWatchingCloud(node.getCloudName())) {
+            if (node != null
+                    && (node.getNamespace() == null
+                            ? !isWatchingCloud(node.getCloudName())
+                            : !isWatchingNamespace(node.getCloudName(), node.getNamespace()))) {
                 try {
                     watchCloud(node.getKubernetesCloud());
                 } catch (IllegalStateException ise) {
@@ -136,6 +220,8 @@ public class Reaper extends ComputerListener {
 
     private void activate() {
         LOGGER.fine("Activating reaper");
+        long start = System.nanoTime();
+        getDispatcher();
         // First check all existing nodes to see if they still have active pods.
         // (We may have missed deletion events while Jenkins was shut off,
         // or pods may have been deleted before any Kubernetes agent was brought online.)
@@ -143,14 +229,41 @@ public class Reaper extends ComputerListener {
 
         // Now set up a watch for any subsequent pod deletions.
         watchClouds();
+        Metrics.metricRegistry()
+                .timer(MetricNames.REAPER_ACTIVATION)
+                .update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @NonNull
+    private PodEventDispatcher getDispatcher() {
+        PodEventDispatcher d = dispatcher;
+        if (d == null) {
+            synchronized (dispatcherLock) {
+                d = dispatcher;
+                if (d == null) {
+                    PodEventDispatcher created = new PodEventDispatcher();
+                    Metrics.metricRegistry().remove(MetricNames.REAPER_DISPATCH_QUEUE);
+                    Metrics.metricRegistry()
+                            .gauge(MetricNames.REAPER_DISPATCH_QUEUE, () -> (Gauge<Integer>) created::getQueued);
+                    dispatcher = created;
+                    d = created;
+                }
+            }
+        }
+        return d;
     }
 
     /**
      * Remove any {@link KubernetesSlave} nodes that reference Pods that don't exist.
+     * <p>
+     * Agents are checked cloud by cloud, in parallel. Within a cloud, the pods of each namespace holding at least
+     * {@link #REAP_LIST_THRESHOLD} agents are listed at once, by pages, using the labels set on agent pods; the
+     * agents whose pod is not listed, for instance because of a custom pod label, are then checked individually.
      */
     private void reapAgents() {
         Jenkins jenkins = Jenkins.getInstanceOrNull();
         if (jenkins != null) {
+            Map<String, List<KubernetesSlave>> agentsByCloud = new HashMap<>();
             for (Node n : new ArrayList<>(jenkins.getNodes())) {
                 if (!(n instanceof KubernetesSlave)) {
                     continue;
@@ -160,30 +273,126 @@ public class Reaper extends ComputerListener {
                     // Being launched, don't touch it.
                     continue;
                 }
-                String ns = ks.getNamespace();
-                String name = ks.getPodName();
-                try {
-                    // TODO more efficient to do a single (or paged) list request, but tricky since there may be
-                    // multiple clouds,
-                    // and even within a single cloud an agent pod is permitted to use a nondefault namespace,
-                    // yet we do not want to do an unnamespaced pod list for RBAC reasons.
-                    // Could use a hybrid approach: first list all pods in the configured namespace for all clouds;
-                    // then go back and individually check any unmatched agents with their configured namespace.
-                    KubernetesCloud cloud = ks.getKubernetesCloud();
-                    if (cloud.connect().pods().inNamespace(ns).withName(name).get() == null) {
-                        LOGGER.info(() -> ns + "/" + name
-                                + " seems to have been deleted, so removing corresponding Jenkins agent");
-                        jenkins.removeNode(ks);
-                    } else {
-                        LOGGER.fine(() -> ns + "/" + name + " still seems to exist, OK");
+                agentsByCloud
+                        .computeIfAbsent(ks.getCloudName(), k -> new ArrayList<>())
+                        .add(ks);
+            }
+            CompletableFuture.allOf(agentsByCloud.values().stream()
+                            .map(agents -> CompletableFuture.runAsync(
+                                    () -> reapAgents(jenkins, agents), Computer.threadPoolForRemoting))
+                            .toArray(CompletableFuture[]::new))
+                    .join();
+        }
+    }
+
+    private static void reapAgents(@NonNull Jenkins jenkins, @NonNull List<KubernetesSlave> agents) {
+        try (ApiPriority.Scope scope = ApiPriority.BACKGROUND.open()) {
+            Map<String, List<KubernetesSlave>> agentsByNamespace = new HashMap<>();
+            for (KubernetesSlave ks : agents) {
+                agentsByNamespace
+                        .computeIfAbsent(ks.getNamespace(), k -> new ArrayList<>())
+                        .add(ks);
+            }
+            for (Map.Entry<String, List<KubernetesSlave>> entry : agentsByNamespace.entrySet()) {
+                List<KubernetesSlave> unmatched = entry.getValue();
+                Cloud cloud = jenkins.getCloud(unmatched.get(0).getCloudName());
+                if (unmatched.size() >= REAP_LIST_THRESHOLD && cloud instanceof KubernetesCloud) {
+                    PodListing listing = listPods((KubernetesCloud) cloud, entry.getKey());
+                    if (listing != null) {
+                        unmatched = listing.unmatched(unmatched);
                     }
-                } catch (KubernetesAuthException | IOException | RuntimeException x) {
-                    LOGGER.log(Level.WARNING, x, () -> "failed to do initial reap check for " + ns + "/" + name);
+                }
+                for (KubernetesSlave ks : unmatched) {
+                    reapAgent(jenkins, ks);
                 }
             }
         }
     }
 
+    /**
+     * @return the agent pods of a cloud in a namespace, or null if they cannot be listed
+     */
+    @CheckForNull
+    private static PodListing listPods(@NonNull KubernetesCloud cloud, @CheckForNull String namespace) {
+        if (!KubernetesCircuitBreaker.forCloud(cloud.name).allowRequest()) {
+            return null;
+        }
+        try {
+            KubernetesClient client = cloud.connect();
+            String ns = namespace == null ? client.getNamespace() : namespace;
+            Set<String> names = new HashSet<>();
+            String resourceVersion = null;
+            String next = null;
+            do {
+                PodList page = client.pods()
+                        .inNamespace(ns)
+                        .withLabels(cloud.getAgentPodLabels())
+                        .list(new ListOptionsBuilder()
+                                .withLimit(REAP_LIST_PAGE_SIZE)
+                                .withContinue(next)
+                                .build());
+                page.getItems().forEach(pod -> names.add(pod.getMetadata().getName()));
+                ListMeta metadata = page.getMetadata();
+                next = metadata == null ? null : metadata.getContinue();
+                if (resourceVersion == null && metadata != null) {
+                    // all pages are served from the snapshot of the first one
+                    resourceVersion = metadata.getResourceVersion();
+                }
+            } while (next != null && !next.isEmpty());
+            LOGGER.fine(() -> "listed " + names.size() + " agent pods of " + cloud.name + " in " + ns);
+            return new PodListing(names, resourceVersion);
+        } catch (KubernetesAuthException | IOException | RuntimeException x) {
+            LOGGER.log(Level.WARNING, x, () -> "failed to list agent pods of " + cloud.name + " in " + namespace);
+            return null;
+        }
+    }
+
+    /**
+     * Agent pods listed in a namespace.
+     */
+    private static final class PodListing {
+        private final Set<String> names;
+
+        @CheckForNull
+        private final String resourceVersion;
+
+        PodListing(@NonNull Set<String> names, @CheckForNull String resourceVersion) {
+            this.names = names;
+            this.resourceVersion = resourceVersion;
+        }
+
+        /**
+         * @return the agents whose pod was not listed
+         */
+        List<KubernetesSlave> unmatched(@NonNull List<KubernetesSlave> agents) {
+            return agents.stream()
+                    .filter(ks -> !names.contains(ks.getPodName()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void reapAgent(@NonNull Jenkins jenkins, @NonNull KubernetesSlave ks) {
+        String ns = ks.getNamespace();
+        String name = ks.getPodName();
+        if (!KubernetesCircuitBreaker.forCloud(ks.getCloudName()).allowRequest()) {
+            LOGGER.fine(() -> "skipping initial reap check for " + ns + "/" + name
+                    + ": API server of " + ks.getCloudName() + " unreachable");
+            return;
+        }
+        try {
+            KubernetesCloud cloud = ks.getKubernetesCloud();
+            if (cloud.connect().pods().inNamespace(ns).withName(name).get() == null) {
+                LOGGER.info(() ->
+                        ns + "/" + name + " seems to have been deleted, so removing corresponding Jenkins agent");
+                jenkins.removeNode(ks);
+            } else {
+                LOGGER.fine(() -> ns + "/" + name + " still seems to exist, OK");
+            }
+        } catch (KubernetesAuthException | IOException | RuntimeException x) {
+            LOGGER.log(Level.WARNING, x, () -> "failed to do initial reap check for " + ns + "/" + name);
+        }
+    }
+
     /**
      * Create watchers for each configured {@link KubernetesCloud} in Jenkins and remove any existing watchers
      * for clouds that have been removed. If a {@link KubernetesCloud} client configuration property has been
@@ -208,27 +417,140 @@ public class Reaper extends ComputerListener {
 
     /**
      * Register {@link CloudPodWatcher} for the given cloud if one does not exist or if the existing watcher
-     * is no longer valid.
+     * is no longer valid, then watch the namespaces used by the cloud.
      * @param kc kubernetes cloud to watch
      */
-    private void watchCloud(@NonNull KubernetesCloud kc) {
+    private synchronized void watchCloud(@NonNull KubernetesCloud kc) {
         // can't use ConcurrentHashMap#computeIfAbsent because CloudPodWatcher will remove itself from the watchers
         // map on close. If an error occurs when creating the watch it would create a deadlock situation.
-        CloudPodWatcher watcher = new CloudPodWatcher(kc);
-        if (!isCloudPodWatcherActive(watcher)) {
+        CloudPodWatcher watcher = watchers.get(kc.name);
+        boolean created = false;
+        if (watcher == null || watcher.lease == null || !watcher.isValid(kc)) {
+            watcher = new CloudPodWatcher(kc);
             try {
-                KubernetesClient client = kc.connect();
-                watcher.watch = client.pods().inNamespace(client.getNamespace()).watch(watcher);
-                CloudPodWatcher old = watchers.put(kc.name, watcher);
-                // if another watch slipped in then make sure it stopped
-                if (old != null) {
-                    old.stop();
-                }
-                LOGGER.info(() -> "set up watcher on " + kc.getDisplayName());
+                watcher.lease = kc.leaseClient();
             } catch (KubernetesAuthException | IOException | RuntimeException x) {
                 LOGGER.log(Level.WARNING, x, () -> "failed to set up watcher on " + kc.getDisplayName());
+                return;
+            }
+            CloudPodWatcher old = watchers.put(kc.name, watcher);
+            // if another watch slipped in then make sure it stopped
+            if (old != null) {
+                old.stop();
+            }
+            created = true;
+        }
+        // released meanwhile if all the watches of the cloud closed on their own
+        KubernetesClientProvider.Lease lease = watcher.lease;
+        if (lease == null) {
+            watchers.remove(kc.name, watcher);
+            return;
+        }
+        KubernetesClient client = lease.getClient();
+        watcher.watchNamespaces(client, getNamespaces(kc, client));
+        if (created && watcher.isEmpty()) {
+            // no namespace could be watched
+            watchers.remove(kc.name, watcher);
+            watcher.release();
+        }
+    }
+
+    /**
+     * @return the namespaces where the cloud runs agents: its own and those of its live agents. The namespaces of
+     * templates are only watched once agents run there, as the watch only matters for existing agents.
+     */
+    private static Set<String> getNamespaces(@NonNull KubernetesCloud kc, @NonNull KubernetesClient client) {
+        Set<String> namespaces = new TreeSet<>();
+        if (client.getNamespace() != null) {
+            namespaces.add(client.getNamespace());
+        }
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins != null) {
+            for (Node n : jenkins.getNodes()) {
+                if (n instanceof KubernetesSlave) {
+                    KubernetesSlave ks = (KubernetesSlave) n;
+                    if (kc.name.equals(ks.getCloudName()) && StringUtils.isNotBlank(ks.getNamespace())) {
+                        namespaces.add(ks.getNamespace());
+                    }
+                }
+            }
+        }
+        return namespaces;
+    }
+
+    @Override
+    public void onConfigurationChange() {
+        // agents may have been added in, or removed from, a namespace
+        if (activated.get() && namespacesUpdateScheduled.compareAndSet(false, true)) {
+            Timer.get().schedule(
+                    () -> {
+                        namespacesUpdateScheduled.set(false);
+                        watchClouds();
+                    },
+                    NAMESPACES_UPDATE_DELAY_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Watches a cloud again after one of its watches was closed by an error, from the last resource version seen.
+     * @param cloudName the name of the cloud
+     * @param expiredNamespace the namespace whose last resource version seen expired, if any, in which case its
+     * agent pods are listed again to find those deleted in the meantime
+     */
+    private void resume(@NonNull String cloudName, @CheckForNull String expiredNamespace) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null || jenkins.isTerminating()) {
+            return;
+        }
+        Cloud cloud = jenkins.getCloud(cloudName);
+        if (!(cloud instanceof KubernetesCloud)) {
+            return;
+        }
+        KubernetesCloud kc = (KubernetesCloud) cloud;
+        if (expiredNamespace != null) {
+            try (ApiPriority.Scope scope = ApiPriority.BACKGROUND.open()) {
+                relist(jenkins, kc, expiredNamespace);
+            }
+        }
+        watchCloud(kc);
+    }
+
+    /**
+     * Lists the agent pods of a namespace watched for a cloud, removes the agents whose pod is gone, and records
+     * the resource version of the list for the watch to start from.
+     */
+    private void relist(@NonNull Jenkins jenkins, @NonNull KubernetesCloud cloud, @NonNull String namespace) {
+        String defaultNamespace = cloud.getNamespace();
+        try {
+            defaultNamespace = cloud.connect().getNamespace();
+        } catch (KubernetesAuthException | IOException | RuntimeException x) {
+            LOGGER.log(Level.FINE, x, () -> "failed to get namespace of " + cloud.name);
+        }
+        boolean isDefault = namespace.equals(defaultNamespace);
+        List<KubernetesSlave> agents = new ArrayList<>();
+        for (Node n : jenkins.getNodes()) {
+            if (n instanceof KubernetesSlave) {
+                KubernetesSlave ks = (KubernetesSlave) n;
+                if (cloud.name.equals(ks.getCloudName())
+                        && (Objects.equals(ks.getNamespace(), namespace) || (isDefault && ks.getNamespace() == null))
+                        && !ks.getLauncher().isLaunchSupported()) {
+                    agents.add(ks);
+                }
             }
         }
+        PodListing listing = listPods(cloud, namespace);
+        if (listing != null && listing.resourceVersion != null) {
+            resourceVersions.put(versionKey(cloud.name, namespace), listing.resourceVersion);
+        }
+        LOGGER.fine(() -> "relisted agent pods of " + cloud.name + " in " + namespace);
+        for (KubernetesSlave ks : listing == null ? agents : listing.unmatched(agents)) {
+            reapAgent(jenkins, ks);
+        }
+    }
+
+    private static String versionKey(String cloudName, String namespace) {
+        return cloudName + "/" + namespace;
     }
 
     /**
@@ -240,29 +562,23 @@ public class Reaper extends ComputerListener {
         return watchers.get(name) != null;
     }
 
-    public Map<String, ?> getWatchers() {
-        return watchers;
-    }
-
     /**
-     * Check if the given cloud pod watcher exists and is still valid. Watchers may become invalid
-     * of the kubernetes client configuration changes.
-     * @param watcher watcher to check
-     * @return true if the provided watcher already exists and is valid, false otherwise
+     * Check if a namespace of the cloud is watched for Pod events.
+     * @param name cloud name
+     * @param namespace namespace
+     * @return true if the namespace is watched for the given cloud
      */
-    private boolean isCloudPodWatcherActive(@NonNull CloudPodWatcher watcher) {
-        CloudPodWatcher existing = watchers.get(watcher.cloudName);
-        return existing != null && existing.clientValidity == watcher.clientValidity;
+    boolean isWatchingNamespace(String name, String namespace) {
+        CloudPodWatcher watcher = watchers.get(name);
+        return watcher != null && watcher.namespaces.containsKey(namespace);
+    }
+
+    public Map<String, ?> getWatchers() {
+        return watchers;
     }
 
-    private static Optional<KubernetesSlave> resolveNode(@NonNull Jenkins jenkins, String namespace, String name) {
-        return new ArrayList<>(jenkins.getNodes())
-                .stream()
-                        .filter(KubernetesSlave.class::isInstance)
-                        .map(KubernetesSlave.class::cast)
-                        .filter(ks ->
-                                Objects.equals(ks.getNamespace(), namespace) && Objects.equals(ks.getPodName(), name))
-                        .findFirst();
+    private static Optional<KubernetesSlave> resolveNode(String namespace, String name) {
+        return Optional.ofNullable(KubernetesSlaveIndex.get().get(namespace, name));
     }
 
     /**
@@ -274,95 +590,216 @@ public class Reaper extends ComputerListener {
     }
 
     /**
-     * Kubernetes pod event watcher for a Kubernetes Cloud. Notifies {@link Listener}
-     * extensions on Pod events. The default Kubernetes client watch manager will
-     * attempt to reconnect on connection errors. If the watch api returns "410 Gone"
-     * then the Watch will close itself with a WatchException and this watcher will
-     * deregister itself.
+     * Kubernetes pod watches for a Kubernetes Cloud, one per namespace used by the cloud. Only the pods with the
+     * labels of the agents of the cloud are watched. Notifies {@link Listener} extensions on Pod events. The
+     * default Kubernetes client watch manager will attempt to reconnect on connection errors. If the watch api
+     * returns "410 Gone" then the Watch will close itself with a WatchException, and the namespace is watched
+     * again once its agent pods have been listed.
      */
-    private class CloudPodWatcher implements Watcher<Pod> {
+    private class CloudPodWatcher {
         private final String cloudName;
         private final int clientValidity;
+        private final Map<String, String> labels;
+        private final Map<String, NamespacePodWatcher> namespaces = new ConcurrentHashMap<>();
 
         @CheckForNull
-        private Watch watch;
+        private volatile KubernetesClientProvider.Lease lease;
 
         CloudPodWatcher(@NonNull KubernetesCloud cloud) {
             this.cloudName = cloud.name;
             this.clientValidity = KubernetesClientProvider.getValidity(cloud);
+            this.labels = cloud.getAgentPodLabels();
         }
 
-        @Override
-        public void eventReceived(Action action, Pod pod) {
-            // don't send bookmark event to listeners as they don't represent change in pod state
-            if (action == Action.BOOKMARK) {
-                // TODO future enhancement might be to keep track of bookmarks for better reconnect behavior. Would
-                //      likely have to track based on cloud address/namespace in case cloud was renamed or namespace
-                //      is changed.
-                return;
-            }
-
-            // If there was a non-success http response code from watch request
-            // or the api returned a Status object the watch manager notifies with
-            // an error action and null resource.
-            if (action == Action.ERROR && pod == null) {
-                return;
-            }
-
-            Jenkins jenkins = Jenkins.getInstanceOrNull();
-            if (jenkins == null) {
-                return;
-            }
+        /**
+         * @return whether this watcher still matches the configuration of the cloud
+         */
+        boolean isValid(@NonNull KubernetesCloud cloud) {
+            return clientValidity == KubernetesClientProvider.getValidity(cloud)
+                    && labels.equals(cloud.getAgentPodLabels());
+        }
 
-            String ns = pod.getMetadata().getNamespace();
-            String name = pod.getMetadata().getName();
-            Optional<KubernetesSlave> optionalNode = resolveNode(jenkins, ns, name);
-            if (!optionalNode.isPresent()) {
-                return;
-            }
+        boolean isEmpty() {
+            return namespaces.isEmpty();
+        }
 
-            Listeners.notify(Listener.class, true, listener -> {
+        /**
+         * Starts watching the given namespaces, and stops watching the others.
+         */
+        void watchNamespaces(@NonNull KubernetesClient client, @NonNull Set<String> wanted) {
+            for (String namespace : wanted) {
+                if (namespaces.containsKey(namespace)) {
+                    continue;
+                }
+                NamespacePodWatcher watcher = new NamespacePodWatcher(namespace);
+                String resourceVersion = resourceVersions.get(watcher.versionKey());
                 try {
-                    Set<String> terminationReasons = Reaper.this.terminationReasons.get(
-                            optionalNode.get().getNodeName());
-                    listener.onEvent(
-                            action,
-                            optionalNode.get(),
-                            pod,
-                            terminationReasons != null ? terminationReasons : Collections.emptySet());
-                } catch (Exception x) {
-                    LOGGER.log(Level.WARNING, "Listener " + listener + " failed for " + ns + "/" + name, x);
+                    var pods = client.pods().inNamespace(namespace).withLabels(labels);
+                    if (resourceVersion == null) {
+                        watcher.watch = pods.watch(watcher);
+                    } else {
+                        LOGGER.fine(() -> "resuming watch on " + cloudName + " in " + namespace + " from "
+                                + resourceVersion);
+                        watcher.watch = pods.watch(
+                                new ListOptionsBuilder()
+                                        .withResourceVersion(resourceVersion)
+                                        .withAllowWatchBookmarks(true)
+                                        .build(),
+                                watcher);
+                    }
+                    namespaces.put(namespace, watcher);
+                    failedWatches.remove(watcher.versionKey());
+                    LOGGER.info(() -> "set up watcher on " + cloudName + " in " + namespace);
+                } catch (RuntimeException x) {
+                    // e.g. no permission to watch pods in the namespace, retried whenever the agents change
+                    LOGGER.log(
+                            failedWatches.add(watcher.versionKey()) ? Level.WARNING : Level.FINE,
+                            x,
+                            () -> "failed to set up watcher on " + cloudName + " in " + namespace);
                 }
-            });
+            }
+            for (NamespacePodWatcher watcher : new ArrayList<>(namespaces.values())) {
+                if (!wanted.contains(watcher.namespace) && namespaces.remove(watcher.namespace, watcher)) {
+                    LOGGER.fine(() -> "stopping watcher on " + cloudName + " in " + watcher.namespace);
+                    watcher.stop();
+                }
+            }
         }
 
         /**
-         * Close the associated {@link Watch} handle. This should be used shutdown/stop the watch. It will cause the
-         * watch manager to call this classes {@link #onClose()} method.
+         * Close the associated {@link Watch} handles. This should be used shutdown/stop the watches.
          */
         void stop() {
-            if (watch != null) {
-                LOGGER.info("Stopping watch for kubernetes cloud " + cloudName);
-                this.watch.close();
+            LOGGER.info("Stopping watch for kubernetes cloud " + cloudName);
+            for (NamespacePodWatcher watcher : new ArrayList<>(namespaces.values())) {
+                namespaces.remove(watcher.namespace, watcher);
+                watcher.stop();
             }
+            Reaper.this.watchers.remove(cloudName, this);
+            release();
         }
 
-        @Override
-        public void onClose() {
-            LOGGER.fine(() -> cloudName + " watcher closed");
-            // remove self from watchers list
-            Reaper.this.watchers.remove(cloudName, this);
+        /**
+         * Releases the client once the watches no longer use it.
+         */
+        void release() {
+            KubernetesClientProvider.Lease l = lease;
+            if (l != null) {
+                lease = null;
+                l.close();
+            }
         }
 
-        @Override
-        public void onClose(WatcherException e) {
-            // usually triggered because of "410 Gone" responses
-            // https://kubernetes.io/docs/reference/using-api/api-concepts/#410-gone-responses
-            // "Gone" may be returned if the resource version requested is older than the server
-            // has retained.
-            LOGGER.log(Level.WARNING, e, () -> cloudName + " watcher closed with exception");
-            // remove self from watchers list
-            Reaper.this.watchers.remove(cloudName, this);
+        /**
+         * Called when the watch of a namespace closed on its own.
+         */
+        void closed(@NonNull NamespacePodWatcher watcher) {
+            if (namespaces.remove(watcher.namespace, watcher) && namespaces.isEmpty()) {
+                // remove self from watchers list
+                Reaper.this.watchers.remove(cloudName, this);
+                release();
+            }
+        }
+
+        /**
+         * Watch of the agent pods of a cloud in a namespace.
+         */
+        private class NamespacePodWatcher implements Watcher<Pod> {
+            private final String namespace;
+
+            @CheckForNull
+            private Watch watch;
+
+            NamespacePodWatcher(@NonNull String namespace) {
+                this.namespace = namespace;
+            }
+
+            String versionKey() {
+                return Reaper.versionKey(cloudName, namespace);
+            }
+
+            void stop() {
+                if (watch != null) {
+                    watch.close();
+                }
+            }
+
+            @Override
+            public void eventReceived(Action action, Pod pod) {
+                if (pod != null && pod.getMetadata() != null) {
+                    String resourceVersion = pod.getMetadata().getResourceVersion();
+                    if (resourceVersion != null) {
+                        resourceVersions.put(versionKey(), resourceVersion);
+                    }
+                }
+
+                // don't send bookmark event to listeners as they don't represent change in pod state
+                if (action == Action.BOOKMARK) {
+                    return;
+                }
+
+                // If there was a non-success http response code from watch request
+                // or the api returned a Status object the watch manager notifies with
+                // an error action and null resource.
+                if (action == Action.ERROR && pod == null) {
+                    return;
+                }
+
+                Jenkins jenkins = Jenkins.getInstanceOrNull();
+                if (jenkins == null) {
+                    return;
+                }
+
+                String ns = pod.getMetadata().getNamespace();
+                String name = pod.getMetadata().getName();
+                Optional<KubernetesSlave> optionalNode = resolveNode(ns, name);
+                if (!optionalNode.isPresent()) {
+                    return;
+                }
+
+                String uid = pod.getMetadata().getUid();
+                getDispatcher().dispatch(uid != null ? uid : ns + "/" + name, () -> Listeners.notify(
+                        Listener.class, true, listener -> {
+                            try (ApiPriority.Scope scope = ApiPriority.BACKGROUND.open()) {
+                                Set<String> terminationReasons = Reaper.this.terminationReasons.get(
+                                        optionalNode.get().getNodeName());
+                                listener.onEvent(
+                                        action,
+                                        optionalNode.get(),
+                                        pod,
+                                        terminationReasons != null ? terminationReasons : Collections.emptySet());
+                            } catch (Exception x) {
+                                LOGGER.log(
+                                        Level.WARNING, "Listener " + listener + " failed for " + ns + "/" + name, x);
+                            }
+                        }));
+            }
+
+            @Override
+            public void onClose() {
+                LOGGER.fine(() -> cloudName + " watcher in " + namespace + " closed");
+                closed(this);
+            }
+
+            @Override
+            public void onClose(WatcherException e) {
+                // usually triggered because of "410 Gone" responses
+                // https://kubernetes.io/docs/reference/using-api/api-concepts/#410-gone-responses
+                // "Gone" may be returned if the resource version requested is older than the server
+                // has retained.
+                LOGGER.log(Level.WARNING, e, () -> cloudName + " watcher in " + namespace + " closed with exception");
+                closed(this);
+                boolean expired = e.isHttpGone();
+                if (expired) {
+                    resourceVersions.remove(versionKey());
+                }
+                // resume from the last resource version seen, or from a fresh list if it expired
+                Timer.get()
+                        .schedule(
+                                () -> resume(cloudName, expired ? namespace : null),
+                                RESUME_DELAY_MS,
+                                TimeUnit.MILLISECONDS);
+            }
         }
     }
 
@@ -380,6 +817,8 @@ public class Reaper extends ComputerListener {
 
     /**
      * Listener called when a Kubernetes event related to a Kubernetes agent happens.
+     * <p>
+     * Listeners are called outside of the watch threads, in the order the events of a given pod were received.
      */
     public interface Listener extends ExtensionPoint {
 
@@ -0,0 +1,89 @@
+package org.csanchez.jenkins.plugins.kubernetes.watch;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispatches the events of pods being launched to their launch, from the shared pod informer of the namespace.
+ * <p>
+ * Listeners are called from the informer thread and must not block.
+ */
+public class LaunchingPodEventHandler implements ResourceEventHandler<Pod> {
+
+    private static final Logger LOGGER = Logger.getLogger(LaunchingPodEventHandler.class.getName());
+
+    private final ConcurrentMap<String, Listener> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * Listens to the changes of a pod being launched.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param pod the current state of the pod, {@code null} if it has been deleted
+         */
+        void onPod(@CheckForNull Pod pod);
+    }
+
+    /**
+     * @param namespace the namespace of the pod
+     * @param name the name of the pod
+     * @param listener the listener
+     * @return a handle to stop listening
+     */
+    @NonNull
+    public Closeable register(@NonNull String namespace, @NonNull String name, @NonNull Listener listener) {
+        String key = key(namespace, name);
+        listeners.put(key, listener);
+        return () -> listeners.remove(key, listener);
+    }
+
+    /**
+     * @return the number of pods being listened to
+     */
+    public int size() {
+        return listeners.size();
+    }
+
+    @Override
+    public void onAdd(Pod pod) {
+        dispatch(pod, pod);
+    }
+
+    @Override
+    public void onUpdate(Pod oldPod, Pod pod) {
+        dispatch(pod, pod);
+    }
+
+    @Override
+    public void onDelete(Pod pod, boolean deletedFinalStateUnknown) {
+        dispatch(pod, null);
+    }
+
+    private void dispatch(Pod pod, @CheckForNull Pod state) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        Listener listener = listeners.get(
+                key(pod.getMetadata().getNamespace(), pod.getMetadata().getName()));
+        if (listener != null) {
+            try {
+                listener.onPod(state);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, e, () -> "Failed to process event of pod "
+                        + pod.getMetadata().getNamespace() + "/" + pod.getMetadata().getName());
+            }
+        }
+    }
+
+    private static String key(String namespace, String name) {
+        return namespace + "/" + name;
+    }
+}
@@ -1,6 +1,8 @@
 package org.csanchez.jenkins.plugins.kubernetes.watch;
 
-import hudson.model.Node;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.model.TaskListener;
 import hudson.slaves.SlaveComputer;
 import io.fabric8.kubernetes.api.model.ContainerState;
@@ -8,52 +10,96 @@ import io.fabric8.kubernetes.api.model.ContainerStatus;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.PodCondition;
 import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
-import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlaveIndex;
 
 /**
  * Process pod events and print relevant information in build logs.
  * Registered as an informer in {@link org.csanchez.jenkins.plugins.kubernetes.KubernetesLauncher#launch(SlaveComputer, TaskListener)}).
+ * <p>
+ * Only the container and condition states that changed since the last update of the pod are printed, so that
+ * informer resyncs print nothing. A state printed less than {@link #REPEAT_INTERVAL} seconds ago, as with a
+ * flapping probe, is not printed again, and at most {@link #MAX_BYTES} bytes are printed for a given pod.
  */
 public class PodStatusEventHandler implements ResourceEventHandler<Pod> {
 
     private static final Logger LOGGER = Logger.getLogger(PodStatusEventHandler.class.getName());
 
+    /**
+     * Maximum number of bytes printed in the build log for the status of a pod.
+     */
+    @SuppressFBWarnings(
+            value = "MS_SHOULD_BE_FINAL",
+            justification = "Allow tests or groovy console to change the value")
+    public static long MAX_BYTES =
+            SystemProperties.getLong(PodStatusEventHandler.class.getName() + ".maxBytes", 65536L);
+
+    /**
+     * Minimum number of seconds before a state is printed again after it changed back and forth.
+     */
+    @SuppressFBWarnings(
+            value = "MS_SHOULD_BE_FINAL",
+            justification = "Allow tests or groovy console to change the value")
+    public static long REPEAT_INTERVAL =
+            SystemProperties.getLong(PodStatusEventHandler.class.getName() + ".repeatInterval", 300L);
+
+    private final ConcurrentMap<String, PodStatusLog> logs = new ConcurrentHashMap<>();
+
     @Override
     public void onUpdate(Pod unused, Pod pod) {
-        Optional<Node> found = Jenkins.get().getNodes().stream()
-                .filter(n -> n.getNodeName().equals(pod.getMetadata().getName()))
-                .findFirst();
-        if (found.isPresent()) {
-            final StringBuilder sb = new StringBuilder();
-            pod.getStatus().getContainerStatuses().forEach(s -> sb.append(formatContainerStatus(s)));
+        KubernetesSlave found = KubernetesSlaveIndex.get()
+                .get(pod.getMetadata().getNamespace(), pod.getMetadata().getName());
+        String key = key(pod);
+        if (found != null) {
+            Set<String> states = new LinkedHashSet<>();
+            pod.getStatus().getContainerStatuses().forEach(s -> addIfPresent(states, formatContainerStatus(s)));
             pod.getStatus()
                     .getConditions()
-                    .forEach(c -> sb.append(formatPodStatus(c, pod.getStatus().getPhase(), sb)));
-            if (!sb.toString().isEmpty()) {
-                ((KubernetesSlave) found.get())
-                        .getRunListener()
-                        .getLogger()
-                        .println("[PodInfo] " + pod.getMetadata().getNamespace() + "/"
-                                + pod.getMetadata().getName() + sb);
+                    .forEach(c -> addIfPresent(states, formatPodStatus(c, pod.getStatus().getPhase())));
+            String text = logs.computeIfAbsent(key, k -> new PodStatusLog())
+                    .update(
+                            "[PodInfo] " + pod.getMetadata().getNamespace() + "/" + pod.getMetadata().getName(),
+                            states,
+                            System.nanoTime());
+            if (text != null) {
+                found.getRunListener().getLogger().println(text);
             }
         } else {
+            logs.remove(key);
             LOGGER.fine(() -> "Event received for non-existent node: ["
                     + pod.getMetadata().getName() + "]");
         }
     }
 
-    private String formatPodStatus(PodCondition c, String phase, StringBuilder sb) {
+    private static String key(Pod pod) {
+        String uid = pod.getMetadata().getUid();
+        return uid != null ? uid : pod.getMetadata().getNamespace() + "/" + pod.getMetadata().getName();
+    }
+
+    private static void addIfPresent(Set<String> states, String state) {
+        if (!state.isEmpty()) {
+            states.add(state);
+        }
+    }
+
+    private String formatPodStatus(PodCondition c, String phase) {
         if (c.getReason() == null) {
             // not interesting
             return "";
         }
         String message = c.getMessage();
-        String formatted =
-                String.format("%n\tPod [%s][%s] %s", phase, c.getReason(), message != null ? message : "No message");
-        return sb.indexOf(formatted) == -1 ? formatted : "";
+        return String.format("%n\tPod [%s][%s] %s", phase, c.getReason(), message != null ? message : "No message");
     }
 
     private String formatContainerStatus(ContainerStatus s) {
@@ -80,11 +126,67 @@ public class PodStatusEventHandler implements ResourceEventHandler<Pod> {
 
     @Override
     public void onDelete(Pod pod, boolean deletedFinalStateUnknown) {
-        // no-op
+        logs.remove(key(pod));
     }
 
     @Override
     public void onAdd(Pod pod) {
         // no-op
     }
+
+    /**
+     * What was printed about the status of a pod.
+     */
+    static final class PodStatusLog {
+        /**
+         * Bounds the number of states remembered for the repeat interval.
+         */
+        private static final int MAX_REMEMBERED = 100;
+
+        private Set<String> current = new LinkedHashSet<>();
+        private final Map<String, Long> printed = new HashMap<>();
+        private long bytes;
+        private boolean exhausted;
+
+        /**
+         * @param header the first line of the text
+         * @param states the current states of the containers and conditions of the pod
+         * @param now the current time in nanoseconds
+         * @return the text to print, or {@code null} if nothing changed
+         */
+        @CheckForNull
+        synchronized String update(@NonNull String header, @NonNull Collection<String> states, long now) {
+            Set<String> previous = current;
+            current = new LinkedHashSet<>(states);
+            if (exhausted) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (String state : current) {
+                if (previous.contains(state)) {
+                    continue;
+                }
+                Long last = printed.get(state);
+                if (last != null && now - last < TimeUnit.SECONDS.toNanos(REPEAT_INTERVAL)) {
+                    continue;
+                }
+                if (printed.size() >= MAX_REMEMBERED) {
+                    printed.clear();
+                }
+                printed.put(state, now);
+                sb.append(state);
+            }
+            if (sb.length() == 0) {
+                return null;
+            }
+            String text = header + sb;
+            bytes += text.getBytes(StandardCharsets.UTF_8).length;
+            if (bytes > MAX_BYTES) {
+                exhausted = true;
+                return String.format(
+                        "%s%n\tPod status exceeded %d bytes, further changes are not printed", header, MAX_BYTES);
+            }
+            return text;
+        }
+    }
 }
@@ -0,0 +1,127 @@
+package io.jenkins.plugins.kubernetes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+import io.jenkins.plugins.kubernetes.CloudSelectionPolicy.ScoringCloudSelectionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesLaunchStatistics;
+import org.junit.Test;
+
+public class CloudSelectionPolicyTest {
+
+    @Test
+    public void orderByWeightWithoutShuffle() {
+        Map<String, Integer> weights = Map.of("a", 1, "b", 3, "c", 1);
+        assertThat(
+                CloudSelectionPolicy.orderByWeight(List.of("a", "b", "c"), weights::get, false),
+                contains("b", "a", "c"));
+    }
+
+    @Test
+    public void shuffleFollowsWeights() {
+        Map<String, Integer> weights = Map.of("light", 1, "heavy", 9);
+        int heavyFirst = 0;
+        int rounds = 10000;
+        for (int i = 0; i < rounds; i++) {
+            List<String> ordered = CloudSelectionPolicy.orderByWeight(List.of("light", "heavy"), weights::get, true);
+            if (ordered.get(0).equals("heavy")) {
+                heavyFirst++;
+            }
+        }
+        // expected 90%
+        assertThat(heavyFirst, greaterThan(rounds * 85 / 100));
+        assertThat(heavyFirst, lessThan(rounds * 95 / 100));
+    }
+
+    @Test
+    public void scoringPenalizesFailuresAndMissingHeadroom() {
+        AtomicLong clock = new AtomicLong(1);
+        KubernetesLaunchStatistics statistics =
+                new KubernetesLaunchStatistics(clock::get, TimeUnit.MINUTES.toMillis(10));
+        for (int i = 0; i < 10; i++) {
+            statistics.recordLaunched("healthy", 5000);
+            statistics.recordLaunched("failing", 5000);
+            statistics.recordFailure("failing");
+            statistics.recordLaunched("full", 5000);
+        }
+        Map<String, Integer> headroom = Map.of("healthy", 10, "failing", 10, "full", 0);
+        assertThat(
+                ScoringCloudSelectionPolicy.order(
+                        List.of("full", "failing", "healthy"), c -> c, c -> 1, headroom::get, statistics, 1, false),
+                contains("healthy", "failing", "full"));
+
+        // failures are forgotten over time
+        clock.addAndGet(TimeUnit.HOURS.toMillis(2));
+        statistics.recordLaunched("failing", 5000);
+        assertThat(statistics.getSnapshot("failing").getFailureRate(), lessThan(0.01));
+    }
+
+    /**
+     * Simulates one agent requested every 2 seconds and used for 30 seconds once online,
+     * with one cloud launching agents in 5 seconds and another one in 60 seconds.
+     * Both clouds are capped at 20 agents.
+     */
+    @Test
+    public void scoringImprovesTimeToOnline() {
+        double shuffled = simulate(false);
+        double scored = simulate(true);
+        // about 27s with a plain shuffle, 9s with scoring
+        assertThat(scored, lessThan(shuffled * 0.6));
+    }
+
+    private static double simulate(boolean scoring) {
+        AtomicLong clock = new AtomicLong(1);
+        KubernetesLaunchStatistics statistics =
+                new KubernetesLaunchStatistics(clock::get, TimeUnit.MINUTES.toMillis(10));
+        List<SimulatedCloud> clouds =
+                List.of(new SimulatedCloud("fast", 5000, 20), new SimulatedCloud("slow", 60000, 20));
+        long totalTimeToOnline = 0;
+        int launched = 0;
+        for (int i = 0; i < 3000; i++) {
+            long now = clock.addAndGet(2000);
+            clouds.forEach(c -> c.releaseUntil(now));
+            List<SimulatedCloud> ordered = scoring
+                    ? ScoringCloudSelectionPolicy.order(
+                            clouds, c -> c.name, c -> 1, SimulatedCloud::headroom, statistics, 1, true)
+                    : CloudSelectionPolicy.orderByWeight(clouds, c -> 1, true);
+            for (SimulatedCloud cloud : ordered) {
+                if (cloud.headroom() > 0) {
+                    cloud.agents.add(now + cloud.timeToOnline + 30000);
+                    statistics.recordLaunched(cloud.name, cloud.timeToOnline);
+                    totalTimeToOnline += cloud.timeToOnline;
+                    launched++;
+                    break;
+                }
+            }
+        }
+        return (double) totalTimeToOnline / launched;
+    }
+
+    private static final class SimulatedCloud {
+        final String name;
+        final long timeToOnline;
+        final int cap;
+        final List<Long> agents = new ArrayList<>();
+
+        SimulatedCloud(String name, long timeToOnline, int cap) {
+            this.name = name;
+            this.timeToOnline = timeToOnline;
+            this.cap = cap;
+        }
+
+        void releaseUntil(long now) {
+            agents.removeIf(end -> end <= now);
+        }
+
+        int headroom() {
+            return cap - agents.size();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package io.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Label;
+import hudson.model.LoadStatistics;
+import hudson.slaves.Cloud;
+import hudson.slaves.NodeProvisioner;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+public class NoDelayProvisionerStrategyTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final boolean disableSpillOver = NoDelayProvisionerStrategy.DISABLE_SPILL_OVER;
+
+    private CappedCloud first;
+    private CappedCloud second;
+
+    @Before
+    public void setUp() {
+        first = new CappedCloud("first", 2);
+        second = new CappedCloud("second", 10);
+        j.jenkins.clouds.add(first);
+        j.jenkins.clouds.add(second);
+    }
+
+    @After
+    public void restore() {
+        NoDelayProvisionerStrategy.DISABLE_SPILL_OVER = disableSpillOver;
+    }
+
+    @Test
+    public void spillOverToNextCloud() {
+        NodeProvisioner.StrategyState state = state(5);
+        assertEquals(
+                NodeProvisioner.StrategyDecision.PROVISIONING_COMPLETED,
+                new NoDelayProvisionerStrategy().apply(state));
+        assertEquals(2, first.provisioned);
+        assertEquals(3, second.provisioned);
+    }
+
+    @Test
+    public void disableSpillOver() {
+        NoDelayProvisionerStrategy.DISABLE_SPILL_OVER = true;
+        NodeProvisioner.StrategyState state = state(5);
+        assertEquals(
+                NodeProvisioner.StrategyDecision.CONSULT_REMAINING_STRATEGIES,
+                new NoDelayProvisionerStrategy().apply(state));
+        assertEquals(2, first.provisioned);
+        assertEquals(0, second.provisioned);
+    }
+
+    @Test
+    public void skipCloudThatCannotProvision() {
+        first.enabled = false;
+        NodeProvisioner.StrategyState state = state(5);
+        assertEquals(
+                NodeProvisioner.StrategyDecision.PROVISIONING_COMPLETED,
+                new NoDelayProvisionerStrategy().apply(state));
+        assertEquals(0, first.provisioned);
+        assertEquals(5, second.provisioned);
+    }
+
+    private static NodeProvisioner.StrategyState state(int queueLength) {
+        LoadStatistics.LoadStatisticsSnapshot snapshot = mock(LoadStatistics.LoadStatisticsSnapshot.class);
+        when(snapshot.getQueueLength()).thenReturn(queueLength);
+        NodeProvisioner.StrategyState state = mock(NodeProvisioner.StrategyState.class);
+        when(state.getSnapshot()).thenReturn(snapshot);
+        return state;
+    }
+
+    /**
+     * Keeps the clouds in configuration order.
+     */
+    @TestExtension
+    public static class ConfigurationOrder extends CloudSelectionPolicy {
+        @NonNull
+        @Override
+        public List<KubernetesCloud> order(
+                @NonNull List<KubernetesCloud> clouds, @CheckForNull Label label, int workload) {
+            return clouds;
+        }
+    }
+
+    private static class CappedCloud extends KubernetesCloud {
+        private final int capacity;
+        private boolean enabled = true;
+        private int provisioned;
+
+        CappedCloud(String name, int capacity) {
+            super(name);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public boolean canProvision(@NonNull Cloud.CloudState state) {
+            return enabled;
+        }
+
+        @Override
+        public Collection<NodeProvisioner.PlannedNode> provision(@NonNull Cloud.CloudState state, int excessWorkload) {
+            List<NodeProvisioner.PlannedNode> planned = new ArrayList<>();
+            for (int i = 0; i < Math.min(capacity - provisioned, excessWorkload); i++) {
+                planned.add(new NodeProvisioner.PlannedNode(name + "-" + i, new CompletableFuture<>(), 1));
+            }
+            provisioned += planned.size();
+            return planned;
+        }
+    }
+}
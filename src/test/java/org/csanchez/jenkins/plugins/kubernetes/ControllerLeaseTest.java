@@ -0,0 +1,205 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.csanchez.jenkins.plugins.kubernetes.GarbageCollection.PeriodicGarbageCollection.isUnknown;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.fabric8.kubernetes.api.model.MicroTime;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.coordination.v1.Lease;
+import io.fabric8.kubernetes.api.model.coordination.v1.LeaseBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import io.fabric8.mockwebserver.http.RecordedRequest;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class ControllerLeaseTest {
+
+    private static final String LEASES = "/apis/coordination.k8s.io/v1/namespaces/ns/leases";
+    private static final String LEASE = LEASES + "/jenkins-agents-http---localhost-8080-jenkinsx";
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private KubernetesMockServer server;
+    private KubernetesClient client;
+
+    @Before
+    public void setUp() {
+        server = new KubernetesMockServer();
+        server.init(InetAddress.getLoopbackAddress(), 0);
+        client = server.createClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.destroy();
+        client.close();
+    }
+
+    @Test
+    public void name() {
+        assertEquals(
+                "jenkins-agents-http---localhost-8080-jenkinsx",
+                ControllerLease.name("http___localhost_8080_jenkinsx"));
+    }
+
+    @Test
+    public void createMissingLease() {
+        server.expect().post().withPath(LEASES).andReturn(201, lease("me", Instant.now())).once();
+        assertNotNull(renew("me", Instant.now()));
+        assertEquals("POST", server.getLastRequest().getMethod());
+    }
+
+    @Test
+    public void renewOwnLease() {
+        Instant now = Instant.now();
+        server.expect().get().withPath(LEASE).andReturn(200, lease("me", now)).always();
+        server.expect().put().withPath(LEASE).andReturn(200, lease("me", now)).once();
+        assertNotNull(renew("me", now.plusSeconds(60)));
+        assertEquals("PUT", server.getLastRequest().getMethod());
+    }
+
+    @Test
+    public void doNotTakeOverLeaseOfLiveController() throws Exception {
+        Instant now = Instant.now();
+        server.expect().get().withPath(LEASE).andReturn(200, lease("other", now)).always();
+        server.expect().put().withPath(LEASE).andReturn(200, lease("other", now)).once();
+        assertNull(renew("me", now.plusSeconds(60)));
+        // still records that this controller is alive
+        RecordedRequest update = server.getLastRequest();
+        assertEquals("PUT", update.getMethod());
+        Lease recorded = Serialization.unmarshal(update.getBody().readUtf8(), Lease.class);
+        assertEquals("other", recorded.getSpec().getHolderIdentity());
+        assertTrue(ControllerLease.isLive(recorded, "me", now.plusSeconds(60)));
+    }
+
+    @Test
+    public void takeOverExpiredLease() {
+        Instant now = Instant.now();
+        server.expect().get().withPath(LEASE).andReturn(200, lease("other", now)).always();
+        server.expect().put().withPath(LEASE).andReturn(200, lease("me", now)).once();
+        assertNotNull(renew("me", now.plusSeconds(600)));
+        assertEquals("PUT", server.getLastRequest().getMethod());
+    }
+
+    @Test
+    public void conflictingUpdate() {
+        Instant now = Instant.now();
+        server.expect().get().withPath(LEASE).andReturn(200, lease("other", now)).always();
+        server.expect().put().withPath(LEASE).andReturn(409, null).once();
+        assertNull(renew("me", now.plusSeconds(600)));
+    }
+
+    @Test
+    public void unknownPods() throws Exception {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        r.jenkins.clouds.add(cloud);
+        KubernetesSlave agent = new KubernetesSlave.Builder()
+                .podTemplate(new PodTemplate("foo", Collections.emptyList(), Collections.emptyList()))
+                .cloud(cloud)
+                .build();
+        r.jenkins.addNode(agent);
+        agent.setNamespace("ns");
+        GarbageCollection gc = new GarbageCollection();
+        gc.setUseLease(true);
+        gc.setTimeout(300);
+        Instant now = Instant.now();
+
+        Instant old = now.minusSeconds(600);
+        String me = r.jenkins.getLegacyInstanceId();
+        Lease lease = lease(me, now);
+        lease.getMetadata().getAnnotations().put(ControllerLease.ANNOTATION_RENEWED_PREFIX + "live", now.toString());
+        lease.getMetadata().getAnnotations().put(ControllerLease.ANNOTATION_RENEWED_PREFIX + "dead", old.toString());
+        assertFalse(isUnknown(pod(agent.getPodName(), old, me), gc, lease, now));
+        assertTrue(isUnknown(pod("orphan", old, me), gc, lease, now));
+        // may be launching
+        assertFalse(isUnknown(pod("orphan", now, me), gc, lease, now));
+        // agent of another live controller with the same Jenkins URL
+        assertFalse(isUnknown(pod("other", old, "live"), gc, lease, now));
+        // left by a controller which died or failed over
+        assertTrue(isUnknown(pod("other", old, "dead"), gc, lease, now));
+        assertTrue(isUnknown(pod("other", old, "gone"), gc, lease, now));
+        // created without lease mode, and not refreshed
+        assertFalse(isUnknown(pod("legacy", old, null), gc, lease, now));
+    }
+
+    @Test
+    public void liveControllers() {
+        Instant now = Instant.now();
+        Lease lease = lease("holder", now.minusSeconds(60));
+        lease.getMetadata().getAnnotations().put(ControllerLease.ANNOTATION_RENEWED_PREFIX + "other", now.toString());
+        assertTrue(ControllerLease.isLive(lease, "holder", now));
+        assertTrue(ControllerLease.isLive(lease, "other", now));
+        assertFalse(ControllerLease.isLive(lease, "unknown", now));
+        // neither renewed the lease for its duration
+        assertFalse(ControllerLease.isLive(lease, "holder", now.plusSeconds(600)));
+        assertFalse(ControllerLease.isLive(lease, "other", now.plusSeconds(600)));
+    }
+
+    @Test
+    public void deletePodsOfExpiredHolder() throws Exception {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        r.jenkins.clouds.add(cloud);
+        GarbageCollection gc = new GarbageCollection();
+        gc.setUseLease(true);
+        gc.setTimeout(300);
+        Instant now = Instant.now();
+        Instant old = now.minusSeconds(600);
+        // the previous holder failed over and stopped renewing the lease
+        server.expect().get().withPath(LEASE).andReturn(200, lease("previous", old)).always();
+        server.expect().put().withPath(LEASE).andReturn(200, lease(r.jenkins.getLegacyInstanceId(), now)).once();
+        Lease lease = renew(r.jenkins.getLegacyInstanceId(), now);
+        assertNotNull(lease);
+        assertTrue(isUnknown(pod("orphan", old, "previous"), gc, lease, now));
+    }
+
+    private Lease renew(String identity, Instant now) {
+        return ControllerLease.renew(
+                client, "ns", "http___localhost_8080_jenkinsx", identity, Duration.ofSeconds(300), now);
+    }
+
+    private static Lease lease(String holder, Instant renewed) {
+        return new LeaseBuilder()
+                .withNewMetadata()
+                .withName("jenkins-agents-http---localhost-8080-jenkinsx")
+                .withNamespace("ns")
+                .withResourceVersion("1")
+                .addToAnnotations(ControllerLease.ANNOTATION_RENEWED_PREFIX + holder, renewed.toString())
+                .endMetadata()
+                .withNewSpec()
+                .withHolderIdentity(holder)
+                .withLeaseDurationSeconds(300)
+                .withRenewTime(new MicroTime(renewed.toString()))
+                .endSpec()
+                .build();
+    }
+
+    private static Pod pod(String name, Instant created, String controllerId) {
+        PodBuilder builder = new PodBuilder()
+                .withNewMetadata()
+                .withName(name)
+                .withNamespace("ns")
+                .withCreationTimestamp(created.toString())
+                .endMetadata();
+        if (controllerId != null) {
+            builder.editMetadata()
+                    .addToLabels(PodTemplateBuilder.LABEL_KUBERNETES_CONTROLLER_ID, controllerId)
+                    .endMetadata();
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,60 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+
+import hudson.ExtensionList;
+import hudson.model.Computer;
+import hudson.slaves.RetentionStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class DefaultInProvisioningTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void trackedFromNodeAndComputerEvents() throws Exception {
+        DefaultInProvisioning inProvisioning = ExtensionList.lookupSingleton(DefaultInProvisioning.class);
+        // initialize before agents get added, so that further changes come from events only
+        assertThat(inProvisioning.getInProvisioning(j.jenkins.getLabel("foo")), empty());
+
+        TestLauncher launcherA = new TestLauncher();
+        KubernetesSlave a = agent("a", "foo", launcherA);
+        KubernetesSlave b = agent("b", "foo bar", new TestLauncher());
+        j.jenkins.addNode(a);
+        j.jenkins.addNode(b);
+
+        assertThat(InProvisioning.getAllInProvisioning(j.jenkins.getLabel("foo")), containsInAnyOrder("a", "b"));
+        assertThat(InProvisioning.getAllInProvisioning(j.jenkins.getLabel("bar")), containsInAnyOrder("b"));
+        assertThat(InProvisioning.getAllInProvisioning(j.jenkins.getLabel("foo&&!bar")), containsInAnyOrder("a"));
+        assertEquals(2, inProvisioning.size());
+
+        // launch completes
+        launcherA.launched = true;
+        Computer computer = a.toComputer();
+        computer.setAcceptingTasks(true);
+        assertThat(InProvisioning.getAllInProvisioning(j.jenkins.getLabel("foo")), containsInAnyOrder("b"));
+
+        j.jenkins.removeNode(b);
+        assertThat(InProvisioning.getAllInProvisioning(j.jenkins.getLabel("foo")), empty());
+        assertEquals(0, inProvisioning.size());
+    }
+
+    private static KubernetesSlave agent(String name, String label, KubernetesLauncher launcher) throws Exception {
+        return new KubernetesSlave(name, new PodTemplate(), name, "kubernetes", label, launcher, RetentionStrategy.NOOP);
+    }
+
+    public static class TestLauncher extends KubernetesLauncher {
+        volatile boolean launched;
+
+        @Override
+        public boolean isLaunchSupported() {
+            return !launched;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import org.junit.Test;
+
+public class KubernetesApiMetricsTest {
+
+    @Test
+    public void coreResources() {
+        assertRequest("list", "pods", "GET", "https://k8s/api/v1/namespaces/jenkins/pods?labelSelector=a%3Db");
+        assertRequest("get", "pods", "GET", "https://k8s/api/v1/namespaces/jenkins/pods/agent-1");
+        assertRequest("get", "pods.log", "GET", "https://k8s/api/v1/namespaces/jenkins/pods/agent-1/log");
+        assertRequest("create", "pods", "POST", "https://k8s/api/v1/namespaces/jenkins/pods");
+        assertRequest("delete", "pods", "DELETE", "https://k8s/api/v1/namespaces/jenkins/pods/agent-1");
+        assertRequest("list", "nodes", "GET", "https://k8s/api/v1/nodes");
+        assertRequest("get", "namespaces", "GET", "https://k8s/api/v1/namespaces/jenkins");
+        assertRequest("get", "discovery", "GET", "https://k8s/api/v1");
+    }
+
+    @Test
+    public void groupResources() {
+        assertRequest(
+                "patch", "leases", "PATCH", "https://k8s/apis/coordination.k8s.io/v1/namespaces/jenkins/leases/x");
+        assertRequest("deletecollection", "events", "DELETE", "https://k8s/apis/events.k8s.io/v1/events");
+        assertRequest("get", "other", "GET", "https://k8s/version");
+    }
+
+    @Test
+    public void streaming() {
+        KubernetesApiMetrics.Request watch = KubernetesApiMetrics.Request.of(
+                "GET", URI.create("https://k8s/api/v1/namespaces/jenkins/pods?resourceVersion=1&watch=true"));
+        assertEquals("watch", watch.verb);
+        assertTrue(watch.isWatch());
+        assertTrue(watch.isStreaming());
+        KubernetesApiMetrics.Request exec = KubernetesApiMetrics.Request.of(
+                "GET", URI.create("https://k8s/api/v1/namespaces/jenkins/pods/agent-1/exec?command=sh"));
+        assertEquals("pods.exec", exec.resource);
+        assertFalse(exec.isWatch());
+        assertTrue(exec.isStreaming());
+    }
+
+    private static void assertRequest(String verb, String resource, String method, String uri) {
+        KubernetesApiMetrics.Request request = KubernetesApiMetrics.Request.of(method, URI.create(uri));
+        assertEquals(verb, request.verb);
+        assertEquals(resource, request.resource);
+    }
+}
@@ -0,0 +1,116 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class KubernetesApiSchedulerTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void urgentCallsGoFirst() throws Exception {
+        KubernetesApiScheduler scheduler = new KubernetesApiScheduler("test");
+        scheduler.setRate(2);
+        // use the burst
+        scheduler.acquire(ApiPriority.NORMAL);
+        scheduler.acquire(ApiPriority.NORMAL);
+
+        List<ApiPriority> admitted = new CopyOnWriteArrayList<>();
+        Thread ui = start(scheduler, ApiPriority.UI, admitted);
+        awaitWaiting(scheduler, 1);
+        Thread background = start(scheduler, ApiPriority.BACKGROUND, admitted);
+        awaitWaiting(scheduler, 2);
+        Thread launch = start(scheduler, ApiPriority.LAUNCH, admitted);
+        awaitWaiting(scheduler, 3);
+
+        ui.join(10000);
+        background.join(10000);
+        launch.join(10000);
+        assertThat(admitted, contains(ApiPriority.LAUNCH, ApiPriority.BACKGROUND, ApiPriority.UI));
+    }
+
+    @Test
+    public void throttledCallsWait() throws Exception {
+        KubernetesApiScheduler scheduler = new KubernetesApiScheduler("test");
+        scheduler.throttled(1);
+        long start = System.nanoTime();
+        scheduler.acquire(ApiPriority.LAUNCH);
+        assertThat(System.nanoTime() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(900)));
+    }
+
+    @Test
+    public void unscopedCallsDoNotWait() {
+        KubernetesApiScheduler scheduler = new KubernetesApiScheduler("test");
+        scheduler.throttled(60);
+        long start = System.nanoTime();
+        // e.g. a watch reconnecting from a thread of the client
+        scheduler.interceptor().before(null, null, null);
+        assertThat(System.nanoTime() - start, lessThan(TimeUnit.SECONDS.toNanos(10)));
+    }
+
+    @Test
+    public void unscopedCallsTakeAvailableTokens() throws Exception {
+        KubernetesApiScheduler scheduler = new KubernetesApiScheduler("test");
+        scheduler.setRate(1);
+        scheduler.interceptor().before(null, null, null);
+        assertFalse(scheduler.tryAcquire());
+        scheduler.interceptor().before(null, null, null);
+        long start = System.nanoTime();
+        scheduler.acquire(ApiPriority.LAUNCH);
+        assertThat(System.nanoTime() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(900)));
+    }
+
+    @Test
+    public void interruptedCallIsNotMade() {
+        KubernetesApiScheduler scheduler = new KubernetesApiScheduler("test");
+        scheduler.throttled(60);
+        try (ApiPriority.Scope scope = ApiPriority.LAUNCH.open()) {
+            Thread.currentThread().interrupt();
+            assertThrows(KubernetesClientException.class, () -> scheduler.interceptor()
+                    .before(null, null, null));
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test
+    public void retryAfter() {
+        assertEquals(5, KubernetesApiScheduler.retryAfter("5"));
+        assertEquals(1, KubernetesApiScheduler.retryAfter("0"));
+        assertEquals(1, KubernetesApiScheduler.retryAfter(null));
+        assertEquals(1, KubernetesApiScheduler.retryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+    }
+
+    private static Thread start(KubernetesApiScheduler scheduler, ApiPriority priority, List<ApiPriority> admitted) {
+        Thread t = new Thread(() -> {
+            try {
+                scheduler.acquire(priority);
+                admitted.add(priority);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        t.start();
+        return t;
+    }
+
+    private static void awaitWaiting(KubernetesApiScheduler scheduler, int waiting) throws InterruptedException {
+        while (scheduler.getWaiting() < waiting) {
+            Thread.sleep(10);
+        }
+    }
+}
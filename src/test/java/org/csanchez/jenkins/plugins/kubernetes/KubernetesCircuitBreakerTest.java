@@ -0,0 +1,98 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import hudson.model.Label;
+import hudson.slaves.Cloud;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class KubernetesCircuitBreakerTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        KubernetesCircuitBreaker breaker = new KubernetesCircuitBreaker("test", TimeUnit.HOURS.toNanos(1));
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        breaker.onSuccess();
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(KubernetesCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        breaker.onFailure();
+        assertEquals(KubernetesCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void singleProbe() throws Exception {
+        KubernetesCircuitBreaker breaker = new KubernetesCircuitBreaker("test", TimeUnit.MILLISECONDS.toNanos(50));
+        for (int i = 0; i < 5; i++) {
+            breaker.onFailure();
+        }
+        assertFalse(breaker.allowRequest());
+        Thread.sleep(100);
+        assertTrue(breaker.allowRequest());
+        assertEquals(KubernetesCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        // failed probe opens the breaker for another period
+        breaker.onFailure();
+        assertEquals(KubernetesCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        Thread.sleep(100);
+        assertTrue(breaker.allowRequest());
+        breaker.onSuccess();
+        assertEquals(KubernetesCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void isOpenDoesNotTakeTheProbe() throws Exception {
+        KubernetesCircuitBreaker breaker = new KubernetesCircuitBreaker("test", TimeUnit.MILLISECONDS.toNanos(50));
+        assertFalse(breaker.isOpen());
+        for (int i = 0; i < 5; i++) {
+            breaker.onFailure();
+        }
+        assertTrue(breaker.isOpen());
+        Thread.sleep(100);
+        // e.g. canProvision called by the queue listeners
+        assertFalse(breaker.isOpen());
+        assertFalse(breaker.isOpen());
+        assertEquals(KubernetesCircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        // the probe is running
+        assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    public void canProvisionDoesNotTakeTheProbe() {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        PodTemplate template = new PodTemplate();
+        template.setLabel("foo");
+        cloud.addTemplate(template);
+        KubernetesCircuitBreaker breaker = KubernetesCircuitBreaker.forCloud(cloud.name);
+        try {
+            for (int i = 0; i < 5; i++) {
+                breaker.onFailure();
+            }
+            Cloud.CloudState state = new Cloud.CloudState(Label.get("foo"), 0);
+            assertFalse(cloud.canProvision(state));
+            assertEquals(KubernetesCircuitBreaker.State.OPEN, breaker.getState());
+            // no agent is planned either
+            assertTrue(cloud.provision(state, 1).isEmpty());
+            breaker.onSuccess();
+            assertTrue(cloud.canProvision(state));
+        } finally {
+            KubernetesCircuitBreaker.reset(cloud.name);
+        }
+    }
+}
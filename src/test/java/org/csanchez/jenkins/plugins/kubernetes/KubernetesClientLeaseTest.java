@@ -0,0 +1,67 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import io.fabric8.kubernetes.client.KubernetesClient;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class KubernetesClientLeaseTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final long retirementGrace = KubernetesClientProvider.RETIREMENT_GRACE;
+
+    @After
+    public void tearDown() {
+        KubernetesClientProvider.RETIREMENT_GRACE = retirementGrace;
+        KubernetesClientProvider.invalidateAll();
+    }
+
+    @Test
+    public void retiredClientIsClosedOnceLeasesAreReleased() throws Exception {
+        KubernetesClientProvider.RETIREMENT_GRACE = 0;
+        KubernetesCloud cloud = new KubernetesCloud("leased");
+        cloud.setServerUrl("https://localhost:6443");
+        int live = KubernetesClientProvider.getLiveClients();
+
+        KubernetesClient client = KubernetesClientProvider.createClient(cloud);
+        KubernetesClientProvider.Lease lease = KubernetesClientProvider.lease(cloud);
+        assertSame(client, lease.getClient());
+        assertEquals(1, KubernetesClientProvider.getLeases());
+
+        // the cloud was reconfigured
+        KubernetesClientProvider.invalidate(cloud.getDisplayName());
+        assertNotSame(client, KubernetesClientProvider.createClient(cloud));
+        // the retired client is kept open while leased
+        await().during(1, TimeUnit.SECONDS)
+                .atMost(5, TimeUnit.SECONDS)
+                .until(() -> KubernetesClientProvider.getLiveClients() == live + 2);
+
+        lease.close();
+        // released once only
+        lease.close();
+        assertEquals(0, KubernetesClientProvider.getLeases());
+        await().atMost(10, TimeUnit.SECONDS).until(() -> KubernetesClientProvider.getLiveClients() == live + 1);
+    }
+
+    @Test
+    public void retiredClientWithoutLeaseIsClosed() throws Exception {
+        KubernetesClientProvider.RETIREMENT_GRACE = 0;
+        KubernetesCloud cloud = new KubernetesCloud("unleased");
+        cloud.setServerUrl("https://localhost:6443");
+        int live = KubernetesClientProvider.getLiveClients();
+
+        KubernetesClientProvider.createClient(cloud);
+        assertEquals(live + 1, KubernetesClientProvider.getLiveClients());
+        KubernetesClientProvider.invalidate(cloud.getDisplayName());
+        await().atMost(10, TimeUnit.SECONDS).until(() -> KubernetesClientProvider.getLiveClients() == live);
+    }
+}
@@ -3,12 +3,14 @@ package org.csanchez.jenkins.plugins.kubernetes;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Label;
 import hudson.model.User;
 import hudson.security.ACL;
 import hudson.security.ACLContext;
@@ -293,6 +295,102 @@ public class KubernetesCloudTest {
         assertEquals(KubernetesCloud.DEFAULT_RETENTION_TIMEOUT_MINUTES, cloud.getRetentionTimeout());
     }
 
+    @Test
+    public void templateLookups() {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        j.jenkins.clouds.add(cloud);
+        PodTemplate foo = new PodTemplate();
+        foo.setLabel("foo");
+        cloud.addTemplate(foo);
+        PodTemplate fooBar = new PodTemplate();
+        fooBar.setLabel("foo bar");
+        cloud.addTemplate(fooBar);
+        assertEquals(foo, cloud.getTemplate(Label.get("foo")));
+        assertEquals(fooBar, cloud.getTemplate(Label.parseExpression("foo && bar")));
+        assertEquals(List.of(foo, fooBar), cloud.getTemplatesFor(Label.get("foo")));
+        assertEquals(fooBar, cloud.getTemplateById(fooBar.getId()));
+        assertNull(cloud.getTemplate(Label.get("baz")));
+
+        cloud.removeTemplate(foo);
+        assertEquals(fooBar, cloud.getTemplate(Label.get("foo")));
+        assertNull(cloud.getTemplateById(foo.getId()));
+
+        PodTemplate baz = new PodTemplate();
+        baz.setLabel("baz");
+        cloud.addDynamicTemplate(baz);
+        assertEquals(baz, cloud.getTemplate(Label.get("baz")));
+        assertEquals(baz, cloud.getTemplateById(baz.getId()));
+        cloud.removeDynamicTemplate(baz);
+        assertNull(cloud.getTemplate(Label.get("baz")));
+
+        cloud.setTemplates(List.of(foo));
+        assertEquals(List.of(foo), cloud.getTemplatesFor(Label.get("foo")));
+        assertNull(cloud.getTemplateById(fooBar.getId()));
+    }
+
+    @Test
+    public void templateLookupsFollowTemplateChanges() {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        j.jenkins.clouds.add(cloud);
+        PodTemplate foo = new PodTemplate();
+        foo.setLabel("foo");
+        cloud.addTemplate(foo);
+        assertEquals(List.of(foo), cloud.getTemplatesFor(Label.get("foo")));
+
+        foo.setLabel("bar");
+        assertEquals(List.of(), cloud.getTemplatesFor(Label.get("foo")));
+        assertEquals(List.of(foo), cloud.getTemplatesFor(Label.get("bar")));
+
+        PodTemplate baz = new PodTemplate();
+        baz.setLabel("bar");
+        cloud.getTemplates().add(baz);
+        assertEquals(List.of(foo, baz), cloud.getTemplatesFor(Label.get("bar")));
+
+        cloud.getTemplates().clear();
+        assertEquals(List.of(), cloud.getTemplatesFor(Label.get("bar")));
+        assertNull(cloud.getTemplateById(foo.getId()));
+    }
+
+    @Test
+    public void unwrappedTemplateIsCached() {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        j.jenkins.clouds.add(cloud);
+        PodTemplate parent = new PodTemplate();
+        parent.setName("parent");
+        parent.setContainers(List.of(new ContainerTemplate("jnlp", "jnlp:1")));
+        cloud.addTemplate(parent);
+        PodTemplate child = new PodTemplate();
+        child.setName("child");
+        child.setLabel("child");
+        child.setInheritFrom("parent");
+        cloud.addTemplate(child);
+
+        PodTemplate unwrapped = cloud.getUnwrappedTemplate(child);
+        assertTrue(unwrapped.isUnwrapped());
+        assertEquals("jnlp:1", unwrapped.getContainers().get(0).getImage());
+        // each caller gets its own template, changes do not leak to the next ones
+        assertNotSame(unwrapped, cloud.getUnwrappedTemplate(child));
+        unwrapped.setNamespace("modified");
+        unwrapped.getContainers().clear();
+        assertNull(cloud.getUnwrappedTemplate(child).getNamespace());
+        assertEquals(1, cloud.getUnwrappedTemplate(child).getContainers().size());
+
+        PodTemplate newParent = new PodTemplate();
+        newParent.setName("parent");
+        newParent.setContainers(List.of(new ContainerTemplate("jnlp", "jnlp:2")));
+        cloud.replaceTemplate(parent, newParent);
+        unwrapped = cloud.getUnwrappedTemplate(child);
+        assertEquals("jnlp:2", unwrapped.getContainers().get(0).getImage());
+
+        PodTemplate defaults = new PodTemplate();
+        defaults.setName("defaults");
+        defaults.setNamespace("defaults-namespace");
+        cloud.addTemplate(defaults);
+        assertNull(cloud.getUnwrappedTemplate(child).getNamespace());
+        cloud.setDefaultsProviderTemplate("defaults");
+        assertEquals("defaults-namespace", cloud.getUnwrappedTemplate(child).getNamespace());
+    }
+
     @Test
     @LocalData
     public void emptyKubernetesCloudReadResolve() {
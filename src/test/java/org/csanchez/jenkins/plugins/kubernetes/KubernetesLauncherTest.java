@@ -0,0 +1,175 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodStatusBuilder;
+import io.fabric8.kubernetes.api.model.Status;
+import io.fabric8.kubernetes.api.model.StatusBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.server.mock.KubernetesCrudDispatcher;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import io.fabric8.mockwebserver.Context;
+import io.fabric8.mockwebserver.http.MockWebServer;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class KubernetesLauncherTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private KubernetesMockServer server;
+    private KubernetesClient client;
+    private KubernetesCloud cloud;
+
+    @Before
+    public void setUp() {
+        server = new KubernetesMockServer(
+                new Context(), new MockWebServer(), new HashMap<>(), new KubernetesCrudDispatcher(), false);
+        server.init(InetAddress.getLoopbackAddress(), 0);
+        client = server.createClient();
+        cloud = new KubernetesCloud("kubernetes");
+        cloud.setServerUrl(client.getMasterUrl().toString());
+        cloud.setNamespace("ns");
+        cloud.setSkipTlsVerify(true);
+        r.jenkins.clouds.add(cloud);
+    }
+
+    @After
+    public void tearDown() {
+        KubernetesClientProvider.invalidateAll();
+        server.destroy();
+        client.close();
+    }
+
+    @Test
+    public void failedPodTerminatesAgent() throws Exception {
+        KubernetesSlave agent = addAgent();
+        Future<?> connect = agent.toComputer().connect(false);
+        Pod pod = awaitPod(agent);
+        // the launch is only over once the pod failed
+        assertFalse(connect.isDone());
+        assertEquals(1, KubernetesLauncher.getLaunchesInProgress());
+
+        pod.setStatus(new PodStatusBuilder().withPhase("Failed").build());
+        client.pods().inNamespace("ns").resource(pod).updateStatus();
+
+        assertThrows(ExecutionException.class, () -> connect.get(30, TimeUnit.SECONDS));
+        await("node removed").atMost(30, TimeUnit.SECONDS).until(() -> r.jenkins.getNode(agent.getNodeName()) == null);
+        assertNotNull(((KubernetesLauncher) agent.getLauncher()).getProblem());
+        assertEquals(0, KubernetesLauncher.getLaunchesInProgress());
+    }
+
+    @Test
+    public void deletedPodTerminatesAgent() throws Exception {
+        KubernetesSlave agent = addAgent();
+        Future<?> connect = agent.toComputer().connect(false);
+        Pod pod = awaitPod(agent);
+
+        client.pods().inNamespace("ns").resource(pod).delete();
+
+        assertThrows(ExecutionException.class, () -> connect.get(30, TimeUnit.SECONDS));
+        await("node removed").atMost(30, TimeUnit.SECONDS).until(() -> r.jenkins.getNode(agent.getNodeName()) == null);
+        assertNotNull(((KubernetesLauncher) agent.getLauncher()).getProblem());
+    }
+
+    @Test
+    public void useExistingPod() {
+        client.pods().inNamespace("ns").resource(pod("foo")).create();
+        KubernetesLauncher.PodCreation creation = KubernetesLauncher.createOrGet(client, "ns", pod("foo"));
+        assertTrue(creation.existed);
+        assertEquals("foo", creation.pod.getMetadata().getName());
+
+        creation = KubernetesLauncher.createOrGet(client, "ns", pod("bar"));
+        assertFalse(creation.existed);
+    }
+
+    @Test
+    public void createAgainPodDeletedAfterConflict() {
+        KubernetesMockServer conflicting = new KubernetesMockServer();
+        conflicting.init(InetAddress.getLoopbackAddress(), 0);
+        try (KubernetesClient conflictingClient = conflicting.createClient()) {
+            conflicting
+                    .expect()
+                    .post()
+                    .withPath("/api/v1/namespaces/ns/pods")
+                    .andReturn(409, alreadyExists())
+                    .once();
+            conflicting
+                    .expect()
+                    .post()
+                    .withPath("/api/v1/namespaces/ns/pods")
+                    .andReturn(201, pod("foo"))
+                    .once();
+            KubernetesLauncher.PodCreation creation =
+                    KubernetesLauncher.createOrGet(conflictingClient, "ns", pod("foo"));
+            assertFalse(creation.existed);
+            assertEquals("foo", creation.pod.getMetadata().getName());
+
+            conflicting
+                    .expect()
+                    .post()
+                    .withPath("/api/v1/namespaces/ns/pods")
+                    .andReturn(409, alreadyExists())
+                    .always();
+            KubernetesClientException e = assertThrows(
+                    KubernetesClientException.class,
+                    () -> KubernetesLauncher.createOrGet(conflictingClient, "ns", pod("foo")));
+            assertEquals(409, e.getCode());
+        } finally {
+            conflicting.destroy();
+        }
+    }
+
+    private static Pod pod(String name) {
+        return new PodBuilder()
+                .withNewMetadata()
+                .withName(name)
+                .withNamespace("ns")
+                .endMetadata()
+                .build();
+    }
+
+    private static Status alreadyExists() {
+        return new StatusBuilder()
+                .withCode(409)
+                .withReason("AlreadyExists")
+                .withMessage("pods \"foo\" already exists")
+                .build();
+    }
+
+    private KubernetesSlave addAgent() throws Exception {
+        KubernetesSlave agent = new KubernetesSlave.Builder()
+                .podTemplate(new PodTemplate("foo", Collections.emptyList(), Collections.emptyList()))
+                .cloud(cloud)
+                .build();
+        r.jenkins.addNode(agent);
+        return agent;
+    }
+
+    private Pod awaitPod(KubernetesSlave agent) {
+        await("pod created").atMost(30, TimeUnit.SECONDS).until(() -> client.pods()
+                        .inNamespace("ns")
+                        .withName(agent.getPodName())
+                        .get()
+                != null);
+        return client.pods().inNamespace("ns").withName(agent.getPodName()).get();
+    }
+}
@@ -0,0 +1,228 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.server.mock.KubernetesCrudDispatcher;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import io.fabric8.mockwebserver.Context;
+import io.fabric8.mockwebserver.http.MockWebServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import jenkins.metrics.api.Metrics;
+import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class KubernetesPodInformersTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private final long idleTimeout = KubernetesPodInformers.IDLE_TIMEOUT;
+
+    private KubernetesMockServer server;
+    private KubernetesClient client;
+    private KubernetesCloud cloud;
+    private KubernetesPodInformers informers;
+
+    @Before
+    public void setUp() {
+        server = new KubernetesMockServer(
+                new Context(), new MockWebServer(), new HashMap<>(), new KubernetesCrudDispatcher(), false);
+        server.init(InetAddress.getLoopbackAddress(), 0);
+        client = server.createClient();
+        cloud = new KubernetesCloud("kubernetes");
+        cloud.setServerUrl(client.getMasterUrl().toString());
+        cloud.setNamespace("ns");
+        cloud.setSkipTlsVerify(true);
+        r.jenkins.clouds.add(cloud);
+        informers = KubernetesPodInformers.forCloud(cloud.name);
+    }
+
+    @After
+    public void tearDown() {
+        KubernetesPodInformers.IDLE_TIMEOUT = idleTimeout;
+        KubernetesPodInformers.shutdown();
+        KubernetesClientProvider.invalidateAll();
+        server.destroy();
+        client.close();
+    }
+
+    @Test
+    public void sharedByHolders() {
+        SharedIndexInformer<Pod> informer = informers.acquire(cloud, "ns", "a", false);
+        assertNotNull(informer);
+        assertSame(informer, informers.acquire(cloud, "ns", "b", false));
+        awaitWatching("ns");
+        // a single lease on the client for both holders
+        assertEquals(1, KubernetesClientProvider.getLeases());
+
+        informers.release("ns", "a");
+        // still held by b
+        assertSame(informer, informers.getIfWatching("ns"));
+    }
+
+    @Test
+    public void stopWhenIdle() {
+        KubernetesPodInformers.IDLE_TIMEOUT = 0;
+        informers.acquire(cloud, "ns", "a", false);
+        awaitWatching("ns");
+
+        informers.release("ns", "a");
+        await("idle informer stopped")
+                .atMost(30, TimeUnit.SECONDS)
+                .until(() -> informers.getIfWatching("ns") == null);
+        // the client lease was released along with the informer
+        assertEquals(0, KubernetesClientProvider.getLeases());
+    }
+
+    @Test
+    public void keepWhenAcquiredAgainBeforeIdleTimeout() throws Exception {
+        KubernetesPodInformers.IDLE_TIMEOUT = 1;
+        SharedIndexInformer<Pod> informer = informers.acquire(cloud, "ns", "a", false);
+        awaitWatching("ns");
+
+        informers.release("ns", "a");
+        assertSame(informer, informers.acquire(cloud, "ns", "b", false));
+        Thread.sleep(2000);
+        assertSame(informer, informers.getIfWatching("ns"));
+    }
+
+    @Test
+    public void recreateWhenCloudChanges() throws Exception {
+        SharedIndexInformer<Pod> informer = informers.acquire(cloud, "ns", "a", false);
+        awaitWatching("ns");
+
+        cloud.setReadTimeout(cloud.getReadTimeout() + 1);
+        r.jenkins.save();
+
+        // recreated for its holder
+        await("informer recreated")
+                .atMost(30, TimeUnit.SECONDS)
+                .until(() -> informers.getIfWatching("ns") != null && informers.getIfWatching("ns") != informer);
+        SharedIndexInformer<Pod> recreated = informers.getIfWatching("ns");
+        assertNotSame(informer, recreated);
+        assertSame(recreated, informers.acquire(cloud, "ns", "b", false));
+    }
+
+    @Test
+    public void stopWhenCloudRemoved() throws Exception {
+        informers.acquire(cloud, "ns", "a", false);
+        awaitWatching("ns");
+
+        r.jenkins.clouds.remove(cloud);
+        r.jenkins.save();
+
+        assertNull(informers.getIfWatching("ns"));
+        assertNotSame(informers, KubernetesPodInformers.forCloud(cloud.name));
+    }
+
+    @Test
+    public void podOfLaunchedAgentReadFromInformer() throws Exception {
+        KubernetesSlave agent = new KubernetesSlave.Builder()
+                .podTemplate(new PodTemplate("foo", Collections.emptyList(), Collections.emptyList()))
+                .cloud(cloud)
+                .build();
+        r.jenkins.addNode(agent);
+        agent.toComputer().connect(false);
+        await("pod cached")
+                .atMost(30, TimeUnit.SECONDS)
+                .until(() -> informers.getIfWatching("ns") != null
+                        && informers.getIfWatching("ns").getStore().getByKey("ns/" + agent.getPodName()) != null);
+
+        long hits = Metrics.metricRegistry().counter(MetricNames.PODS_CACHE_HIT).getCount();
+        long misses = Metrics.metricRegistry().counter(MetricNames.PODS_CACHE_MISS).getCount();
+        Pod pod = cloud.getPod("ns", agent.getPodName());
+        assertNotNull(pod);
+        assertEquals(agent.getPodName(), pod.getMetadata().getName());
+        assertEquals(hits + 1, Metrics.metricRegistry().counter(MetricNames.PODS_CACHE_HIT).getCount());
+        assertEquals(misses, Metrics.metricRegistry().counter(MetricNames.PODS_CACHE_MISS).getCount());
+    }
+
+    @Test
+    public void startingInformerDoesNotBlockOtherNamespaces() throws Exception {
+        SlowCloud slowCloud = new SlowCloud(cloud);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SharedIndexInformer<Pod>> slow =
+                    executor.submit(() -> informers.acquire(slowCloud, "slow", "a", false));
+            assertTrue(slowCloud.starting.await(30, TimeUnit.SECONDS));
+
+            assertNotNull(informers.acquire(cloud, "ns", "b", false));
+            assertFalse(slow.isDone());
+
+            slowCloud.proceed.countDown();
+            assertNotNull(slow.get(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentHoldersShareTheStartingInformer() throws Exception {
+        SlowCloud slowCloud = new SlowCloud(cloud);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SharedIndexInformer<Pod>> a =
+                    executor.submit(() -> informers.acquire(slowCloud, "slow", "a", false));
+            assertTrue(slowCloud.starting.await(30, TimeUnit.SECONDS));
+            Future<SharedIndexInformer<Pod>> b =
+                    executor.submit(() -> informers.acquire(slowCloud, "slow", "b", false));
+
+            slowCloud.proceed.countDown();
+            assertSame(a.get(30, TimeUnit.SECONDS), b.get(30, TimeUnit.SECONDS));
+            assertEquals(1, KubernetesClientProvider.getLeases());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void awaitWatching(String namespace) {
+        await("informer watching")
+                .atMost(30, TimeUnit.SECONDS)
+                .until(() -> informers.getIfWatching(namespace) != null);
+    }
+
+    /**
+     * A cloud whose client is only leased once allowed to proceed.
+     */
+    private static class SlowCloud extends KubernetesCloud {
+        private final CountDownLatch starting = new CountDownLatch(1);
+        private final CountDownLatch proceed = new CountDownLatch(1);
+
+        SlowCloud(KubernetesCloud source) {
+            super(source.name, source);
+        }
+
+        @Override
+        public KubernetesClientProvider.Lease leaseClient() throws KubernetesAuthException, IOException {
+            starting.countDown();
+            try {
+                proceed.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.leaseClient();
+        }
+    }
+}
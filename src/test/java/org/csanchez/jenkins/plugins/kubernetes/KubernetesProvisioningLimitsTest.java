@@ -1,6 +1,7 @@
 package org.csanchez.jenkins.plugins.kubernetes;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.List;
@@ -91,4 +92,30 @@ public class KubernetesProvisioningLimitsTest {
             }
         }
     }
+
+    @Test
+    public void reconcileCorrectsLeakedSlots() {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        cloud.setContainerCap(2);
+        PodTemplate podTemplate = new PodTemplate();
+        podTemplate.setName("podTemplate");
+        cloud.addTemplate(podTemplate);
+        j.jenkins.clouds.add(cloud);
+
+        KubernetesProvisioningLimits limits = KubernetesProvisioningLimits.get();
+        // slots registered for agents that never got created
+        assertTrue(limits.register(cloud, podTemplate, 1));
+        assertTrue(limits.register(cloud, podTemplate, 1));
+        assertFalse(limits.register(cloud, podTemplate, 1));
+
+        // a single reconciliation is not enough to tell a leak from a concurrent removal
+        limits.reconcile();
+        assertEquals(2, limits.getGlobalCount(cloud.name));
+        assertEquals(2, limits.getPodTemplateCount(podTemplate.getId()));
+
+        limits.reconcile();
+        assertEquals(0, limits.getGlobalCount(cloud.name));
+        assertEquals(0, limits.getPodTemplateCount(podTemplate.getId()));
+        assertTrue(limits.register(cloud, podTemplate, 1));
+    }
 }
@@ -0,0 +1,56 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class KubernetesSlaveIndexTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void indexByNamespaceAndPodName() throws Exception {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        r.jenkins.clouds.add(cloud);
+        KubernetesSlaveIndex index = KubernetesSlaveIndex.get();
+
+        KubernetesSlave agent = new KubernetesSlave.Builder()
+                .podTemplate(new PodTemplate("foo", Collections.emptyList(), Collections.emptyList()))
+                .cloud(cloud)
+                .build();
+        // namespace is not known until the agent is launched
+        r.jenkins.addNode(agent);
+        assertNull(index.get("ns1", agent.getPodName()));
+
+        agent.setNamespace("ns1");
+        assertSame(agent, index.get("ns1", agent.getPodName()));
+        assertNull(index.get("ns2", agent.getPodName()));
+
+        agent.setNamespace("ns2");
+        assertNull(index.get("ns1", agent.getPodName()));
+        assertSame(agent, index.get("ns2", agent.getPodName()));
+
+        r.jenkins.removeNode(agent);
+        assertNull(index.get("ns2", agent.getPodName()));
+    }
+
+    @Test
+    public void ignoreAgentsNotAdded() throws Exception {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        r.jenkins.clouds.add(cloud);
+        KubernetesSlave agent = new KubernetesSlave.Builder()
+                .podTemplate(new PodTemplate("foo", Collections.emptyList(), Collections.emptyList()))
+                .cloud(cloud)
+                .build();
+        agent.setNamespace("ns1");
+        assertNull(KubernetesSlaveIndex.get().get("ns1", agent.getPodName()));
+
+        r.jenkins.addNode(agent);
+        assertSame(agent, KubernetesSlaveIndex.get().get("ns1", agent.getPodName()));
+    }
+}
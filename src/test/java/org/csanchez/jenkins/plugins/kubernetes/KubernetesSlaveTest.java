@@ -30,9 +30,11 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import hudson.model.Descriptor;
+import hudson.model.TaskListener;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.client.dsl.PodResource;
 import java.io.IOException;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -160,6 +162,30 @@ public class KubernetesSlaveTest {
         }
     }
 
+    @Test
+    public void testAnnotateTtl() throws Exception {
+        KubernetesCloud cloud = Mockito.spy(new KubernetesCloud("kube"));
+        GarbageCollection gc = new GarbageCollection();
+        gc.setTimeout(300);
+        cloud.setGarbageCollection(gc);
+        PodResource podResource = Mockito.mock(PodResource.class);
+        KubernetesSlave slave = new KubernetesSlave.Builder()
+                .podTemplate(new PodTemplate("foo", Collections.emptyList(), Collections.emptyList()))
+                .cloud(cloud)
+                .build();
+        slave.setNamespace("bar");
+        r.jenkins.clouds.add(cloud);
+        doReturn(podResource).when(cloud).getPodResource(eq("bar"), startsWith("foo-"));
+
+        Instant now = Instant.now();
+        assertTrue(slave.isTtlRefreshDue(gc, now, 0.5));
+        assertTrue(slave.annotateTtl(TaskListener.NULL, now));
+        verify(podResource).patch(contains(GarbageCollection.ANNOTATION_LAST_REFRESH));
+
+        assertFalse(slave.isTtlRefreshDue(gc, now.plusSeconds(149), 0.5));
+        assertTrue(slave.isTtlRefreshDue(gc, now.plusSeconds(150), 0.5));
+    }
+
     private interface GetPodTestCase {
         void test(KubernetesCloud cloud, KubernetesSlave slave, PodResource podResource) throws Exception;
     }
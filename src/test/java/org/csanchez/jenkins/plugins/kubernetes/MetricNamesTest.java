@@ -28,4 +28,12 @@ public class MetricNamesTest {
 
         Assert.assertEquals(expected, actual);
     }
+
+    @Test
+    public void metricNameForApiRequestsIncludesCloudVerbAndResource() {
+        String expected = "kubernetes.cloud.api.my_cloud.list.pods.requests";
+        String actual = MetricNames.metricNameForApiRequests("my.cloud", "list", "pods");
+
+        Assert.assertEquals(expected, actual);
+    }
 }
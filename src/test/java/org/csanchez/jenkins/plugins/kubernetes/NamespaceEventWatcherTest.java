@@ -0,0 +1,74 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.EventBuilder;
+import io.fabric8.kubernetes.client.Watcher;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class NamespaceEventWatcherTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void keepLastEventsOfAgentPods() throws Exception {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        r.jenkins.clouds.add(cloud);
+        KubernetesSlave agent = new KubernetesSlave.Builder()
+                .podTemplate(new PodTemplate("foo", Collections.emptyList(), Collections.emptyList()))
+                .cloud(cloud)
+                .build();
+        r.jenkins.addNode(agent);
+        agent.setNamespace("ns");
+        String pod = agent.getPodName();
+
+        NamespaceEventWatcher watcher = new NamespaceEventWatcher("kubernetes", "ns");
+        watcher.eventReceived(Watcher.Action.ADDED, event("1", pod, 1, "Scheduled"));
+        watcher.eventReceived(Watcher.Action.ADDED, event("2", "other-pod", 1, "Scheduled"));
+        // replayed after the watch restarted
+        watcher.eventReceived(Watcher.Action.ADDED, event("1", pod, 1, "Scheduled"));
+        watcher.eventReceived(Watcher.Action.MODIFIED, event("3", pod, 1, "BackOff"));
+        watcher.eventReceived(Watcher.Action.MODIFIED, event("3", pod, 2, "BackOff"));
+        watcher.eventReceived(Watcher.Action.DELETED, event("1", pod, 1, "Scheduled"));
+
+        List<Event> events = watcher.getEvents(pod);
+        assertEquals(2, events.size());
+        assertEquals("Scheduled", events.get(0).getReason());
+        assertEquals("BackOff", events.get(1).getReason());
+        assertEquals(Integer.valueOf(2), events.get(1).getCount());
+        assertTrue(watcher.getEvents("other-pod").isEmpty());
+
+        for (int i = 0; i < 100; i++) {
+            watcher.eventReceived(Watcher.Action.ADDED, event("e" + i, pod, 1, "Pulling"));
+        }
+        assertEquals(20, watcher.getEvents(pod).size());
+
+        watcher.forget(pod);
+        assertTrue(watcher.getEvents(pod).isEmpty());
+    }
+
+    private static Event event(String uid, String podName, int count, String reason) {
+        return new EventBuilder()
+                .withNewMetadata()
+                .withUid(uid)
+                .withNamespace("ns")
+                .endMetadata()
+                .withNewInvolvedObject()
+                .withKind("Pod")
+                .withNamespace("ns")
+                .withName(podName)
+                .endInvolvedObject()
+                .withCount(count)
+                .withReason(reason)
+                .withMessage(reason + " " + podName)
+                .withType("Normal")
+                .build();
+    }
+}
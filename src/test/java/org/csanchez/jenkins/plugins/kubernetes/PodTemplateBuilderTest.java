@@ -108,6 +108,8 @@ public class PodTemplateBuilderTest {
         Pod pod = new PodTemplateBuilder(template, slave).build();
         validatePod(pod, directConnection);
         assertThat(pod.getMetadata().getLabels(), hasEntry("jenkins", "slave"));
+        assertThat(
+                pod.getMetadata().getLabels(), not(hasKey(PodTemplateBuilder.LABEL_KUBERNETES_CONTROLLER_ID)));
 
         Map<String, Container> containers = toContainerMap(pod);
         assertEquals(2, containers.size());
@@ -120,6 +122,20 @@ public class PodTemplateBuilderTest {
         assertThat(container0.getResources().getLimits(), hasEntry("example.com/dongle", new Quantity("42")));
     }
 
+    @Test
+    public void controllerIdentityWithLeaseGarbageCollection() throws Exception {
+        GarbageCollection gc = new GarbageCollection();
+        gc.setUseLease(true);
+        cloud.setGarbageCollection(gc);
+        PodTemplate template = new PodTemplate();
+        template.setYaml(loadYamlFile("pod-busybox.yaml"));
+        setupStubs();
+        Pod pod = new PodTemplateBuilder(template, slave).build();
+        assertThat(
+                pod.getMetadata().getLabels(),
+                hasEntry(PodTemplateBuilder.LABEL_KUBERNETES_CONTROLLER_ID, r.jenkins.getLegacyInstanceId()));
+    }
+
     @Test
     public void testBuildJnlpFromYamlWithNullEnv() throws Exception {
         PodTemplate template = new PodTemplate();
@@ -0,0 +1,55 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalTime;
+import org.junit.Test;
+
+public class WarmPoolPolicyTest {
+
+    @Test
+    public void disabledByDefault() {
+        WarmPoolPolicy policy = WarmPoolPolicy.of(new PodTemplate());
+        assertFalse(policy.isEnabled());
+        assertEquals(0, policy.getSize(LocalTime.NOON));
+    }
+
+    @Test
+    public void fixedSize() {
+        PodTemplate template = new PodTemplate();
+        template.setWarmPoolSize(3);
+        WarmPoolPolicy policy = WarmPoolPolicy.of(template);
+        assertTrue(policy.isEnabled());
+        assertEquals(3, policy.getSize(LocalTime.MIDNIGHT));
+        assertEquals(3, policy.getSize(LocalTime.NOON));
+    }
+
+    @Test
+    public void timeOfDay() {
+        PodTemplate template = new PodTemplate();
+        template.setWarmPoolSize(1);
+        template.setWarmPoolSchedule("# office hours\n8:00-19:00=5\n\n22:00-06:00 = 0\n");
+        WarmPoolPolicy policy = WarmPoolPolicy.of(template);
+        assertTrue(policy.isEnabled());
+        assertEquals(5, policy.getSize(LocalTime.of(8, 0)));
+        assertEquals(5, policy.getSize(LocalTime.of(18, 59)));
+        assertEquals(1, policy.getSize(LocalTime.of(19, 0)));
+        assertEquals(0, policy.getSize(LocalTime.of(23, 30)));
+        assertEquals(0, policy.getSize(LocalTime.of(5, 59)));
+        assertEquals(1, policy.getSize(LocalTime.of(6, 0)));
+    }
+
+    @Test
+    public void invalidSchedule() {
+        assertThrows(IllegalArgumentException.class, () -> WarmPoolPolicy.parse("8-19=5"));
+        assertThrows(IllegalArgumentException.class, () -> WarmPoolPolicy.parse("08:00-25:00=5"));
+        // an invalid schedule does not break provisioning
+        PodTemplate template = new PodTemplate();
+        template.setWarmPoolSize(2);
+        template.setWarmPoolSchedule("whenever");
+        assertEquals(2, WarmPoolPolicy.of(template).getSize(LocalTime.NOON));
+    }
+}
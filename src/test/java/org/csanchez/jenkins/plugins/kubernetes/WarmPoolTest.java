@@ -0,0 +1,119 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.slaves.RetentionStrategy;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesCrudDispatcher;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import io.fabric8.mockwebserver.Context;
+import io.fabric8.mockwebserver.http.MockWebServer;
+import java.net.InetAddress;
+import java.util.HashMap;
+import jenkins.metrics.api.Metrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class WarmPoolTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private KubernetesMockServer server;
+    private KubernetesClient client;
+    private KubernetesCloud cloud;
+    private PodTemplate template;
+
+    @Before
+    public void setUp() {
+        // warm agents are launched as soon as they are added, their pods are created in the mock server
+        server = new KubernetesMockServer(
+                new Context(), new MockWebServer(), new HashMap<>(), new KubernetesCrudDispatcher(), false);
+        server.init(InetAddress.getLoopbackAddress(), 0);
+        client = server.createClient();
+        cloud = new KubernetesCloud("kubernetes");
+        cloud.setServerUrl(client.getMasterUrl().toString());
+        cloud.setNamespace("ns");
+        cloud.setSkipTlsVerify(true);
+        template = new PodTemplate();
+        template.setName("warm");
+        template.setLabel("warm");
+        cloud.addTemplate(template);
+        r.jenkins.clouds.add(cloud);
+    }
+
+    @After
+    public void tearDown() {
+        KubernetesClientProvider.invalidateAll();
+        server.destroy();
+        client.close();
+    }
+
+    @Test
+    public void replenishAndShrink() {
+        WarmPool pool = WarmPool.get();
+        template.setWarmPoolSize(2);
+        pool.replenish();
+        assertEquals(2, pool.size());
+        // already at size
+        pool.replenish();
+        assertEquals(2, pool.size());
+
+        template.setWarmPoolSize(1);
+        pool.replenish();
+        assertEquals(1, pool.size());
+
+        template.setWarmPoolSize(0);
+        pool.replenish();
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void doNotRemoveAgentAssignedToTask() throws Exception {
+        KubernetesSlave agent = mock(KubernetesSlave.class);
+        WarmPoolRetentionStrategy strategy = new WarmPoolRetentionStrategy(RetentionStrategy.NOOP);
+        when(agent.getRetentionStrategy()).thenReturn((RetentionStrategy) strategy);
+        Computer computer = mock(Computer.class);
+        when(agent.toComputer()).thenReturn(computer);
+
+        when(computer.isIdle()).thenReturn(false);
+        assertFalse(WarmPool.remove(agent));
+        assertTrue(strategy.isWarm());
+        verify(computer, never()).setAcceptingTasks(false);
+        verify(agent, never()).terminate();
+
+        when(computer.isIdle()).thenReturn(true);
+        assertTrue(WarmPool.remove(agent));
+        assertFalse(strategy.isWarm());
+        verify(computer).setAcceptingTasks(false);
+        verify(agent).terminate();
+    }
+
+    @Test
+    public void hitsAndMisses() {
+        long hits = Metrics.metricRegistry().counter(MetricNames.WARM_POOL_HIT).getCount();
+        long misses = Metrics.metricRegistry().counter(MetricNames.WARM_POOL_MISS).getCount();
+
+        WarmPool.onMiss(template, 2);
+        assertEquals(misses, Metrics.metricRegistry().counter(MetricNames.WARM_POOL_MISS).getCount());
+        template.setWarmPoolSize(1);
+        WarmPool.onMiss(template, 2);
+        assertEquals(misses + 2, Metrics.metricRegistry().counter(MetricNames.WARM_POOL_MISS).getCount());
+
+        Executor executor = mock(Executor.class);
+        when(executor.getOwner()).thenReturn(r.jenkins.toComputer());
+        WarmPool.get().onHit(executor);
+        assertEquals(hits + 1, Metrics.metricRegistry().counter(MetricNames.WARM_POOL_HIT).getCount());
+    }
+}
@@ -0,0 +1,70 @@
+package org.csanchez.jenkins.plugins.kubernetes.pod.retention;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class PodEventDispatcherTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private PodEventDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        dispatcher = new PodEventDispatcher();
+    }
+
+    @After
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    @Test(timeout = 10_000)
+    public void keepOrderOfPodEvents() throws Exception {
+        List<Integer> a = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> b = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+        for (int i = 0; i < 100; i++) {
+            int n = i;
+            dispatcher.dispatch("a", () -> a.add(n));
+            dispatcher.dispatch("b", () -> b.add(n));
+        }
+        dispatcher.dispatch("a", done::countDown);
+        dispatcher.dispatch("b", done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        List<Integer> expected = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        assertEquals(expected, a);
+        assertEquals(expected, b);
+    }
+
+    @Test(timeout = 10_000)
+    public void slowPodDoesNotDelayOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch other = new CountDownLatch(1);
+        // "a" and "b" land on different stripes
+        dispatcher.dispatch("a", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.dispatch("b", other::countDown);
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+}
@@ -37,18 +37,26 @@ import hudson.util.StreamTaskListener;
 import io.fabric8.kubernetes.api.model.*;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.server.mock.KubernetesCrudDispatcher;
 import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import io.fabric8.kubernetes.client.utils.Serialization;
 import io.fabric8.kubernetes.client.utils.Utils;
+import io.fabric8.mockwebserver.Context;
+import io.fabric8.mockwebserver.http.MockResponse;
+import io.fabric8.mockwebserver.http.MockWebServer;
 import io.fabric8.mockwebserver.http.RecordedRequest;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.InetAddress;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import jenkins.model.Jenkins;
 import org.csanchez.jenkins.plugins.kubernetes.*;
@@ -91,7 +99,7 @@ public class ReaperTest {
     @Test
     public void testMaybeActivate() throws IOException, InterruptedException {
         KubernetesCloud cloud = addCloud("k8s", "foo");
-        String watchPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        String watchPodsPath = watchPodsPath("foo");
         server.expect()
                 .withPath(watchPodsPath)
                 .andUpgradeToWebSocket()
@@ -132,6 +140,66 @@ public class ReaperTest {
         assertEquals("node not removed from jenkins", j.jenkins.getNodes().size(), 1);
     }
 
+    @Test
+    public void testListPodsOnActivate() throws IOException {
+        PagingDispatcher dispatcher = new PagingDispatcher();
+        KubernetesMockServer pagingServer =
+                new KubernetesMockServer(new Context(), new MockWebServer(), new HashMap<>(), dispatcher, false);
+        pagingServer.init(InetAddress.getLoopbackAddress(), 0);
+        long pageSize = Reaper.REAP_LIST_PAGE_SIZE;
+        try (KubernetesClient pagingClient = pagingServer.createClient()) {
+            Reaper.REAP_LIST_PAGE_SIZE = 1;
+            KubernetesCloud cloud = addCloud("k8s", "foo", pagingClient);
+            KubernetesSlave p1 = addNode(cloud, "p1-123", "p1");
+            KubernetesSlave p2 = addNode(cloud, "p2-123", "p2");
+            KubernetesSlave p3 = addNode(cloud, "p3-123", "p3");
+            for (KubernetesSlave node : List.of(p1, p3)) {
+                pagingClient.pods().inNamespace("foo").resource(createPod(node)).create();
+                dispatcher.listed.add(node.getPodName());
+            }
+
+            Reaper.getInstance().maybeActivate();
+
+            // p2 was not listed, and is gone
+            assertNull("p2 removed", j.jenkins.getNode("p2"));
+            assertNotNull("p1 kept", j.jenkins.getNode("p1"));
+            assertNotNull("p3 kept", j.jenkins.getNode("p3"));
+            // one page per pod, the last one without continue token
+            assertEquals(2, dispatcher.pages.get());
+            // only the pod missing from the list was read on its own
+            assertThat(dispatcher.gets, contains("/api/v1/namespaces/foo/pods/p2-123"));
+        } finally {
+            Reaper.REAP_LIST_PAGE_SIZE = pageSize;
+            pagingServer.destroy();
+        }
+    }
+
+    @Test
+    public void testReadPodsOnActivateWhenListFails() throws IOException {
+        PagingDispatcher dispatcher = new PagingDispatcher();
+        dispatcher.forbidden = true;
+        KubernetesMockServer pagingServer =
+                new KubernetesMockServer(new Context(), new MockWebServer(), new HashMap<>(), dispatcher, false);
+        pagingServer.init(InetAddress.getLoopbackAddress(), 0);
+        try (KubernetesClient pagingClient = pagingServer.createClient()) {
+            KubernetesCloud cloud = addCloud("k8s", "foo", pagingClient);
+            KubernetesSlave p1 = addNode(cloud, "p1-123", "p1");
+            addNode(cloud, "p2-123", "p2");
+            pagingClient.pods().inNamespace("foo").resource(createPod(p1)).create();
+
+            Reaper.getInstance().maybeActivate();
+
+            assertNull("p2 removed", j.jenkins.getNode("p2"));
+            assertNotNull("p1 kept", j.jenkins.getNode("p1"));
+            // each pod is read on its own instead
+            assertThat(
+                    dispatcher.gets,
+                    containsInAnyOrder("/api/v1/namespaces/foo/pods/p1-123", "/api/v1/namespaces/foo/pods/p2-123"));
+        } finally {
+            pagingServer.destroy();
+        }
+    }
+
     @Test
     public void testWatchFailOnActivate() throws IOException, InterruptedException {
         KubernetesCloud cloud = addCloud("k8s", "foo");
@@ -141,15 +209,53 @@ public class ReaperTest {
 
         // expect watch to be attempted
         kubeClientRequests()
-                .assertRequestCountAtLeast("/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true", 1);
+                .assertRequestCountAtLeast(watchPodsPath("foo"), 1);
         // watch failed to register
         assertShouldNotBeWatching(r, cloud);
     }
 
+    @Test
+    public void testWatchNamespacesOfAgents() throws IOException {
+        server.expect()
+                .withPath(watchPodsPath("foo"))
+                .andUpgradeToWebSocket()
+                .open()
+                .done()
+                .always();
+        server.expect()
+                .withPath(watchPodsPath("bar"))
+                .andUpgradeToWebSocket()
+                .open()
+                .done()
+                .always();
+        KubernetesCloud cloud = addCloud("k8s", "foo");
+        PodTemplate template = new PodTemplate();
+        template.setName("bar");
+        template.setNamespace("bar");
+        cloud.addTemplate(template);
+
+        // activate reaper
+        Reaper r = Reaper.getInstance();
+        r.maybeActivate();
+
+        await("should be watching foo").until(() -> r.isWatchingNamespace(cloud.name, "foo"));
+        // no agent runs in the namespace of the template yet
+        assertFalse("not watching bar", r.isWatchingNamespace(cloud.name, "bar"));
+
+        KubernetesSlave node = addNode(cloud, "bar", "bar-123", "bar");
+        await("should be watching bar").until(() -> r.isWatchingNamespace(cloud.name, "bar"));
+
+        // namespace no longer used
+        j.jenkins.removeNode(node);
+
+        await("should not be watching bar").until(() -> !r.isWatchingNamespace(cloud.name, "bar"));
+        assertTrue("still watching foo", r.isWatchingNamespace(cloud.name, "foo"));
+    }
+
     @Test
     public void testActivateOnNewComputer() throws IOException, InterruptedException {
         server.expect()
-                .withPath("/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true")
+                .withPath(watchPodsPath("foo"))
                 .andUpgradeToWebSocket()
                 .open()
                 .done()
@@ -173,13 +279,13 @@ public class ReaperTest {
         // expect new cloud registered
         assertShouldBeWatching(r, cloud);
         kubeClientRequests()
-                .assertRequestCountAtLeast("/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true", 1);
+                .assertRequestCountAtLeast(watchPodsPath("foo"), 1);
     }
 
     @Test(timeout = 10_000)
     public void testReconnectOnNewComputer() throws InterruptedException, IOException {
         KubernetesCloud cloud = addCloud("k8s", "foo");
-        String watchPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        String watchPodsPath = watchPodsPath("foo");
         server.expect()
                 .withPath(watchPodsPath)
                 .andUpgradeToWebSocket()
@@ -231,7 +337,7 @@ public class ReaperTest {
 
     @Test(timeout = 10_000)
     public void testAddWatchWhenCloudAdded() throws InterruptedException, IOException {
-        String watchPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        String watchPodsPath = watchPodsPath("foo");
         server.expect()
                 .withPath(watchPodsPath)
                 .andUpgradeToWebSocket()
@@ -259,7 +365,7 @@ public class ReaperTest {
     @Test(timeout = 10_000)
     public void testRemoveWatchWhenCloudRemoved() throws InterruptedException, IOException {
         KubernetesCloud cloud = addCloud("k8s", "foo");
-        String watchPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        String watchPodsPath = watchPodsPath("foo");
         server.expect()
                 .withPath(watchPodsPath)
                 .andUpgradeToWebSocket()
@@ -295,7 +401,7 @@ public class ReaperTest {
                 .endMetadata()
                 .build();
 
-        String watchFooPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        String watchFooPodsPath = watchPodsPath("foo");
         server.expect()
                 .withPath(watchFooPodsPath)
                 .andUpgradeToWebSocket()
@@ -303,7 +409,7 @@ public class ReaperTest {
                 .done()
                 .always();
 
-        String watchBarPodsPath = "/api/v1/namespaces/bar/pods?allowWatchBookmarks=true&watch=true";
+        String watchBarPodsPath = watchPodsPath("bar");
         server.expect()
                 .withPath(watchBarPodsPath)
                 .andUpgradeToWebSocket()
@@ -341,7 +447,7 @@ public class ReaperTest {
     @Test(timeout = 10_000)
     public void testStopWatchingOnCloseException() throws InterruptedException {
         KubernetesCloud cloud = addCloud("k8s", "foo");
-        String watchPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        String watchPodsPath = watchPodsPath("foo");
         server.expect()
                 .withPath(watchPodsPath)
                 .andUpgradeToWebSocket()
@@ -367,14 +473,61 @@ public class ReaperTest {
         // error status event should be filtered out
         listener.expectNoEvents();
 
-        // watch is removed
+        // watch is removed until it is resumed
         assertShouldNotBeWatching(r, cloud);
     }
 
+    @Test(timeout = 10_000)
+    public void testResumeWatchingOnCloseException() throws InterruptedException {
+        long resumeDelay = Reaper.RESUME_DELAY_MS;
+        Reaper.RESUME_DELAY_MS = 0;
+        try {
+            KubernetesCloud cloud = addCloud("k8s", "foo");
+            KubernetesSlave node = addNode(cloud, "node-123", "node");
+            Pod node123 = createPod(node);
+            String watchPodsPath = watchPodsPath("foo");
+            // don't remove pod on activate
+            server.expect()
+                    .withPath("/api/v1/namespaces/foo/pods/node-123")
+                    .andReturn(200, node123)
+                    .once();
+            // trigger HTTP_GONE status which should result in Watcher#onClose(Exception)
+            server.expect()
+                    .withPath(watchPodsPath)
+                    .andUpgradeToWebSocket()
+                    .open()
+                    .waitFor(EVENT_WAIT_PERIOD_MS)
+                    .andEmit(outdatedEvent())
+                    .done()
+                    .once();
+            server.expect()
+                    .withPath(watchPodsPath)
+                    .andUpgradeToWebSocket()
+                    .open()
+                    .done()
+                    .always();
+
+            // activate reaper
+            Reaper r = Reaper.getInstance();
+            r.maybeActivate();
+
+            // pod is checked again as the watch could have missed its deletion, and it is now gone
+            await("node removed").until(() -> j.jenkins.getNodes().isEmpty());
+
+            // then the watch is resumed
+            assertShouldBeWatching(r, cloud);
+            kubeClientRequests()
+                    .assertRequestCount("/api/v1/namespaces/foo/pods/node-123", 2)
+                    .assertRequestCountAtLeast(watchPodsPath, 2);
+        } finally {
+            Reaper.RESUME_DELAY_MS = resumeDelay;
+        }
+    }
+
     @Test(timeout = 10_000)
     public void testKeepWatchingOnKubernetesApiServerError() throws InterruptedException {
         KubernetesCloud cloud = addCloud("k8s", "foo");
-        String watchPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        String watchPodsPath = watchPodsPath("foo");
         server.expect()
                 .withPath(watchPodsPath)
                 .andUpgradeToWebSocket()
@@ -415,7 +568,7 @@ public class ReaperTest {
     @Test(timeout = 10_000)
     public void testKeepWatchingOnStatusWatchEvent() throws InterruptedException {
         KubernetesCloud cloud = addCloud("k8s", "foo");
-        String watchPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        String watchPodsPath = watchPodsPath("foo");
         server.expect().withPath(watchPodsPath).andReturnChunked(200).once();
         Status status = new Status();
         status.setStatus("Unknown");
@@ -445,7 +598,7 @@ public class ReaperTest {
 
     @Test
     public void testCloseWatchersOnShutdown() throws InterruptedException {
-        String watchPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        String watchPodsPath = watchPodsPath("foo");
 
         server.expect()
                 .withPath(watchPodsPath)
@@ -480,7 +633,7 @@ public class ReaperTest {
         Pod node123 = createPod(node);
 
         server.expect()
-                .withPath("/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true")
+                .withPath(watchPodsPath("foo"))
                 .andUpgradeToWebSocket()
                 .open()
                 .waitFor(EVENT_WAIT_PERIOD_MS)
@@ -504,16 +657,16 @@ public class ReaperTest {
 
         // wait for the delete event to be processed
         waitForKubeClientRequests(6)
-                .assertRequestCountAtLeast("/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true", 3);
+                .assertRequestCountAtLeast(watchPodsPath("foo"), 3);
 
         // verify listener got notified
-        listener.expectEvent(Watcher.Action.DELETED, node);
+        listener.waitForEvents().expectEvent(Watcher.Action.DELETED, node);
+
+        // expect node to be removed
+        await("node removed").until(() -> j.jenkins.getNodes().isEmpty());
 
         // verify computer disconnected with offline cause
         verify(node.getComputer()).disconnect(isA(PodOfflineCause.class));
-
-        // expect node to be removed
-        assertEquals("jenkins nodes", j.jenkins.getNodes().size(), 0);
     }
 
     @Test(timeout = 10_000)
@@ -522,9 +675,9 @@ public class ReaperTest {
         KubernetesSlave node = addNode(cloud, "node-123", "node");
         Pod node123 = withContainerStatusTerminated(createPod(node));
 
-        String watchPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        String watchPodsPath = watchPodsPath("foo");
         server.expect()
-                .withPath("/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true")
+                .withPath(watchPodsPath("foo"))
                 .andUpgradeToWebSocket()
                 .open()
                 .waitFor(EVENT_WAIT_PERIOD_MS)
@@ -581,7 +734,7 @@ public class ReaperTest {
         node123.getStatus().setPhase("Failed");
 
         server.expect()
-                .withPath("/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true")
+                .withPath(watchPodsPath("foo"))
                 .andUpgradeToWebSocket()
                 .open()
                 .waitFor(EVENT_WAIT_PERIOD_MS)
@@ -621,7 +774,7 @@ public class ReaperTest {
         Pod node123 = withContainerImagePullBackoff(createPod(node));
         Reaper.TerminateAgentOnImagePullBackOff.BACKOFF_EVENTS_LIMIT = 2;
 
-        String watchPodsPath = "/api/v1/namespaces/foo/pods?allowWatchBookmarks=true&watch=true";
+        String watchPodsPath = watchPodsPath("foo");
         server.expect()
                 .withPath(watchPodsPath)
                 .andUpgradeToWebSocket()
@@ -709,9 +862,14 @@ public class ReaperTest {
     }
 
     private KubernetesSlave addNode(KubernetesCloud cld, String podName, String nodeName) throws IOException {
+        return addNode(cld, cld.getNamespace(), podName, nodeName);
+    }
+
+    private KubernetesSlave addNode(KubernetesCloud cld, String namespace, String podName, String nodeName)
+            throws IOException {
         KubernetesSlave node = mock(KubernetesSlave.class);
         when(node.getNodeName()).thenReturn(nodeName);
-        when(node.getNamespace()).thenReturn(cld.getNamespace());
+        when(node.getNamespace()).thenReturn(namespace);
         when(node.getPodName()).thenReturn(podName);
         when(node.getKubernetesCloud()).thenReturn(cld);
         when(node.getCloudName()).thenReturn(cld.name);
@@ -728,6 +886,10 @@ public class ReaperTest {
     }
 
     private KubernetesCloud addCloud(String name, String namespace) {
+        return addCloud(name, namespace, client);
+    }
+
+    private KubernetesCloud addCloud(String name, String namespace, KubernetesClient client) {
         KubernetesCloud c = new KubernetesCloud(name);
         c.setServerUrl(client.getMasterUrl().toString());
         c.setNamespace(namespace);
@@ -910,6 +1072,19 @@ public class ReaperTest {
                 .build();
     }
 
+    /**
+     * @param namespace the watched namespace
+     * @return the path of the label-selected watch of the agent pods of a namespace
+     */
+    private static String watchPodsPath(String namespace) {
+        String labelSelector = new KubernetesCloud("labels")
+                .getAgentPodLabels().entrySet().stream()
+                        .map(e -> e.getKey() + "=" + e.getValue())
+                        .collect(Collectors.joining(","));
+        return "/api/v1/namespaces/" + namespace + "/pods?allowWatchBookmarks=true&labelSelector="
+                + Utils.toUrlEncoded(labelSelector) + "&watch=true";
+    }
+
     private static void assertShouldBeWatching(Reaper r, KubernetesCloud... clouds) {
         for (KubernetesCloud cloud : clouds) {
             await("should be watching cloud " + cloud.name).until(() -> r.isWatchingCloud(cloud.name));
@@ -921,4 +1096,48 @@ public class ReaperTest {
             await("should not be watching cloud " + cloud.name).until(() -> !r.isWatchingCloud(cloud.name));
         }
     }
+
+    /**
+     * Serves the listed pods to the list requests of the reaper one per page, and records the other reads of pods.
+     */
+    private static class PagingDispatcher extends KubernetesCrudDispatcher {
+        private final AtomicInteger pages = new AtomicInteger();
+        private final List<String> gets = new CopyOnWriteArrayList<>();
+        private final List<String> listed = new CopyOnWriteArrayList<>();
+        private volatile boolean forbidden;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String path = request.getPath();
+            if (!"GET".equals(request.getMethod())) {
+                return super.dispatch(request);
+            }
+            if (path.startsWith("/api/v1/namespaces/foo/pods/")) {
+                gets.add(path);
+                return super.dispatch(request);
+            }
+            // only the list requests of the reaper are paged, other lists and watches see the pods created
+            if (!path.matches("/api/v1/namespaces/foo/pods\\?.*\\blimit=" + Reaper.REAP_LIST_PAGE_SIZE + "\\b.*")) {
+                return super.dispatch(request);
+            }
+            if (forbidden) {
+                return new MockResponse().setResponseCode(HttpURLConnection.HTTP_FORBIDDEN);
+            }
+            int page = path.contains("continue=") ? Integer.parseInt(path.replaceAll(".*continue=(\\d+).*", "$1")) : 0;
+            pages.incrementAndGet();
+            PodList list = new PodListBuilder()
+                    .withNewMetadata()
+                    .withResourceVersion("1")
+                    .withContinue(page + 1 < listed.size() ? String.valueOf(page + 1) : null)
+                    .endMetadata()
+                    .addNewItem()
+                    .withNewMetadata()
+                    .withName(listed.get(page))
+                    .withNamespace("foo")
+                    .endMetadata()
+                    .endItem()
+                    .build();
+            return new MockResponse().setResponseCode(HttpURLConnection.HTTP_OK).setBody(Serialization.asJson(list));
+        }
+    }
 }
@@ -0,0 +1,48 @@
+package org.csanchez.jenkins.plugins.kubernetes.watch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class LaunchingPodEventHandlerTest {
+
+    @Test
+    public void dispatchesToRegisteredPod() throws Exception {
+        LaunchingPodEventHandler handler = new LaunchingPodEventHandler();
+        List<Pod> events = new ArrayList<>();
+        Closeable registration = handler.register("ns", "a", events::add);
+        assertEquals(1, handler.size());
+
+        Pod a = pod("ns", "a");
+        handler.onAdd(a);
+        handler.onAdd(pod("ns", "b"));
+        handler.onAdd(pod("other", "a"));
+        handler.onUpdate(a, a);
+        handler.onDelete(a, false);
+        assertEquals(3, events.size());
+        assertSame(a, events.get(0));
+        assertSame(a, events.get(1));
+        assertNull(events.get(2));
+
+        registration.close();
+        assertEquals(0, handler.size());
+        handler.onUpdate(a, a);
+        assertEquals(3, events.size());
+    }
+
+    private static Pod pod(String namespace, String name) {
+        return new PodBuilder()
+                .withNewMetadata()
+                .withNamespace(namespace)
+                .withName(name)
+                .endMetadata()
+                .build();
+    }
+}
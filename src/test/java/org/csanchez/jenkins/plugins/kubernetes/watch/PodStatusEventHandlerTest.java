@@ -0,0 +1,70 @@
+package org.csanchez.jenkins.plugins.kubernetes.watch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class PodStatusEventHandlerTest {
+
+    private static final String WAITING = "\n\tContainer [jnlp] waiting [ImagePullBackOff] Back-off pulling image";
+    private static final String NOT_READY = "\n\tPod [Running][ContainersNotReady] containers with unready status";
+
+    private final long maxBytes = PodStatusEventHandler.MAX_BYTES;
+
+    @After
+    public void restore() {
+        PodStatusEventHandler.MAX_BYTES = maxBytes;
+    }
+
+    @Test
+    public void printOnlyTransitions() {
+        PodStatusEventHandler.PodStatusLog log = new PodStatusEventHandler.PodStatusLog();
+        assertEquals("[PodInfo] ns/pod" + WAITING, log.update("[PodInfo] ns/pod", Collections.singleton(WAITING), 0));
+        // resync
+        assertNull(log.update("[PodInfo] ns/pod", Collections.singleton(WAITING), 1));
+        assertEquals(
+                "[PodInfo] ns/pod" + NOT_READY,
+                log.update("[PodInfo] ns/pod", Arrays.asList(WAITING, NOT_READY), 2));
+        assertNull(log.update("[PodInfo] ns/pod", Collections.emptyList(), 3));
+    }
+
+    @Test
+    public void rateLimitRepeatedStates() {
+        PodStatusEventHandler.PodStatusLog log = new PodStatusEventHandler.PodStatusLog();
+        long interval = TimeUnit.SECONDS.toNanos(PodStatusEventHandler.REPEAT_INTERVAL);
+        assertEquals(
+                "[PodInfo] ns/pod" + NOT_READY, log.update("[PodInfo] ns/pod", Collections.singleton(NOT_READY), 0));
+        // flapping readiness probe
+        assertNull(log.update("[PodInfo] ns/pod", Collections.emptyList(), 1));
+        assertNull(log.update("[PodInfo] ns/pod", Collections.singleton(NOT_READY), 2));
+        assertNull(log.update("[PodInfo] ns/pod", Collections.emptyList(), 3));
+        assertEquals(
+                "[PodInfo] ns/pod" + NOT_READY,
+                log.update("[PodInfo] ns/pod", Collections.singleton(NOT_READY), interval));
+    }
+
+    @Test
+    public void stopAfterByteBudget() {
+        PodStatusEventHandler.MAX_BYTES = 200;
+        PodStatusEventHandler.PodStatusLog log = new PodStatusEventHandler.PodStatusLog();
+        long printed = 0;
+        String last = null;
+        for (int i = 0; i < 10; i++) {
+            String text = log.update("[PodInfo] ns/pod", Collections.singleton(WAITING + i), i);
+            if (text != null) {
+                printed += text.length();
+                last = text;
+            }
+        }
+        assertThat(last, containsString("exceeded 200 bytes"));
+        assertThat(printed, lessThan(400L));
+    }
+}